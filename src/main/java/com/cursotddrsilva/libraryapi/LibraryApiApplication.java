@@ -1,7 +1,6 @@
 package com.cursotddrsilva.libraryapi;
 
 import com.cursotddrsilva.libraryapi.service.EmailService;
-import org.modelmapper.ModelMapper;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.CommandLineRunner;
 import org.springframework.boot.SpringApplication;
@@ -23,11 +22,6 @@ public class LibraryApiApplication {
 	/*@Autowired
 	private EmailService emailService;*/
 
-	@Bean
-	public ModelMapper modelMapper(){
-		return new ModelMapper();
-	}
-
 	/**
 	 * Usado somente para o teste do envio de email
 	 * @param args
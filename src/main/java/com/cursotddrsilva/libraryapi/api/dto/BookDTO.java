@@ -24,4 +24,6 @@ public class BookDTO {
     //@NotNull
     private String isbn;
 
+    private Long version;
+
 }
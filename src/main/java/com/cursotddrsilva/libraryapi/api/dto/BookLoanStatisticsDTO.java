@@ -0,0 +1,16 @@
+package com.cursotddrsilva.libraryapi.api.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class BookLoanStatisticsDTO {
+
+    private Long bookId;
+    private long loans;
+}
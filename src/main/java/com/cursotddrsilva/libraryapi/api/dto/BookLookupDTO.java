@@ -0,0 +1,24 @@
+package com.cursotddrsilva.libraryapi.api.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Resultado de uma busca de varios livros: os encontrados na ordem pedida e as chaves sem livro.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class BookLookupDTO<K> {
+
+    @Builder.Default
+    private List<BookDTO> books = new ArrayList<>();
+    @Builder.Default
+    private List<K> notFound = new ArrayList<>();
+}
@@ -0,0 +1,24 @@
+package com.cursotddrsilva.libraryapi.api.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class BulkChunkResultDTO {
+
+    private int chunk;
+    private int received;
+    private int imported;
+    @Builder.Default
+    private List<String> duplicatedIsbns = new ArrayList<>();
+    @Builder.Default
+    private List<String> errors = new ArrayList<>();
+}
@@ -0,0 +1,33 @@
+package com.cursotddrsilva.libraryapi.api.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class BulkImportResultDTO {
+
+    private long received;
+    private long imported;
+    private long rejected;
+    /**
+     * Motivo da leitura ter parado antes do fim do array; os elementos seguintes nao foram lidos.
+     */
+    private String error;
+    @Builder.Default
+    private List<BulkChunkResultDTO> chunks = new ArrayList<>();
+
+    public void add(BulkChunkResultDTO chunk){
+        this.chunks.add(chunk);
+        this.received += chunk.getReceived();
+        this.imported += chunk.getImported();
+        this.rejected += chunk.getReceived() - chunk.getImported();
+    }
+}
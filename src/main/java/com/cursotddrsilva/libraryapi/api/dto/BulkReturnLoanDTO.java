@@ -0,0 +1,19 @@
+package com.cursotddrsilva.libraryapi.api.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.validation.constraints.NotEmpty;
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class BulkReturnLoanDTO {
+
+    @NotEmpty
+    private List<Long> ids;
+}
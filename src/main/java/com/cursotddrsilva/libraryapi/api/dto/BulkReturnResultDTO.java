@@ -0,0 +1,24 @@
+package com.cursotddrsilva.libraryapi.api.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class BulkReturnResultDTO {
+
+    private int received;
+    @Builder.Default
+    private List<Long> returned = new ArrayList<>();
+    @Builder.Default
+    private List<Long> alreadyReturned = new ArrayList<>();
+    @Builder.Default
+    private List<Long> notFound = new ArrayList<>();
+}
@@ -0,0 +1,25 @@
+package com.cursotddrsilva.libraryapi.api.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Pagina das listagens com {@code envelope=compact}: so o conteudo, o numero da proxima pagina
+ * ({@code null} na ultima) e o total quando ele foi calculado.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class CompactPageDTO<T> {
+
+    private List<T> items;
+    private Integer next;
+    private Long total;
+}
@@ -21,4 +21,5 @@ public class LoanDto {
     @NotEmpty
     private String customerEmail;
     private BookDTO bookDTO;
+    private Long version;
 }
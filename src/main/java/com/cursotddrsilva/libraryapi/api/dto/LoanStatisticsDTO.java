@@ -0,0 +1,18 @@
+package com.cursotddrsilva.libraryapi.api.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class LoanStatisticsDTO {
+
+    private long totalLoans;
+    private long activeLoans;
+    private long overdueLoans;
+    private long loanedBooks;
+}
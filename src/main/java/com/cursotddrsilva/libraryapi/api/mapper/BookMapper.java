@@ -0,0 +1,24 @@
+package com.cursotddrsilva.libraryapi.api.mapper;
+
+import com.cursotddrsilva.libraryapi.api.dto.BookDTO;
+import com.cursotddrsilva.libraryapi.model.entity.Book;
+import org.mapstruct.Mapper;
+import org.mapstruct.Mapping;
+
+import java.util.List;
+
+/**
+ * Conversao entre {@link Book} e {@link BookDTO} gerada em tempo de compilacao pelo MapStruct,
+ * sem reflexao por requisicao.
+ */
+@Mapper(componentModel = "spring")
+public interface BookMapper {
+
+    BookDTO toDto(Book book);
+
+    List<BookDTO> toDtoList(List<Book> books);
+
+    @Mapping(target = "loans", ignore = true)
+    @Mapping(target = "version", ignore = true)
+    Book toEntity(BookDTO dto);
+}
@@ -0,0 +1,29 @@
+package com.cursotddrsilva.libraryapi.api.mapper;
+
+import com.cursotddrsilva.libraryapi.api.dto.LoanDto;
+import com.cursotddrsilva.libraryapi.model.entity.Loan;
+import org.mapstruct.Mapper;
+import org.mapstruct.Mapping;
+
+import java.util.List;
+
+/**
+ * Conversao entre {@link Loan} e {@link LoanDto}, incluindo o {@code bookDTO} aninhado,
+ * gerada em tempo de compilacao pelo MapStruct.
+ */
+@Mapper(componentModel = "spring", uses = BookMapper.class)
+public interface LoanMapper {
+
+    @Mapping(target = "isbn", source = "book.isbn")
+    @Mapping(target = "bookDTO", source = "book")
+    LoanDto toDto(Loan loan);
+
+    List<LoanDto> toDtoList(List<Loan> loans);
+
+    @Mapping(target = "book", source = "bookDTO")
+    @Mapping(target = "loanDate", ignore = true)
+    @Mapping(target = "returned", ignore = true)
+    @Mapping(target = "activeBookId", ignore = true)
+    @Mapping(target = "version", ignore = true)
+    Loan toEntity(LoanDto dto);
+}
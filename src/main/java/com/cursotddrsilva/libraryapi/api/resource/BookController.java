@@ -1,40 +1,84 @@
 package com.cursotddrsilva.libraryapi.api.resource;
 
 import com.cursotddrsilva.libraryapi.api.dto.BookDTO;
+import com.cursotddrsilva.libraryapi.api.dto.BookLookupDTO;
+import com.cursotddrsilva.libraryapi.api.dto.BulkChunkResultDTO;
+import com.cursotddrsilva.libraryapi.api.dto.BulkImportResultDTO;
+import com.cursotddrsilva.libraryapi.api.dto.CursorPageDTO;
+import com.cursotddrsilva.libraryapi.api.dto.IsbnLookupDTO;
 import com.cursotddrsilva.libraryapi.api.dto.LoanDto;
+import com.cursotddrsilva.libraryapi.api.mapper.BookMapper;
+import com.cursotddrsilva.libraryapi.api.mapper.LoanMapper;
 import com.cursotddrsilva.libraryapi.model.entity.Book;
 import com.cursotddrsilva.libraryapi.model.entity.Loan;
+import com.cursotddrsilva.libraryapi.model.repository.Keyset;
 import com.cursotddrsilva.libraryapi.service.BookService;
 import com.cursotddrsilva.libraryapi.service.LoanService;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
 import io.swagger.annotations.Api;
 import io.swagger.annotations.ApiOperation;
 import io.swagger.annotations.ApiResponse;
 import io.swagger.annotations.ApiResponses;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.modelmapper.ModelMapper;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.data.domain.Page;
-import org.springframework.data.domain.PageImpl;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.context.request.async.WebAsyncTask;
 import org.springframework.web.server.ResponseStatusException;
 
+import javax.servlet.http.HttpServletResponse;
+import javax.validation.ConstraintViolation;
 import javax.validation.Valid;
+import javax.validation.Validator;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
 
 @RestController
 @RequestMapping("/api/books")
+@Profile("!reactive")
 @RequiredArgsConstructor
 @Api("Book API")
 @Slf4j
 public class BookController {
 
     private final BookService service;
-    private final ModelMapper modelMapper;
     private final LoanService loanService;
+    private final BookMapper bookMapper;
+    private final LoanMapper loanMapper;
+    private final ObjectMapper objectMapper;
+    private final Validator validator;
+
+    @Value("${application.books.bulk.chunk-size:500}")
+    private int bulkChunkSize;
+
+    @Value("${application.books.lookup.max-size:200}")
+    private int lookupMaxSize;
+
+    @Value("${application.books.export.timeout-ms:1800000}")
+    private long exportTimeoutMs;
 
     @PostMapping
     @ResponseStatus(HttpStatus.CREATED)
@@ -42,24 +86,147 @@ public class BookController {
     public BookDTO create(@RequestBody @Valid BookDTO dto){
         log.info("creating a book for isbn:{}", dto.getIsbn());
 
-        Book entity = modelMapper.map(dto,Book.class);
+        Book entity = bookMapper.toEntity(dto);
 
         entity = this.service.save(entity);
 
         entity = entity == null ? new Book() : entity;
 
-        return modelMapper.map(entity, BookDTO.class);
+        return bookMapper.toDto(entity);
+    }
+
+    @PostMapping(value = "bulk", consumes = MediaType.APPLICATION_JSON_VALUE)
+    @ApiOperation("Imports a JSON array of books in batched chunks")
+    public BulkImportResultDTO bulkCreate(InputStream body) throws IOException {
+        BulkImportResultDTO result = new BulkImportResultDTO();
+        try (JsonParser parser = objectMapper.getFactory().createParser(body)) {
+            if (parser.nextToken() != JsonToken.START_ARRAY) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Expected a JSON array of books.");
+            }
+
+            List<BookDTO> chunk = new ArrayList<>(bulkChunkSize);
+            int element = 0;
+            try {
+                while (parser.nextToken() == JsonToken.START_OBJECT) {
+                    chunk.add(objectMapper.readValue(parser, BookDTO.class));
+                    element++;
+                    if (chunk.size() == bulkChunkSize) {
+                        result.add(importChunk(result.getChunks().size(), chunk));
+                        chunk.clear();
+                    }
+                }
+                if (parser.currentToken() != JsonToken.END_ARRAY) {
+                    result.setError(String.format("Element %d: expected a book object, found %s.", element, parser.currentToken()));
+                }
+            } catch (JsonProcessingException e) {
+                result.setError(String.format("Element %d: malformed JSON: %s", element, e.getOriginalMessage()));
+            }
+
+            // blocos anteriores ja foram gravados: os livros lidos antes de um erro tambem sao importados
+            if (!chunk.isEmpty()) {
+                result.add(importChunk(result.getChunks().size(), chunk));
+            }
+        }
+        log.info("bulk import finished: {} received, {} imported", result.getReceived(), result.getImported());
+        return result;
+    }
+
+    private BulkChunkResultDTO importChunk(int index, List<BookDTO> dtos){
+        List<Book> books = new ArrayList<>(dtos.size());
+        List<String> errors = new ArrayList<>();
+        for (BookDTO dto : dtos) {
+            Set<ConstraintViolation<BookDTO>> violations = validator.validate(dto);
+            if (violations.isEmpty()) {
+                books.add(bookMapper.toEntity(dto));
+            } else {
+                violations.forEach(violation -> errors.add(String.format("isbn %s: %s %s",
+                        dto.getIsbn(), violation.getPropertyPath(), violation.getMessage())));
+            }
+        }
+
+        BulkChunkResultDTO chunkResult = BulkChunkResultDTO.builder().build();
+        if (!books.isEmpty()) {
+            try {
+                chunkResult = service.saveBatch(books);
+            } catch (RuntimeException e) {
+                log.error("bulk import chunk {} failed", index, e);
+                chunkResult.getErrors().add(e.getMessage());
+            }
+        }
+        chunkResult.setChunk(index);
+        chunkResult.setReceived(dtos.size());
+        chunkResult.getErrors().addAll(errors);
+        return chunkResult;
+    }
+
+    @GetMapping(value = "export", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    @ApiOperation("Streams the whole catalogue as newline-delimited JSON")
+    public WebAsyncTask<Void> export(HttpServletResponse response){
+        ObjectWriter writer = objectMapper.writerFor(BookDTO.class)
+                .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+
+        // o timeout vale so para o export; as demais requisicoes assincronas mantem o padrao
+        return new WebAsyncTask<>(exportTimeoutMs, () -> {
+            response.setContentType(MediaType.APPLICATION_NDJSON_VALUE);
+            try (JsonGenerator generator = objectMapper.getFactory().createGenerator(response.getOutputStream())) {
+                generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+                generator.setRootValueSeparator(null);
+                service.exportAll(book -> {
+                    try {
+                        writer.writeValue(generator, bookMapper.toDto(book));
+                        generator.writeRaw('\n');
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            }
+            return null;
+        });
     }
 
     @GetMapping("{id}")
-    @ResponseStatus(HttpStatus.OK)
     @ApiOperation("Obtains a book details by id")
-    public BookDTO get(@PathVariable Long id){
-        return service
+    public BookDTO get(@PathVariable Long id, WebRequest request){
+        Book book = service
                 .getById(id)
-                .map(book -> modelMapper.map(book, BookDTO.class))
                 .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND));
+        if (request.checkNotModified(ETags.strong(book.getVersion()))) {
+            return null;
+        }
+        return bookMapper.toDto(book);
+    }
+
+    @GetMapping(params = "ids")
+    @ApiOperation("Obtains several books by id with a single query, in request order; missing ids are listed in notFound")
+    public BookLookupDTO<Long> getByIds(@RequestParam List<Long> ids){
+        checkLookupSize(ids);
+        return lookupResult(ids, service.getByIds(ids));
+    }
+
+    @PostMapping("lookup")
+    @ApiOperation("Obtains several books by isbn with a single query, in request order; missing isbns are listed in notFound")
+    public BookLookupDTO<String> lookup(@RequestBody @Valid IsbnLookupDTO dto){
+        checkLookupSize(dto.getIsbns());
+        return lookupResult(dto.getIsbns(), service.getBooksByIsbns(dto.getIsbns()));
+    }
+
+    private void checkLookupSize(List<?> keys){
+        if (keys.size() > lookupMaxSize) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Too many books requested, the limit is " + lookupMaxSize + ".");
+        }
+    }
 
+    private <K> BookLookupDTO<K> lookupResult(List<K> keys, Map<K, Book> found){
+        BookLookupDTO<K> result = new BookLookupDTO<>();
+        for (K key : new LinkedHashSet<>(keys)) {
+            Book book = found.get(key);
+            if (book == null) {
+                result.getNotFound().add(key);
+            } else {
+                result.getBooks().add(bookMapper.toDto(book));
+            }
+        }
+        return result;
     }
 
     @DeleteMapping("{id}")
@@ -70,48 +237,72 @@ public class BookController {
             @ApiResponse(code = 401, message = "Forbidden to remove the book")
     })
     public void delete(@PathVariable Long id){
-        Book book = service.getById(id).orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND));
-        service.delete(book);
+        if (!service.deleteById(id)) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND);
+        }
     }
 
     @PutMapping("{id}")
-    @ApiOperation("Updates a book")
-    public BookDTO update(@PathVariable Long id,@RequestBody @Valid BookDTO dto){
-        return service.getById(id).map( book -> {
-
-            book.setAuthor(dto.getAuthor());
-            book.setTitle(dto.getTitle());
-            book = service.update(book);
-            return modelMapper.map(book, BookDTO.class);
-
-        }).orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND));
-
+    @ApiOperation("Updates a book; If-Match rejects the update with 412 when the book has changed")
+    public ResponseEntity<BookDTO> update(@PathVariable Long id, @RequestBody @Valid BookDTO dto,
+                                          @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch){
+        Long expectedVersion = ETags.expectedVersion(ifMatch);
+        // o isbn do corpo e ignorado: so titulo e autor podem ser alterados
+        Book changes = Book.builder().id(id).title(dto.getTitle()).author(dto.getAuthor()).build();
+        Optional<Book> updated = service.updateDetails(changes, expectedVersion);
+        if (updated.isPresent()) {
+            return ResponseEntity.ok().headers(ETags.headers(updated.get().getVersion())).body(bookMapper.toDto(updated.get()));
+        }
+        // nada foi alterado: descobre o motivo para responder com o status certo
+        Book book = service.getById(id).orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND));
+        ETags.checkIfMatch(ifMatch, book.getVersion());
+        throw new ObjectOptimisticLockingFailureException(Book.class, id);
     }
 
     @GetMapping
-    @ApiOperation("Find book by params")
-    public Page<BookDTO> find(BookDTO dto, Pageable pageRequest){
-        Book filter = modelMapper.map(dto, Book.class);
-        Page<Book> result = service.find(filter, pageRequest);
-        List<BookDTO> list = result.getContent()
-                .stream()
-                .map(entity -> modelMapper.map(entity, BookDTO.class))
-                .collect(Collectors.toList());
-        return new PageImpl<BookDTO>(list, pageRequest, result.getTotalElements());
+    @ApiOperation("Find book by params; total=approx (default) uses a cached count, total=exact runs the count, total=none skips it; envelope=compact (servlet stack only, ignored by the reactive one) returns only items, next and total")
+    public Slice<BookDTO> find(BookDTO dto, Pageable pageRequest,
+                               @RequestParam(name = PageTotals.PARAM, defaultValue = PageTotals.APPROX) String total,
+                               WebRequest request){
+        Book filter = bookMapper.toEntity(dto);
+        Slice<Book> result = PageTotals.fetch(total,
+                () -> service.find(filter, pageRequest),
+                () -> service.findSlice(filter, pageRequest),
+                () -> service.countApproximately(filter));
+        if (request.checkNotModified(ETags.weak(result, book -> book.getId() + ":" + book.getVersion()))) {
+            return null;
+        }
+        return PageTotals.withContent(result, bookMapper.toDtoList(result.getContent()), pageRequest);
+    }
+
+    @GetMapping(params = "after")
+    @ApiOperation("Find book by params using keyset pagination")
+    public CursorPageDTO<BookDTO> findAfter(BookDTO dto, @RequestParam String after, Pageable pageRequest){
+        Keyset keyset = KeysetCursors.decode(after, pageRequest.getSort(), KeysetCursors.BOOK_KEYS);
+        Slice<Book> result = service.findAfter(bookMapper.toEntity(dto), keyset, pageRequest.getPageSize());
+        return KeysetCursors.page(result, keyset, bookMapper.toDtoList(result.getContent()));
     }
 
     @GetMapping("{id}/loans")
-    public Page<LoanDto> loansByBook( @PathVariable Long id, Pageable pageable){
+    public Slice<LoanDto> loansByBook( @PathVariable Long id, Pageable pageable,
+                                       @RequestParam(name = PageTotals.PARAM, defaultValue = PageTotals.APPROX) String total,
+                                       WebRequest request){
+        Book book = this.service.getById(id).orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND));
+        Slice<Loan> result = PageTotals.fetch(total,
+                () -> this.loanService.getLoansByBook(book, pageable),
+                () -> this.loanService.getLoanSliceByBook(book, pageable),
+                () -> this.loanService.countApproximatelyByBook(book));
+        if (request.checkNotModified(ETags.weak(result, LoanController::identity))) {
+            return null;
+        }
+        return PageTotals.withContent(result, loanMapper.toDtoList(result.getContent()), pageable);
+    }
+
+    @GetMapping(value = "{id}/loans", params = "after")
+    public CursorPageDTO<LoanDto> loansByBookAfter(@PathVariable Long id, @RequestParam String after, Pageable pageable){
         Book book = this.service.getById(id).orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND));
-        Page<Loan> result = this.loanService.getLoansByBook(book, pageable);
-        List<LoanDto> list = result.getContent().stream()
-                .map( loan -> {
-                    Book loanBook = loan.getBook();
-                    BookDTO bookDTO = modelMapper.map(loanBook, BookDTO.class);
-                    LoanDto loanDto = modelMapper.map(loan, LoanDto.class);
-                    loanDto.setBookDTO(bookDTO);
-                    return loanDto;
-                }).collect(Collectors.toList());
-        return new PageImpl<LoanDto>(list, pageable, result.getTotalElements());
+        Keyset keyset = KeysetCursors.decode(after, pageable.getSort(), KeysetCursors.LOAN_KEYS);
+        Slice<Loan> result = this.loanService.getLoansByBookAfter(book, keyset, pageable.getPageSize());
+        return KeysetCursors.page(result, keyset, loanMapper.toDtoList(result.getContent()));
     }
 }
@@ -0,0 +1,94 @@
+package com.cursotddrsilva.libraryapi.api.resource;
+
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Slice;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.util.DigestUtils;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.function.Function;
+
+/**
+ * ETags das respostas de livros e emprestimos, usados pelos stacks servlet e reativo.
+ * Recursos individuais usam um ETag forte com a {@code @Version} da entidade; paginas usam um
+ * ETag fraco calculado a partir dos ids e versoes das linhas, antes de qualquer mapeamento.
+ */
+public final class ETags {
+
+    private ETags(){
+    }
+
+    /**
+     * {@code null} para entidades ainda sem versao.
+     */
+    public static String strong(Long version){
+        return version == null ? null : "\"" + version + "\"";
+    }
+
+    public static HttpHeaders headers(Long version){
+        HttpHeaders headers = new HttpHeaders();
+        String etag = strong(version);
+        if (etag != null) {
+            headers.setETag(etag);
+        }
+        return headers;
+    }
+
+    /**
+     * @param identity id e versao de cada linha (e das entidades aninhadas que aparecem na resposta)
+     */
+    public static <T> String weak(Slice<T> slice, Function<T, String> identity){
+        StringBuilder key = new StringBuilder(slice.getPageable().toString())
+                .append('|').append(slice.hasNext());
+        if (slice instanceof Page) {
+            key.append('|').append(((Page<T>) slice).getTotalElements());
+        }
+        for (T item : slice) {
+            key.append('|').append(identity.apply(item));
+        }
+        return "W/\"" + DigestUtils.md5DigestAsHex(key.toString().getBytes(StandardCharsets.UTF_8)) + "\"";
+    }
+
+    /**
+     * If-Match usa comparacao forte: so {@code *} ou o ETag da versao atual passam.
+     * Sem o header a alteracao segue, protegida apenas pelo lock otimista.
+     */
+    public static void checkIfMatch(String ifMatch, Long version){
+        if (ifMatch == null) {
+            return;
+        }
+        String current = strong(version);
+        for (String etag : ifMatch.split(",")) {
+            String candidate = etag.trim();
+            if (candidate.equals("*") || candidate.equals(current)) {
+                return;
+            }
+        }
+        throw new ResponseStatusException(HttpStatus.PRECONDITION_FAILED, "Resource has been modified.");
+    }
+
+    /**
+     * Versao exigida pelo If-Match, para uso na clausula WHERE de uma escrita condicional.
+     * {@code null} sem o header ou com {@code *}. Como cada recurso tem um unico ETag forte,
+     * listas com mais de um valor e ETags fracos ou invalidos nunca passam e resultam em 412.
+     */
+    public static Long expectedVersion(String ifMatch){
+        if (ifMatch == null) {
+            return null;
+        }
+        String candidate = ifMatch.trim();
+        if (candidate.equals("*")) {
+            return null;
+        }
+        if (candidate.length() > 2 && candidate.startsWith("\"") && candidate.endsWith("\"")) {
+            try {
+                return Long.valueOf(candidate.substring(1, candidate.length() - 1));
+            } catch (NumberFormatException e) {
+                // cai no 412 abaixo
+            }
+        }
+        throw new ResponseStatusException(HttpStatus.PRECONDITION_FAILED, "Resource has been modified.");
+    }
+}
@@ -0,0 +1,97 @@
+package com.cursotddrsilva.libraryapi.api.resource;
+
+import com.cursotddrsilva.libraryapi.api.dto.CursorPageDTO;
+import com.cursotddrsilva.libraryapi.model.repository.Keyset;
+import org.springframework.beans.BeanWrapper;
+import org.springframework.beans.PropertyAccessorFactory;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Codifica e decodifica o cursor opaco ({@code after}) das listagens por keyset.
+ * O cursor carrega a propriedade e a direcao da ordenacao, o id e o valor de ordenacao da ultima linha entregue.
+ */
+final class KeysetCursors {
+
+    static final Map<String, Class<?>> BOOK_KEYS = Map.of(
+            Keyset.ID, Long.class,
+            "title", String.class,
+            "author", String.class,
+            "isbn", String.class);
+
+    static final Map<String, Class<?>> LOAN_KEYS = Map.of(
+            Keyset.ID, Long.class,
+            "loanDate", LocalDate.class);
+
+    private static final String SEPARATOR = "|";
+
+    private KeysetCursors(){
+    }
+
+    /**
+     * Cursor vazio inicia a listagem usando a primeira ordenacao pedida (ou id crescente).
+     */
+    static Keyset decode(String after, Sort sort, Map<String, Class<?>> keys){
+        if (after == null || after.isEmpty()) {
+            Sort.Order order = sort.stream().findFirst().orElse(Sort.Order.asc(Keyset.ID));
+            if (!keys.containsKey(order.getProperty())) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                        "Keyset pagination is not available for sort property " + order.getProperty() + ".");
+            }
+            return Keyset.first(order.getProperty(), order.getDirection());
+        }
+
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(after), StandardCharsets.UTF_8);
+            String[] parts = raw.split("\\|", 4);
+            Class<?> type = parts.length == 4 ? keys.get(parts[0]) : null;
+            if (type == null) {
+                throw new IllegalArgumentException(raw);
+            }
+            return new Keyset(parts[0], Sort.Direction.fromString(parts[1]), parse(parts[3], type), Long.valueOf(parts[2]));
+        } catch (IllegalArgumentException | DateTimeParseException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid cursor.");
+        }
+    }
+
+    static <E, D> CursorPageDTO<D> page(Slice<E> slice, Keyset keyset, List<D> content){
+        return CursorPageDTO.<D>builder()
+                .content(content)
+                .size(slice.getSize())
+                .hasNext(slice.hasNext())
+                .next(next(slice, keyset))
+                .build();
+    }
+
+    private static String next(Slice<?> slice, Keyset keyset){
+        if (!slice.hasNext() || !slice.hasContent()) {
+            return null;
+        }
+        Object last = slice.getContent().get(slice.getNumberOfElements() - 1);
+        BeanWrapper wrapper = PropertyAccessorFactory.forBeanPropertyAccess(last);
+        String raw = keyset.getProperty() + SEPARATOR
+                + keyset.getDirection() + SEPARATOR
+                + wrapper.getPropertyValue(Keyset.ID) + SEPARATOR
+                + wrapper.getPropertyValue(keyset.getProperty());
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static Object parse(String value, Class<?> type){
+        if (Long.class.equals(type)) {
+            return Long.valueOf(value);
+        }
+        if (LocalDate.class.equals(type)) {
+            return LocalDate.parse(value);
+        }
+        return value;
+    }
+}
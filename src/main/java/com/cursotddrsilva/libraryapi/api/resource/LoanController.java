@@ -1,38 +1,45 @@
 package com.cursotddrsilva.libraryapi.api.resource;
 
-import com.cursotddrsilva.libraryapi.api.dto.BookDTO;
+import com.cursotddrsilva.libraryapi.api.dto.BulkReturnLoanDTO;
+import com.cursotddrsilva.libraryapi.api.dto.BulkReturnResultDTO;
+import com.cursotddrsilva.libraryapi.api.dto.CursorPageDTO;
 import com.cursotddrsilva.libraryapi.api.dto.LoanDto;
 import com.cursotddrsilva.libraryapi.api.dto.LoanFilterDTO;
 import com.cursotddrsilva.libraryapi.api.dto.ReturnedLoanDTO;
+import com.cursotddrsilva.libraryapi.api.mapper.LoanMapper;
 import com.cursotddrsilva.libraryapi.model.entity.Book;
 import com.cursotddrsilva.libraryapi.model.entity.Loan;
+import com.cursotddrsilva.libraryapi.model.repository.Keyset;
 import com.cursotddrsilva.libraryapi.service.BookService;
 import com.cursotddrsilva.libraryapi.service.LoanService;
 import io.swagger.annotations.Api;
 import io.swagger.annotations.ApiOperation;
 import lombok.RequiredArgsConstructor;
-import org.modelmapper.ModelMapper;
-import org.springframework.data.domain.Page;
-import org.springframework.data.domain.PageImpl;
+import org.springframework.context.annotation.Profile;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 import org.springframework.web.server.ResponseStatusException;
 
+import javax.validation.Valid;
 import java.time.LocalDate;
-import java.util.List;
-import java.util.stream.Collectors;
+import java.util.Optional;
 
 @RestController
 @RequestMapping("api/loans")
+@Profile("!reactive")
 @RequiredArgsConstructor
 @Api("Loan API")
 public class LoanController {
 
     private final LoanService service;
     private final BookService bookService;
-    private final ModelMapper modelMapper;
+    private final LoanMapper loanMapper;
 
     @PostMapping
     @ResponseStatus(HttpStatus.CREATED)
@@ -53,29 +60,53 @@ public class LoanController {
     }
 
     @PatchMapping("{id}")
-    @ApiOperation("Find the loan returned.")
-    public void returnBook(@PathVariable Long id, @RequestBody ReturnedLoanDTO dto){
+    @ApiOperation("Find the loan returned; If-Match rejects the update with 412 when the loan has changed")
+    public ResponseEntity<Void> returnBook(@PathVariable Long id, @RequestBody ReturnedLoanDTO dto,
+                                           @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch){
+        boolean returned = Boolean.TRUE.equals(dto.getReturned());
+        Long expectedVersion = ETags.expectedVersion(ifMatch);
+        Optional<Long> version = this.service.setReturned(id, returned, expectedVersion);
+        if (version.isPresent()) {
+            return ResponseEntity.ok().headers(ETags.headers(version.get())).build();
+        }
+        // nada foi alterado: emprestimo inexistente, versao diferente ou ja no estado pedido
         Loan loan = this.service.getById(id).orElseThrow( () -> new ResponseStatusException(HttpStatus.NOT_FOUND));
-        loan.setReturned(dto.getReturned());
-        this.service.update(loan);
+        ETags.checkIfMatch(ifMatch, loan.getVersion());
+        return ResponseEntity.ok().headers(ETags.headers(loan.getVersion())).build();
+    }
+
+    @PatchMapping
+    @ApiOperation("Returns several loans in a single transaction, reporting the result per id")
+    public BulkReturnResultDTO returnBooks(@RequestBody @Valid BulkReturnLoanDTO dto){
+        return this.service.returnLoans(dto.getIds());
     }
 
     @GetMapping
-    @ApiOperation("Find a loan")
-    public Page<LoanDto> find(LoanFilterDTO dto, Pageable pageable){
-        Page<Loan> result = this.service.find(dto, pageable);
-        List<LoanDto> loans = result
-                .getContent()
-                .stream()
-                .map(entity -> {
-                    Book book = entity.getBook();
-                    BookDTO bookDTO = modelMapper.map(book, BookDTO.class);
-                    LoanDto loanDto = modelMapper.map(entity, LoanDto.class);
-                    loanDto.setBookDTO(bookDTO);
-                    return loanDto;
-                }).collect(Collectors.toList());
+    @ApiOperation("Find a loan; total=approx (default) uses a cached count, total=exact runs the count, total=none skips it; envelope=compact (servlet stack only, ignored by the reactive one) returns only items, next and total")
+    public Slice<LoanDto> find(LoanFilterDTO dto, Pageable pageable,
+                               @RequestParam(name = PageTotals.PARAM, defaultValue = PageTotals.APPROX) String total,
+                               WebRequest request){
+        Slice<Loan> result = PageTotals.fetch(total,
+                () -> this.service.find(dto, pageable),
+                () -> this.service.findSlice(dto, pageable),
+                () -> this.service.countApproximately(dto));
+        if (request.checkNotModified(ETags.weak(result, LoanController::identity))) {
+            return null;
+        }
+        return PageTotals.withContent(result, loanMapper.toDtoList(result.getContent()), pageable);
+    }
+
+    // o LoanDto inclui o livro, entao a versao do livro tambem entra no ETag da pagina
+    static String identity(Loan loan){
+        return loan.getId() + ":" + loan.getVersion() + ":" + (loan.getBook() == null ? null : loan.getBook().getVersion());
+    }
 
-        return new PageImpl<>(loans, pageable, result.getTotalElements());
+    @GetMapping(params = "after")
+    @ApiOperation("Find a loan using keyset pagination")
+    public CursorPageDTO<LoanDto> findAfter(LoanFilterDTO dto, @RequestParam String after, Pageable pageable){
+        Keyset keyset = KeysetCursors.decode(after, pageable.getSort(), KeysetCursors.LOAN_KEYS);
+        Slice<Loan> result = this.service.findAfter(dto, keyset, pageable.getPageSize());
+        return KeysetCursors.page(result, keyset, loanMapper.toDtoList(result.getContent()));
     }
 
 }
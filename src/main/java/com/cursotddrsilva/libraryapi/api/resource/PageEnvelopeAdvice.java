@@ -0,0 +1,57 @@
+package com.cursotddrsilva.libraryapi.api.resource;
+
+import com.cursotddrsilva.libraryapi.api.dto.CompactPageDTO;
+import org.springframework.context.annotation.Profile;
+import org.springframework.core.MethodParameter;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Slice;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.http.server.ServerHttpResponse;
+import org.springframework.web.bind.annotation.ControllerAdvice;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyAdvice;
+import org.springframework.web.util.UriComponentsBuilder;
+
+/**
+ * Parametro {@code envelope} das listagens paginadas: {@code page} (padrao) mantem o JSON do
+ * Page/Slice do Spring Data, com pageable e sort; {@code compact} responde um {@link CompactPageDTO}.
+ * So existe no stack servlet: com o profile {@code reactive} o parametro e ignorado.
+ */
+@ControllerAdvice
+@Profile("!reactive")
+public class PageEnvelopeAdvice implements ResponseBodyAdvice<Object> {
+
+    static final String PARAM = "envelope";
+    static final String PAGE = "page";
+    static final String COMPACT = "compact";
+
+    @Override
+    public boolean supports(MethodParameter returnType, Class<? extends HttpMessageConverter<?>> converterType) {
+        return Slice.class.isAssignableFrom(returnType.getParameterType());
+    }
+
+    @Override
+    public Object beforeBodyWrite(Object body, MethodParameter returnType, MediaType selectedContentType,
+                                  Class<? extends HttpMessageConverter<?>> selectedConverterType,
+                                  ServerHttpRequest request, ServerHttpResponse response) {
+        String envelope = UriComponentsBuilder.fromUri(request.getURI()).build().getQueryParams().getFirst(PARAM);
+        if (envelope == null || envelope.equals(PAGE) || !(body instanceof Slice)) {
+            return body;
+        }
+        if (!envelope.equals(COMPACT)) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid envelope, expected page or compact.");
+        }
+        return compact((Slice<?>) body);
+    }
+
+    public static <T> CompactPageDTO<T> compact(Slice<T> slice){
+        return CompactPageDTO.<T>builder()
+                .items(slice.getContent())
+                .next(slice.hasNext() ? slice.getNumber() + 1 : null)
+                .total(slice instanceof Page ? ((Page<T>) slice).getTotalElements() : null)
+                .build();
+    }
+}
@@ -0,0 +1,70 @@
+package com.cursotddrsilva.libraryapi.api.resource;
+
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.List;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Parametro {@code total} das listagens paginadas: {@code approx} (padrao) usa o total em cache,
+ * {@code exact} executa o count e {@code none} responde um Slice, sem total.
+ */
+final class PageTotals {
+
+    static final String PARAM = "total";
+    static final String APPROX = "approx";
+
+    enum Mode {
+        NONE, APPROX, EXACT
+    }
+
+    private PageTotals(){
+    }
+
+    static Mode mode(String total){
+        try {
+            return Mode.valueOf(total.toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid total, expected none, approx or exact.");
+        }
+    }
+
+    /**
+     * Executa a consulta do modo pedido: Page com count, Slice com total aproximado ou Slice sem total.
+     */
+    static <T> Slice<T> fetch(String total, Supplier<Page<T>> exact, Supplier<Slice<T>> slice, LongSupplier approximateTotal){
+        switch (mode(total)) {
+            case EXACT:
+                return exact.get();
+            case APPROX:
+                return approximate(slice.get(), approximateTotal.getAsLong());
+            default:
+                return slice.get();
+        }
+    }
+
+    /**
+     * Mesmo tipo de resposta (Page ou Slice) de {@code result}, com o conteudo ja mapeado.
+     */
+    static <T, R> Slice<R> withContent(Slice<T> result, List<R> content, Pageable pageable){
+        return result instanceof Page
+                ? new PageImpl<>(content, pageable, ((Page<T>) result).getTotalElements())
+                : new SliceImpl<>(content, pageable, result.hasNext());
+    }
+
+    /**
+     * Pagina com o total aproximado, corrigido para nao contradizer o conteudo: nunca menor que as
+     * linhas ja vistas e sempre com mais uma pagina quando o Slice indica que ela existe.
+     */
+    static <T> Page<T> approximate(Slice<T> slice, long total){
+        long seen = slice.getPageable().getOffset() + slice.getNumberOfElements() + (slice.hasNext() ? 1 : 0);
+        return new PageImpl<>(slice.getContent(), slice.getPageable(), Math.max(total, seen));
+    }
+}
@@ -0,0 +1,36 @@
+package com.cursotddrsilva.libraryapi.api.resource;
+
+import com.cursotddrsilva.libraryapi.api.dto.BookLoanStatisticsDTO;
+import com.cursotddrsilva.libraryapi.api.dto.LoanStatisticsDTO;
+import com.cursotddrsilva.libraryapi.service.LoanStatisticsService;
+import io.swagger.annotations.Api;
+import io.swagger.annotations.ApiOperation;
+import lombok.RequiredArgsConstructor;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+/**
+ * Servido tanto no stack servlet quanto no reativo: as respostas vem de contadores em memoria.
+ */
+@RestController
+@RequestMapping("/api/stats")
+@RequiredArgsConstructor
+@Api("Statistics API")
+public class StatisticsController {
+
+    private final LoanStatisticsService service;
+
+    @GetMapping
+    @ApiOperation("Obtains active, overdue and total loan counts")
+    public LoanStatisticsDTO get(){
+        return service.getStatistics();
+    }
+
+    @GetMapping("books/{id}")
+    @ApiOperation("Obtains the number of loans of a book")
+    public BookLoanStatisticsDTO getByBook(@PathVariable Long id){
+        return service.getBookStatistics(id);
+    }
+}
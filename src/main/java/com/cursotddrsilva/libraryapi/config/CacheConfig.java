@@ -0,0 +1,20 @@
+package com.cursotddrsilva.libraryapi.config;
+
+import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Caches de leitura de livros. Tamanho e expiracao ficam em {@code spring.cache.caffeine.spec};
+ * acertos, falhas e despejos sao publicados nas metricas {@code cache.*} do actuator.
+ * As regioes do cache de segundo nivel do Hibernate sao configuradas em {@code application.conf}.
+ */
+@EnableCaching
+@Configuration
+public class CacheConfig {
+
+    public static final String BOOKS = "books";
+    public static final String BOOKS_BY_ISBN = "booksByIsbn";
+
+    public static final String BOOK_REGION = "library-book";
+    public static final String BOOK_BY_ISBN_REGION = "library-book-by-isbn";
+}
@@ -0,0 +1,64 @@
+package com.cursotddrsilva.libraryapi.config;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.CacheRegionStatistics;
+import org.hibernate.stat.Statistics;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.stereotype.Component;
+
+import javax.persistence.EntityManagerFactory;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * {@code /actuator/hibernatecache}: acertos, falhas e taxa de acerto do cache de segundo nivel
+ * e do cache de consultas, no total e por regiao. Os contadores brutos tambem saem nas metricas
+ * {@code hibernate.*}.
+ */
+@Component
+@Endpoint(id = "hibernatecache")
+public class HibernateCacheEndpoint {
+
+    private final EntityManagerFactory entityManagerFactory;
+
+    public HibernateCacheEndpoint(EntityManagerFactory entityManagerFactory) {
+        this.entityManagerFactory = entityManagerFactory;
+    }
+
+    @ReadOperation
+    public Map<String, Object> statistics() {
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+
+        // nulas quando o cache esta desligado (ex.: profile reactive)
+        Map<String, Object> regions = new TreeMap<>();
+        putRegion(regions, CacheConfig.BOOK_REGION, statistics.getCacheRegionStatistics(CacheConfig.BOOK_REGION));
+        putRegion(regions, CacheConfig.BOOK_BY_ISBN_REGION, statistics.getQueryRegionStatistics(CacheConfig.BOOK_BY_ISBN_REGION));
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("statisticsEnabled", statistics.isStatisticsEnabled());
+        result.put("secondLevelCache", counters(statistics.getSecondLevelCacheHitCount(),
+                statistics.getSecondLevelCacheMissCount(), statistics.getSecondLevelCachePutCount()));
+        result.put("queryCache", counters(statistics.getQueryCacheHitCount(),
+                statistics.getQueryCacheMissCount(), statistics.getQueryCachePutCount()));
+        result.put("regions", regions);
+        result.put("prepareStatementCount", statistics.getPrepareStatementCount());
+        return result;
+    }
+
+    private static void putRegion(Map<String, Object> regions, String region, CacheRegionStatistics statistics) {
+        if (statistics != null) {
+            regions.put(region, counters(statistics.getHitCount(), statistics.getMissCount(), statistics.getPutCount()));
+        }
+    }
+
+    private static Map<String, Object> counters(long hits, long misses, long puts) {
+        Map<String, Object> counters = new LinkedHashMap<>();
+        counters.put("hits", hits);
+        counters.put("misses", misses);
+        counters.put("puts", puts);
+        counters.put("hitRatio", hits + misses == 0 ? 0d : (double) hits / (hits + misses));
+        return counters;
+    }
+}
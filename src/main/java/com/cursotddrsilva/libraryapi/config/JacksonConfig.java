@@ -0,0 +1,22 @@
+package com.cursotddrsilva.libraryapi.config;
+
+import com.fasterxml.jackson.databind.Module;
+import com.fasterxml.jackson.module.blackbird.BlackbirdModule;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Troca os getters e setters por reflexao do Jackson por acessores gerados em tempo de execucao
+ * (LambdaMetafactory), nos stacks servlet e reativo. O Spring Boot registra qualquer {@link Module}
+ * no ObjectMapper.
+ */
+@Configuration
+@ConditionalOnProperty(name = "application.jackson.blackbird.enabled", havingValue = "true", matchIfMissing = true)
+public class JacksonConfig {
+
+    @Bean
+    public Module blackbirdModule(){
+        return new BlackbirdModule();
+    }
+}
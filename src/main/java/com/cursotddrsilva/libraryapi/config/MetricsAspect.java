@@ -0,0 +1,73 @@
+package com.cursotddrsilva.libraryapi.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.stereotype.Component;
+import org.springframework.util.ClassUtils;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Mede cada chamada aos services ({@code library.service}) e repositorios ({@code library.repository})
+ * com a tag {@code operation} (ex.: {@code BookService.find}). Excecoes sao contadas em
+ * {@code library.service.errors} / {@code library.repository.errors}, com a classe da excecao na tag.
+ */
+@Aspect
+@Component
+public class MetricsAspect {
+
+    private static final String BASE_PACKAGE = "com.cursotddrsilva.libraryapi";
+
+    private final MeterRegistry meterRegistry;
+    private final Map<Class<?>, String> componentNames = new ConcurrentHashMap<>();
+
+    public MetricsAspect(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Around("execution(public * com.cursotddrsilva.libraryapi.service.BookService+.*(..)) " +
+            "|| execution(public * com.cursotddrsilva.libraryapi.service.LoanService+.*(..)) " +
+            "|| execution(public * com.cursotddrsilva.libraryapi.service.EmailService+.*(..))")
+    public Object timeService(ProceedingJoinPoint joinPoint) throws Throwable {
+        return record("library.service", joinPoint);
+    }
+
+    // repositorios reativos retornam Mono/Flux: o tempo da chamada nao mede a consulta
+    @Around("this(org.springframework.data.repository.Repository) " +
+            "&& !this(org.springframework.data.repository.reactive.ReactiveCrudRepository)")
+    public Object timeRepository(ProceedingJoinPoint joinPoint) throws Throwable {
+        return record("library.repository", joinPoint);
+    }
+
+    private Object record(String metric, ProceedingJoinPoint joinPoint) throws Throwable {
+        String operation = componentName(joinPoint.getThis()) + "." + joinPoint.getSignature().getName();
+        Timer.Sample sample = Timer.start(meterRegistry);
+        String exception = "none";
+        try {
+            return joinPoint.proceed();
+        } catch (Throwable e) {
+            exception = e.getClass().getSimpleName();
+            meterRegistry.counter(metric + ".errors", "operation", operation, "exception", exception).increment();
+            throw e;
+        } finally {
+            sample.stop(meterRegistry.timer(metric, "operation", operation, "exception", exception));
+        }
+    }
+
+    /**
+     * Nome da interface do componente (BookService, LoanRepository...), e nao da implementacao ou do proxy.
+     */
+    private String componentName(Object proxy) {
+        return componentNames.computeIfAbsent(proxy.getClass(), type -> ClassUtils.getAllInterfacesForClassAsSet(type)
+                .stream()
+                .filter(candidate -> candidate.getName().startsWith(BASE_PACKAGE))
+                .map(Class::getSimpleName)
+                .filter(name -> name.endsWith("Service") || name.endsWith("Repository"))
+                .findFirst()
+                .orElse(ClassUtils.getUserClass(type).getSimpleName()));
+    }
+}
@@ -0,0 +1,127 @@
+package com.cursotddrsilva.libraryapi.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.metrics.micrometer.MicrometerMetricsTrackerFactory;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.flywaydb.core.Flyway;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.core.env.Environment;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.orm.jpa.AbstractEntityManagerFactoryBean;
+
+import javax.sql.DataSource;
+import java.io.Closeable;
+import java.sql.Connection;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Modo opcional ({@code application.datasource.replica.enabled=true}): um pool Hikari para o primario
+ * ({@code spring.datasource.*}) e outro para a replica ({@code application.datasource.replica.*}),
+ * escolhidos por {@link ReadWriteRoutingDataSource}. O tempo de espera por conexao de cada pool sai
+ * na metrica {@code hikaricp.connections.acquire}, com a tag {@code pool}. Leituras na replica nao
+ * alimentam o cache de segundo nivel ({@link ReplicaJpaDialect}).
+ */
+@Configuration
+@ConditionalOnProperty(name = "application.datasource.replica.enabled", havingValue = "true")
+public class ReadReplicaConfig {
+
+    /**
+     * O dialeto e lido da fabrica de EntityManager pelo gerenciador de transacoes; por isso e trocado
+     * nela, antes da inicializacao.
+     */
+    @Bean
+    public static BeanPostProcessor replicaJpaDialectPostProcessor() {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessBeforeInitialization(Object bean, String beanName) {
+                if (bean instanceof AbstractEntityManagerFactoryBean) {
+                    ((AbstractEntityManagerFactoryBean) bean).setJpaDialect(new ReplicaJpaDialect());
+                }
+                return bean;
+            }
+        };
+    }
+
+    /**
+     * Os dois pools sao criados aqui e nao como beans: um DataSource registrado dispara a inicializacao
+     * do schema, que pede o DataSource principal ainda em criacao.
+     */
+    @Bean
+    @Primary
+    public DataSource dataSource(DataSourceProperties properties,
+                                 Environment environment,
+                                 ObjectProvider<MeterRegistry> meterRegistry) {
+        Binder binder = Binder.get(environment);
+        HikariDataSource primary = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        binder.bind("spring.datasource.hikari", Bindable.ofInstance(primary));
+        primary.setPoolName(ReadWriteRoutingDataSource.PRIMARY);
+
+        String url = environment.getRequiredProperty("application.datasource.replica.url");
+        String username = environment.getProperty("application.datasource.replica.username", "sa");
+        String password = environment.getProperty("application.datasource.replica.password", "");
+        HikariDataSource replica = DataSourceBuilder.create()
+                .type(HikariDataSource.class)
+                .url(url)
+                .username(username)
+                .password(password)
+                .build();
+        binder.bind("application.datasource.replica.hikari", Bindable.ofInstance(replica));
+        replica.setPoolName(ReadWriteRoutingDataSource.REPLICA);
+        replica.setReadOnly(true);
+        if (environment.getProperty("application.datasource.replica.migrate", Boolean.class, false)) {
+            // apenas para replicas locais sem replicacao (ex.: duas instancias H2)
+            Flyway.configure().dataSource(url, username, password).load().migrate();
+        }
+
+        // fora do contexto os pools nao recebem as metricas do Boot
+        meterRegistry.ifAvailable(registry -> {
+            primary.setMetricsTrackerFactory(new MicrometerMetricsTrackerFactory(registry));
+            replica.setMetricsTrackerFactory(new MicrometerMetricsTrackerFactory(registry));
+        });
+
+        Map<Object, Object> targets = new HashMap<>();
+        targets.put(ReadWriteRoutingDataSource.PRIMARY, primary);
+        targets.put(ReadWriteRoutingDataSource.REPLICA, replica);
+        ReadWriteRoutingDataSource routing = new ReadWriteRoutingDataSource();
+        routing.setTargetDataSources(targets);
+        routing.setDefaultTargetDataSource(primary);
+        routing.afterPropertiesSet();
+
+        // com os padroes informados o proxy nao abre uma conexao na inicializacao para descobri-los
+        PooledDataSourceProxy proxy = new PooledDataSourceProxy(primary, replica);
+        proxy.setTargetDataSource(routing);
+        proxy.setDefaultAutoCommit(true);
+        proxy.setDefaultTransactionIsolation(Connection.TRANSACTION_READ_COMMITTED);
+        proxy.afterPropertiesSet();
+        return proxy;
+    }
+
+    /**
+     * Fecha os pools junto com o contexto ({@code close} e o metodo de destruicao inferido do bean).
+     */
+    static class PooledDataSourceProxy extends LazyConnectionDataSourceProxy implements Closeable {
+
+        private final HikariDataSource[] pools;
+
+        PooledDataSourceProxy(HikariDataSource... pools) {
+            this.pools = pools;
+        }
+
+        @Override
+        public void close() {
+            for (HikariDataSource pool : pools) {
+                pool.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package com.cursotddrsilva.libraryapi.config;
+
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Transacoes {@code readOnly} vao para a replica; as demais e o acesso fora de transacao, para o primario.
+ * Deve ficar atras de um {@link org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy}: o
+ * Hibernate pede a conexao antes de a transacao ser marcada como somente leitura.
+ */
+public class ReadWriteRoutingDataSource extends AbstractRoutingDataSource {
+
+    public static final String PRIMARY = "primary";
+    public static final String REPLICA = "replica";
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        return TransactionSynchronizationManager.isCurrentTransactionReadOnly() ? REPLICA : PRIMARY;
+    }
+}
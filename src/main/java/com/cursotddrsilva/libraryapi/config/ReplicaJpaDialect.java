@@ -0,0 +1,56 @@
+package com.cursotddrsilva.libraryapi.config;
+
+import org.hibernate.CacheMode;
+import org.hibernate.Session;
+import org.springframework.orm.jpa.vendor.HibernateJpaDialect;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionException;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceException;
+import java.sql.SQLException;
+
+/**
+ * Transacoes {@code readOnly} leem da replica, que pode estar atrasada em relacao ao primario. Nelas a
+ * sessao usa {@link CacheMode#GET}: le do cache de segundo nivel, mas nao guarda nele as linhas lidas.
+ * O modo anterior volta ao fim da transacao.
+ */
+public class ReplicaJpaDialect extends HibernateJpaDialect {
+
+    @Override
+    public Object beginTransaction(EntityManager entityManager, TransactionDefinition definition)
+            throws PersistenceException, SQLException, TransactionException {
+        Object transactionData = super.beginTransaction(entityManager, definition);
+        if (!definition.isReadOnly()) {
+            return transactionData;
+        }
+        Session session = entityManager.unwrap(Session.class);
+        CacheMode previousCacheMode = session.getCacheMode();
+        session.setCacheMode(CacheMode.GET);
+        return new ReplicaTransactionData(transactionData, session, previousCacheMode);
+    }
+
+    @Override
+    public void cleanupTransaction(Object transactionData) {
+        if (transactionData instanceof ReplicaTransactionData) {
+            ReplicaTransactionData replica = (ReplicaTransactionData) transactionData;
+            replica.session.setCacheMode(replica.previousCacheMode);
+            super.cleanupTransaction(replica.delegate);
+        } else {
+            super.cleanupTransaction(transactionData);
+        }
+    }
+
+    private static class ReplicaTransactionData {
+
+        private final Object delegate;
+        private final Session session;
+        private final CacheMode previousCacheMode;
+
+        private ReplicaTransactionData(Object delegate, Session session, CacheMode previousCacheMode) {
+            this.delegate = delegate;
+            this.session = session;
+            this.previousCacheMode = previousCacheMode;
+        }
+    }
+}
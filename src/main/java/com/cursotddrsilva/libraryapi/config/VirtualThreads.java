@@ -0,0 +1,76 @@
+package com.cursotddrsilva.libraryapi.config;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Acesso as virtual threads (Java 21+) por reflexao, para que o codigo continue compilando com
+ * {@code java.version=11}. Usado apenas quando {@code application.threads.virtual=true}.
+ */
+public final class VirtualThreads {
+
+    private VirtualThreads(){
+    }
+
+    public static boolean isSupported(){
+        try {
+            Thread.class.getMethod("ofVirtual");
+            return true;
+        } catch (NoSuchMethodException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Uma virtual thread por tarefa.
+     */
+    public static ExecutorService newExecutor(){
+        checkSupported();
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Nao foi possivel criar o executor de virtual threads.", e);
+        }
+    }
+
+    /**
+     * Fabrica de virtual threads com nomes {@code prefix1, prefix2...}.
+     */
+    public static ThreadFactory factory(String prefix){
+        checkSupported();
+        try {
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            Class<?> builderType = Class.forName("java.lang.Thread$Builder");
+            Method name = builderType.getMethod("name", String.class, long.class);
+            Method factory = builderType.getMethod("factory");
+            return (ThreadFactory) factory.invoke(name.invoke(builder, prefix, 1L));
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Nao foi possivel criar a fabrica de virtual threads.", e);
+        }
+    }
+
+    /**
+     * Virtual threads quando {@code virtual} e verdadeiro; senao threads daemon de plataforma.
+     */
+    public static ThreadFactory factory(boolean virtual, String prefix){
+        if (virtual) {
+            return factory(prefix);
+        }
+        AtomicInteger count = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, prefix + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    private static void checkSupported(){
+        if (!isSupported()) {
+            throw new IllegalStateException("application.threads.virtual=true requer Java 21 ou superior (em uso: "
+                    + System.getProperty("java.version") + ").");
+        }
+    }
+}
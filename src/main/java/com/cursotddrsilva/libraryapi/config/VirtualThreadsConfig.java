@@ -0,0 +1,26 @@
+package com.cursotddrsilva.libraryapi.config;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.task.TaskSchedulerCustomizer;
+import org.springframework.boot.web.embedded.tomcat.TomcatProtocolHandlerCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Modo opcional ({@code application.threads.virtual=true}, Java 21+): requisicoes do Tomcat e jobs
+ * agendados rodam em virtual threads. Os workers de email e do outbox leem a mesma propriedade.
+ */
+@Configuration
+@ConditionalOnProperty(name = "application.threads.virtual", havingValue = "true")
+public class VirtualThreadsConfig {
+
+    @Bean
+    public TomcatProtocolHandlerCustomizer<?> virtualThreadsProtocolHandler(){
+        return protocolHandler -> protocolHandler.setExecutor(VirtualThreads.newExecutor());
+    }
+
+    @Bean
+    public TaskSchedulerCustomizer virtualThreadsTaskScheduler(){
+        return taskScheduler -> taskScheduler.setThreadFactory(VirtualThreads.factory("scheduling-"));
+    }
+}
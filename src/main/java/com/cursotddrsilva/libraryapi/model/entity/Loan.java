@@ -18,7 +18,8 @@ public class Loan {
 
     @Id
     @Column
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "loan_seq")
+    @SequenceGenerator(name = "loan_seq", sequenceName = "loan_seq", allocationSize = 50)
     private Long id;
 
     @Column(length = 100)
@@ -28,7 +29,7 @@ public class Loan {
     private String customerEmail;
 
     @JoinColumn(name = "id_book")
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     private Book book;
 
     @Column
@@ -36,4 +37,24 @@ public class Loan {
 
     @Column
     private Boolean returned;
+
+    /**
+     * Id do livro enquanto o emprestimo estiver ativo e {@code null} apos a devolucao.
+     * O indice unico sobre a coluna garante no banco um unico emprestimo ativo por livro.
+     */
+    @Column(name = "active_book_id")
+    private Long activeBookId;
+
+    /**
+     * Incrementada a cada alteracao; base do ETag e do lock otimista.
+     */
+    @Version
+    @Column
+    private Long version;
+
+    @PrePersist
+    @PreUpdate
+    void updateActiveBookId(){
+        this.activeBookId = book != null && !Boolean.TRUE.equals(returned) ? book.getId() : null;
+    }
 }
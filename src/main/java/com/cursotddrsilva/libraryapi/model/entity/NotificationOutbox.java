@@ -0,0 +1,58 @@
+package com.cursotddrsilva.libraryapi.model.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.persistence.*;
+import java.time.LocalDateTime;
+
+/**
+ * Notificacao pendente de envio, gravada na mesma transacao que a originou e enviada
+ * depois pelo {@code NotificationOutboxPoller}.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Entity
+@Table(name = "notification_outbox")
+public class NotificationOutbox {
+
+    public enum Status { PENDING, CLAIMED, SENT, FAILED }
+
+    @Id
+    @Column
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "notification_outbox_seq")
+    @SequenceGenerator(name = "notification_outbox_seq", sequenceName = "notification_outbox_seq", allocationSize = 50)
+    private Long id;
+
+    @Column(name = "notification_key", length = 100)
+    private String notificationKey;
+
+    @Column
+    private String recipient;
+
+    @Column(length = 1000)
+    private String message;
+
+    @Column(length = 20)
+    @Enumerated(EnumType.STRING)
+    private Status status;
+
+    @Column
+    private int attempts;
+
+    @Column(name = "claimed_by", length = 100)
+    private String claimedBy;
+
+    @Column(name = "claimed_at")
+    private LocalDateTime claimedAt;
+
+    @Column(name = "created_at")
+    private LocalDateTime createdAt;
+
+    @Column(name = "sent_at")
+    private LocalDateTime sentAt;
+}
@@ -1,12 +1,68 @@
 package com.cursotddrsilva.libraryapi.model.repository;
 
+import com.cursotddrsilva.libraryapi.config.CacheConfig;
 import com.cursotddrsilva.libraryapi.model.entity.Book;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 
+import javax.persistence.QueryHint;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.QueryHints.HINT_CACHEABLE;
+import static org.hibernate.jpa.QueryHints.HINT_CACHE_REGION;
+import static org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE;
+import static org.hibernate.jpa.QueryHints.HINT_READONLY;
+
+public interface BookRepository extends JpaRepository<Book, Long>, BookRepositoryCustom {
+
+    int EXPORT_FETCH_SIZE = 500;
 
-public interface BookRepository extends JpaRepository<Book, Long> {
     boolean existsByIsbn(String isbn);
 
+    /**
+     * Resultado guardado no cache de consultas do Hibernate, invalidado a cada escrita na tabela book.
+     */
+    @QueryHints({
+            @QueryHint(name = HINT_CACHEABLE, value = "true"),
+            @QueryHint(name = HINT_CACHE_REGION, value = CacheConfig.BOOK_BY_ISBN_REGION)
+    })
     Optional<Book> findByIsbn(String isbn);
+
+    /**
+     * Atualizacao condicional em um unico UPDATE: sem linha com o id e a versao nada e alterado e o
+     * retorno e zero. Com uma linha alterada a nova versao e {@code version + 1}. O isbn nunca e alterado.
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query(" update Book b set b.title = :title, b.author = :author, b.version = :version + 1L " +
+            " where b.id = :id and b.version = :version ")
+    int updateDetails(@Param("id") Long id, @Param("title") String title,
+                      @Param("author") String author, @Param("version") Long version);
+
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query(" delete from Book b where b.id = :id ")
+    int removeById(@Param("id") Long id);
+
+    List<Book> findByIdIn(Collection<Long> ids);
+
+    List<Book> findByIsbnIn(Collection<String> isbns);
+
+    @Query(" select b.isbn from Book b where b.isbn in :isbns ")
+    List<String> findExistingIsbns(@Param("isbns") Collection<String> isbns);
+
+    /**
+     * Percorre todo o catalogo com um cursor do banco. Deve ser consumido dentro de uma transacao
+     * e fechado ao final.
+     */
+    @Query(" select b from Book b order by b.id ")
+    @QueryHints({
+            @QueryHint(name = HINT_FETCH_SIZE, value = "" + EXPORT_FETCH_SIZE),
+            @QueryHint(name = HINT_READONLY, value = "true")
+    })
+    Stream<Book> streamAll();
 }
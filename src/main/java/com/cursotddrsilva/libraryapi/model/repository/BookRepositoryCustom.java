@@ -0,0 +1,16 @@
+package com.cursotddrsilva.libraryapi.model.repository;
+
+import com.cursotddrsilva.libraryapi.model.entity.Book;
+import org.springframework.data.domain.Example;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+
+public interface BookRepositoryCustom {
+
+    /**
+     * Mesmo resultado de {@code findAll(example, pageable)}, sem a consulta de count.
+     */
+    Slice<Book> findSlice(Example<Book> example, Pageable pageable);
+
+    Slice<Book> findAfter(Example<Book> example, Keyset keyset, int size);
+}
@@ -0,0 +1,39 @@
+package com.cursotddrsilva.libraryapi.model.repository;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import org.springframework.data.domain.Sort;
+
+/**
+ * Posicao de uma paginacao por keyset (seek): a proxima pagina comeca depois da linha cujo valor
+ * de ordenacao e id sao {@code value} e {@code id}. Sem {@code id}, comeca no inicio.
+ */
+@Data
+@AllArgsConstructor
+public class Keyset {
+
+    public static final String ID = "id";
+
+    private String property;
+    private Sort.Direction direction;
+    private Object value;
+    private Long id;
+
+    public static Keyset first(String property, Sort.Direction direction){
+        return new Keyset(property, direction, null, null);
+    }
+
+    public boolean isFirst(){
+        return id == null;
+    }
+
+    public Keyset after(Object value, Long id){
+        return new Keyset(property, direction, value, id);
+    }
+
+    public Sort toSort(){
+        return ID.equals(property)
+                ? Sort.by(direction, ID)
+                : Sort.by(direction, property, ID);
+    }
+}
@@ -0,0 +1,74 @@
+package com.cursotddrsilva.libraryapi.model.repository;
+
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.data.domain.Sort;
+
+import javax.persistence.EntityManager;
+import javax.persistence.criteria.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.BiFunction;
+
+/**
+ * Monta consultas por keyset: filtro + "depois do ultimo (valor, id)" + order by (valor, id),
+ * buscando uma linha a mais para saber se existe proxima pagina. Nao executa count.
+ */
+class KeysetQueries {
+
+    private KeysetQueries(){
+    }
+
+    @SuppressWarnings("unchecked")
+    static <T> Slice<T> findAfter(EntityManager entityManager,
+                                  Class<T> type,
+                                  Keyset keyset,
+                                  int size,
+                                  BiFunction<Root<T>, CriteriaBuilder, Predicate> filter){
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<T> query = cb.createQuery(type);
+        Root<T> root = query.from(type);
+
+        List<Predicate> predicates = new ArrayList<>();
+        Predicate filterPredicate = filter.apply(root, cb);
+        if (filterPredicate != null) {
+            predicates.add(filterPredicate);
+        }
+
+        boolean ascending = keyset.getDirection().isAscending();
+        Path<Long> id = root.get(Keyset.ID);
+        Path<Comparable<Object>> key = root.get(keyset.getProperty());
+
+        if (!keyset.isFirst()) {
+            Predicate afterId = ascending ? cb.greaterThan(id, keyset.getId()) : cb.lessThan(id, keyset.getId());
+            if (Keyset.ID.equals(keyset.getProperty())) {
+                predicates.add(afterId);
+            } else {
+                Comparable<Object> value = (Comparable<Object>) keyset.getValue();
+                Predicate afterKey = ascending ? cb.greaterThan(key, value) : cb.lessThan(key, value);
+                // o limite redundante em valor deixa o banco buscar pelo indice da coluna em vez de avaliar o OR linha a linha
+                predicates.add(ascending ? cb.greaterThanOrEqualTo(key, value) : cb.lessThanOrEqualTo(key, value));
+                predicates.add(cb.or(afterKey, cb.and(cb.equal(key, value), afterId)));
+            }
+        }
+
+        List<Order> orders = new ArrayList<>();
+        if (!Keyset.ID.equals(keyset.getProperty())) {
+            orders.add(ascending ? cb.asc(key) : cb.desc(key));
+        }
+        orders.add(ascending ? cb.asc(id) : cb.desc(id));
+
+        query.select(root)
+                .where(predicates.toArray(new Predicate[0]))
+                .orderBy(orders);
+
+        List<T> content = entityManager.createQuery(query)
+                .setMaxResults(size + 1)
+                .getResultList();
+
+        boolean hasNext = content.size() > size;
+        Sort sort = keyset.toSort();
+        return new SliceImpl<>(hasNext ? content.subList(0, size) : content, PageRequest.of(0, size, sort), hasNext);
+    }
+}
@@ -4,24 +4,80 @@ import com.cursotddrsilva.libraryapi.model.entity.Book;
 import com.cursotddrsilva.libraryapi.model.entity.Loan;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 
-import java.time.LocalDate;
+import javax.persistence.LockModeType;
+import java.util.Collection;
 import java.util.List;
 
-public interface LoanRepository extends JpaRepository<Loan, Long> {
+public interface LoanRepository extends JpaRepository<Loan, Long>, LoanRepositoryCustom {
 
     @Query(value = " select case when ( count(l.id) > 0 ) then true else false end from Loan l " +
             " where l.book = :book and (l.returned is null or l.returned is false) ")
     boolean existsByBookAndNotReturned( @Param("book") Book book);
 
-    @Query(value = " select l from Loan l join l.book b where b.isbn =:isbn or l.customer =:customer")
-    Page<Loan> findByBookIsbnOrCustomer( @Param("isbn") String isbn, @Param("customer") String customer, Pageable pageable);
-
+    @EntityGraph(attributePaths = "book")
     Page<Loan> findByBook(Book book, Pageable pageable);
 
-    @Query( " select l from Loan l where l.loanDate <= :threeDaysAgo and (l.returned is null or l.returned is false) ")
-    List<Loan> findByLoanDateLessThanAndNotReturned(@Param("threeDaysAgo") LocalDate threeDaysAgo);
+    @EntityGraph(attributePaths = "book")
+    Slice<Loan> findSliceByBook(Book book, Pageable pageable);
+
+    long countByBook(Book book);
+
+    /**
+     * Pares [id do livro, quantidade de emprestimos].
+     */
+    @Query(" select l.book.id, count(l) from Loan l group by l.book.id ")
+    List<Object[]> countByBook();
+
+    /**
+     * Pares [data do emprestimo, quantidade de emprestimos ativos].
+     */
+    @Query(" select l.loanDate, count(l) from Loan l where l.activeBookId is not null group by l.loanDate ")
+    List<Object[]> countActiveByLoanDate();
+
+    /**
+     * Emprestimos pelos ids, com lock de escrita ate o fim da transacao.
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query(" select l from Loan l where l.id in :ids ")
+    List<Loan> findAllForUpdate(@Param("ids") Collection<Long> ids);
+
+    /**
+     * Devolucao em massa. Callbacks da entidade nao rodam em updates JPQL, entao active_book_id
+     * e a versao sao atualizados aqui.
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query(" update Loan l set l.returned = true, l.activeBookId = null, l.version = l.version + 1 where l.id in :ids ")
+    int markReturned(@Param("ids") Collection<Long> ids);
+
+    /**
+     * Devolve o emprestimo se ainda estiver ativo e na versao informada, que passa a {@code version + 1};
+     * zero quando nada mudou.
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query(" update Loan l set l.returned = true, l.activeBookId = null, l.version = :version + 1L " +
+            " where l.id = :id and l.activeBookId is not null and l.version = :version ")
+    int returnIfActive(@Param("id") Long id, @Param("version") Long version);
+
+    /**
+     * Reabre o emprestimo se estiver devolvido e na versao informada, que passa a {@code version + 1};
+     * zero quando nada mudou.
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query(" update Loan l set l.returned = false, l.activeBookId = l.book.id, l.version = :version + 1L " +
+            " where l.id = :id and l.activeBookId is null and l.version = :version ")
+    int reopenIfReturned(@Param("id") Long id, @Param("version") Long version);
+
+    /**
+     * Pares [id do emprestimo, data do emprestimo].
+     */
+    @Query(" select l.id, l.loanDate from Loan l where l.id in :ids ")
+    List<Object[]> findLoanDates(@Param("ids") Collection<Long> ids);
 }
@@ -0,0 +1,34 @@
+package com.cursotddrsilva.libraryapi.model.repository;
+
+import com.cursotddrsilva.libraryapi.model.entity.Book;
+import com.cursotddrsilva.libraryapi.model.entity.Loan;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+
+import java.time.LocalDate;
+
+public interface LoanRepositoryCustom {
+
+    /**
+     * Emprestimos do livro com o isbn ou do cliente. Filtros nulos nao casam com nada.
+     */
+    Page<Loan> findByBookIsbnOrCustomer(String isbn, String customer, Pageable pageable);
+
+    /**
+     * Mesmo filtro de {@link #findByBookIsbnOrCustomer}, sem o total.
+     */
+    Slice<Loan> findSliceByBookIsbnOrCustomer(String isbn, String customer, Pageable pageable);
+
+    long countByBookIsbnOrCustomer(String isbn, String customer);
+
+    /**
+     * Emprestimos nao devolvidos com data ate {@code loanDate}, por keyset em (loanDate, id): o filtro
+     * e a busca da proxima pagina usam o mesmo indice ix_loan_date_returned.
+     */
+    Slice<Loan> findNotReturnedUntilAfter(LocalDate loanDate, Keyset keyset, int size);
+
+    Slice<Loan> findByBookIsbnOrCustomerAfter(String isbn, String customer, Keyset keyset, int size);
+
+    Slice<Loan> findByBookAfter(Book book, Keyset keyset, int size);
+}
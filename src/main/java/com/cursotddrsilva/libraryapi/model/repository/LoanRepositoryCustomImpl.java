@@ -0,0 +1,183 @@
+package com.cursotddrsilva.libraryapi.model.repository;
+
+import com.cursotddrsilva.libraryapi.model.entity.Book;
+import com.cursotddrsilva.libraryapi.model.entity.Loan;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.persister.entity.AbstractEntityPersister;
+import org.hibernate.query.NativeQuery;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.data.domain.Sort;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import javax.persistence.Query;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * O filtro "isbn ou cliente" e um OR entre loan e book, que nenhum indice atende: o banco varre a
+ * tabela de emprestimos. Os ids de cada lado (ix_loan_customer; ux_book_isbn e ix_loan_book_returned)
+ * sao unidos numa subconsulta {@code l.id in (... union ...)}, lida pela chave primaria, como no
+ * repositorio reativo. O JPQL do Hibernate nao tem UNION, entao essas consultas sao SQL nativo.
+ */
+public class LoanRepositoryCustomImpl implements LoanRepositoryCustom {
+
+    private static final String IDS_BY_ISBN = "select i.id from loan i join book ib on ib.id = i.id_book where ib.isbn = :isbn";
+    private static final String IDS_BY_CUSTOMER = "select c.id from loan c where c.customer = :customer";
+    private static final String SELECT = "select {l.*}, {b.*} from loan l join book b on b.id = l.id_book";
+    private static final String COUNT = "select count(*) from loan l";
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public Page<Loan> findByBookIsbnOrCustomer(String isbn, String customer, Pageable pageable) {
+        String where = where(isbn, customer);
+        if (where == null) {
+            return new PageImpl<>(Collections.emptyList(), pageable, 0);
+        }
+        List<Loan> content = findLoans(SELECT + where + orderBy(pageable.getSort()), isbn, customer,
+                (int) pageable.getOffset(), pageable.getPageSize());
+        return new PageImpl<>(content, pageable, count(where, isbn, customer));
+    }
+
+    @Override
+    public Slice<Loan> findSliceByBookIsbnOrCustomer(String isbn, String customer, Pageable pageable) {
+        String where = where(isbn, customer);
+        if (where == null) {
+            return new SliceImpl<>(Collections.emptyList(), pageable, false);
+        }
+        List<Loan> content = findLoans(SELECT + where + orderBy(pageable.getSort()), isbn, customer,
+                (int) pageable.getOffset(), pageable.getPageSize() + 1);
+        boolean hasNext = content.size() > pageable.getPageSize();
+        return new SliceImpl<>(hasNext ? content.subList(0, pageable.getPageSize()) : content, pageable, hasNext);
+    }
+
+    @Override
+    public long countByBookIsbnOrCustomer(String isbn, String customer) {
+        String where = where(isbn, customer);
+        return where == null ? 0 : count(where, isbn, customer);
+    }
+
+    /**
+     * Mesmo seek de {@link KeysetQueries}, em SQL: filtro + "depois do ultimo (valor, id)" + order by
+     * (valor, id), com uma linha a mais para saber se existe proxima pagina.
+     */
+    @Override
+    public Slice<Loan> findByBookIsbnOrCustomerAfter(String isbn, String customer, Keyset keyset, int size) {
+        String where = where(isbn, customer);
+        if (where == null) {
+            return new SliceImpl<>(Collections.emptyList(), PageRequest.of(0, size, keyset.toSort()), false);
+        }
+        boolean ascending = keyset.getDirection().isAscending();
+        StringBuilder sql = new StringBuilder(SELECT).append(where);
+        if (!keyset.isFirst()) {
+            String afterId = ascending ? "l.id > :id" : "l.id < :id";
+            if (Keyset.ID.equals(keyset.getProperty())) {
+                sql.append(" and ").append(afterId);
+            } else {
+                String key = column(keyset.getProperty());
+                String after = ascending ? " > " : " < ";
+                // o limite redundante em valor deixa o banco buscar pelo indice da coluna em vez de avaliar o OR linha a linha
+                sql.append(" and ").append(key).append(after).append("= :value")
+                        .append(" and (").append(key).append(after).append(":value")
+                        .append(" or (").append(key).append(" = :value and ").append(afterId).append("))");
+            }
+        }
+        sql.append(orderBy(keyset.toSort()));
+
+        Query query = nativeQuery(sql.toString(), isbn, customer);
+        if (!keyset.isFirst()) {
+            query.setParameter("id", keyset.getId());
+            if (!Keyset.ID.equals(keyset.getProperty())) {
+                query.setParameter("value", keyset.getValue());
+            }
+        }
+        List<Loan> content = loans(query.setMaxResults(size + 1));
+
+        boolean hasNext = content.size() > size;
+        return new SliceImpl<>(hasNext ? content.subList(0, size) : content, PageRequest.of(0, size, keyset.toSort()), hasNext);
+    }
+
+    @Override
+    public Slice<Loan> findByBookAfter(Book book, Keyset keyset, int size) {
+        return KeysetQueries.findAfter(entityManager, Loan.class, keyset, size, (root, cb) -> {
+            root.fetch("book");
+            return cb.equal(root.get("book"), book);
+        });
+    }
+
+    @Override
+    public Slice<Loan> findNotReturnedUntilAfter(LocalDate loanDate, Keyset keyset, int size) {
+        return KeysetQueries.findAfter(entityManager, Loan.class, keyset, size, (root, cb) -> cb.and(
+                cb.lessThanOrEqualTo(root.get("loanDate"), loanDate),
+                cb.or(cb.isNull(root.get("returned")), cb.isFalse(root.get("returned")))));
+    }
+
+    // um OR entre loan e book varre a tabela; a uniao deixa cada lado usar o seu indice
+    private static String where(String isbn, String customer) {
+        List<String> ids = new ArrayList<>();
+        if (isbn != null) {
+            ids.add(IDS_BY_ISBN);
+        }
+        if (customer != null) {
+            ids.add(IDS_BY_CUSTOMER);
+        }
+        return ids.isEmpty() ? null : " where l.id in (" + String.join(" union ", ids) + ")";
+    }
+
+    private long count(String where, String isbn, String customer) {
+        return ((Number) nativeQuery(COUNT + where, isbn, customer).getSingleResult()).longValue();
+    }
+
+    private List<Loan> findLoans(String sql, String isbn, String customer, int firstResult, int maxResults) {
+        return loans(nativeQuery(sql, isbn, customer)
+                .setFirstResult(firstResult)
+                .setMaxResults(maxResults));
+    }
+
+    private Query nativeQuery(String sql, String isbn, String customer) {
+        Query query = entityManager.createNativeQuery(sql);
+        if (isbn != null) {
+            query.setParameter("isbn", isbn);
+        }
+        if (customer != null) {
+            query.setParameter("customer", customer);
+        }
+        return query;
+    }
+
+    // o livro vem no mesmo select: cada linha traz [emprestimo, livro]
+    @SuppressWarnings("unchecked")
+    private static List<Loan> loans(Query query) {
+        List<Object[]> rows = query.unwrap(NativeQuery.class)
+                .addEntity("l", Loan.class)
+                .addJoin("b", "l.book")
+                .getResultList();
+        return rows.stream().map(row -> (Loan) row[0]).collect(Collectors.toList());
+    }
+
+    // sem ordenacao pedida, ordena por id para que as paginas sejam estaveis
+    private String orderBy(Sort sort) {
+        Sort effective = sort.isSorted() ? sort : Sort.by(Keyset.ID);
+        return effective.stream()
+                .map(order -> column(order.getProperty()) + (order.isAscending() ? " asc" : " desc"))
+                .collect(Collectors.joining(", ", " order by ", ""));
+    }
+
+    private String column(String property) {
+        AbstractEntityPersister persister = (AbstractEntityPersister) entityManager.getEntityManagerFactory()
+                .unwrap(SessionFactoryImplementor.class)
+                .getMetamodel()
+                .entityPersister(Loan.class);
+        return String.join(", ", persister.toColumns("l", property));
+    }
+}
@@ -0,0 +1,94 @@
+package com.cursotddrsilva.libraryapi.model.repository;
+
+import com.cursotddrsilva.libraryapi.model.entity.NotificationOutbox;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+
+import javax.persistence.LockModeType;
+import javax.persistence.QueryHint;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+public interface NotificationOutboxRepository extends JpaRepository<NotificationOutbox, Long> {
+
+    @Query(" select n.notificationKey from NotificationOutbox n where n.notificationKey in :keys ")
+    List<String> findExistingKeys(@Param("keys") Collection<String> keys);
+
+    /**
+     * Trava as primeiras notificacoes com o status informado, pulando as que outros workers ja travaram:
+     * o timeout -2 ({@code LockOptions.SKIP_LOCKED}) vira {@code FOR UPDATE SKIP LOCKED} nos bancos que
+     * suportam. No H2 a trava espera a transacao concorrente.
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @QueryHints(@QueryHint(name = "javax.persistence.lock.timeout", value = "-2"))
+    @Query(" select n from NotificationOutbox n where n.status = :status order by n.id ")
+    List<NotificationOutbox> findForClaim(@Param("status") NotificationOutbox.Status status, Pageable pageable);
+
+    /**
+     * Reserva as notificacoes travadas para o token do {@code worker}. O status e conferido de novo
+     * porque, sem SKIP LOCKED, a linha pode ter sido reservada enquanto a trava esperava.
+     */
+    @Modifying(clearAutomatically = true)
+    @Query(" update NotificationOutbox n set n.status = :claimed, n.claimedBy = :worker, n.claimedAt = :now " +
+            " where n.id in :ids and n.status = :pending ")
+    int claim(@Param("ids") Collection<Long> ids,
+              @Param("worker") String worker,
+              @Param("now") LocalDateTime now,
+              @Param("pending") NotificationOutbox.Status pending,
+              @Param("claimed") NotificationOutbox.Status claimed);
+
+    boolean existsByStatus(NotificationOutbox.Status status);
+
+    List<NotificationOutbox> findByClaimedByAndStatus(String worker, NotificationOutbox.Status status);
+
+    /**
+     * As marcacoes so alteram linhas ainda reservadas pelo {@code worker}: uma reserva expirada pode ja
+     * ter sido devolvida para a fila e reservada por outro worker.
+     */
+    @Modifying
+    @Query(" update NotificationOutbox n set n.status = :status, n.sentAt = :now " +
+            " where n.id in :ids and n.claimedBy = :worker ")
+    int markSent(@Param("ids") Collection<Long> ids,
+                 @Param("worker") String worker,
+                 @Param("now") LocalDateTime now,
+                 @Param("status") NotificationOutbox.Status status);
+
+    /**
+     * Conta a tentativa e devolve as notificacoes para a fila.
+     */
+    @Modifying
+    @Query(" update NotificationOutbox n set n.status = :status, n.attempts = n.attempts + 1, " +
+            " n.claimedBy = null, n.claimedAt = null where n.id in :ids and n.claimedBy = :worker ")
+    int markRetry(@Param("ids") Collection<Long> ids,
+                  @Param("worker") String worker,
+                  @Param("status") NotificationOutbox.Status status);
+
+    /**
+     * Conta a tentativa e encerra as notificacoes que chegaram a {@code maxAttempts}; roda antes de
+     * {@link #markRetry}, que libera a reserva das demais.
+     */
+    @Modifying
+    @Query(" update NotificationOutbox n set n.status = :status, n.attempts = n.attempts + 1, " +
+            " n.claimedBy = null, n.claimedAt = null " +
+            " where n.id in :ids and n.claimedBy = :worker and n.attempts + 1 >= :maxAttempts ")
+    int markFailed(@Param("ids") Collection<Long> ids,
+                   @Param("worker") String worker,
+                   @Param("maxAttempts") int maxAttempts,
+                   @Param("status") NotificationOutbox.Status status);
+
+    /**
+     * Devolve para a fila as notificacoes reservadas por workers que pararam antes de concluir o envio.
+     */
+    @Modifying
+    @Query(" update NotificationOutbox n set n.status = :pending, n.claimedBy = null, n.claimedAt = null " +
+            " where n.status = :claimed and n.claimedAt < :claimedBefore ")
+    int releaseExpired(@Param("claimedBefore") LocalDateTime claimedBefore,
+                       @Param("claimed") NotificationOutbox.Status claimed,
+                       @Param("pending") NotificationOutbox.Status pending);
+}
@@ -0,0 +1,32 @@
+package com.cursotddrsilva.libraryapi.reactive;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.annotation.Version;
+import org.springframework.data.relational.core.mapping.Table;
+
+/**
+ * Linha da tabela book lida pelo R2DBC no profile reactive. O schema continua sendo o do Flyway.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Table("book")
+public class BookRow {
+
+    @Id
+    private Long id;
+
+    private String author;
+
+    private String title;
+
+    private String isbn;
+
+    @Version
+    private Long version;
+}
@@ -0,0 +1,54 @@
+package com.cursotddrsilva.libraryapi.reactive;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.annotation.Transient;
+import org.springframework.data.annotation.Version;
+import org.springframework.data.relational.core.mapping.Column;
+import org.springframework.data.relational.core.mapping.Table;
+
+import java.time.LocalDate;
+
+/**
+ * Linha da tabela loan lida pelo R2DBC no profile reactive. O livro so e preenchido
+ * pelas consultas que fazem join com book.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Table("loan")
+public class LoanRow {
+
+    @Id
+    private Long id;
+
+    private String customer;
+
+    private String customerEmail;
+
+    @Column("id_book")
+    private Long bookId;
+
+    private LocalDate loanDate;
+
+    private Boolean returned;
+
+    /**
+     * Mesmo contrato de {@code Loan.activeBookId}: id do livro enquanto o emprestimo estiver ativo.
+     */
+    private Long activeBookId;
+
+    @Version
+    private Long version;
+
+    @Transient
+    private BookRow book;
+
+    public void updateActiveBookId(){
+        this.activeBookId = bookId != null && !Boolean.TRUE.equals(returned) ? bookId : null;
+    }
+}
@@ -0,0 +1,140 @@
+package com.cursotddrsilva.libraryapi.reactive;
+
+import com.cursotddrsilva.libraryapi.api.dto.BookDTO;
+import com.cursotddrsilva.libraryapi.api.dto.LoanDto;
+import com.cursotddrsilva.libraryapi.api.resource.ETags;
+import com.cursotddrsilva.libraryapi.exception.BusinessException;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.Profile;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.r2dbc.core.R2dbcEntityTemplate;
+import org.springframework.data.relational.core.query.Criteria;
+import org.springframework.data.relational.core.query.Query;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import javax.validation.Valid;
+
+/**
+ * Mesmo contrato de {@code BookController}, servido pelo WebFlux sobre R2DBC no profile reactive.
+ */
+@RestController
+@RequestMapping("/api/books")
+@Profile("reactive")
+@RequiredArgsConstructor
+@Slf4j
+public class ReactiveBookController {
+
+    private final ReactiveBookRepository repository;
+    private final ReactiveLoanRepository loanRepository;
+    private final R2dbcEntityTemplate template;
+    private final ReactiveRowMapper mapper;
+
+    @PostMapping
+    @ResponseStatus(HttpStatus.CREATED)
+    public Mono<BookDTO> create(@RequestBody @Valid BookDTO dto){
+        log.info("creating a book for isbn:{}", dto.getIsbn());
+        return repository.existsByIsbn(dto.getIsbn())
+                .flatMap(exists -> exists ? Mono.error(new BusinessException("Isbn já cadastrado")) : repository.nextId())
+                .map(id -> {
+                    BookRow book = mapper.toRow(dto);
+                    book.setId(id);
+                    return book;
+                })
+                .flatMap(template::insert)
+                .onErrorMap(DataIntegrityViolationException.class, e -> new BusinessException("Isbn já cadastrado"))
+                .map(mapper::toDto);
+    }
+
+    /**
+     * O Flux segue a demanda do cliente: linhas so sao lidas do banco conforme a resposta e escrita.
+     */
+    @GetMapping(value = "export", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public Flux<BookDTO> export(){
+        return repository.streamAll().map(mapper::toDto);
+    }
+
+    @GetMapping("{id}")
+    public Mono<BookDTO> get(@PathVariable Long id, ServerWebExchange exchange){
+        return findBook(id)
+                .filter(book -> !exchange.checkNotModified(ETags.strong(book.getVersion())))
+                .map(mapper::toDto);
+    }
+
+    @DeleteMapping("{id}")
+    @ResponseStatus(HttpStatus.NO_CONTENT)
+    public Mono<Void> delete(@PathVariable Long id){
+        return findBook(id).flatMap(repository::delete);
+    }
+
+    @PutMapping("{id}")
+    public Mono<ResponseEntity<BookDTO>> update(@PathVariable Long id, @RequestBody @Valid BookDTO dto,
+                                                @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch){
+        return findBook(id)
+                .flatMap(book -> {
+                    ETags.checkIfMatch(ifMatch, book.getVersion());
+                    book.setAuthor(dto.getAuthor());
+                    book.setTitle(dto.getTitle());
+                    return repository.save(book);
+                })
+                .map(book -> ResponseEntity.ok().headers(ETags.headers(book.getVersion())).body(mapper.toDto(book)));
+    }
+
+    @GetMapping
+    public Mono<Page<BookDTO>> find(BookDTO dto, Pageable pageRequest, ServerWebExchange exchange){
+        Query query = Query.query(filter(dto));
+        return template.select(BookRow.class)
+                .matching(query.with(pageRequest))
+                .all()
+                .collectList()
+                .zipWith(template.count(query, BookRow.class))
+                .<Page<BookRow>>map(page -> new PageImpl<>(page.getT1(), pageRequest, page.getT2()))
+                .filter(page -> !exchange.checkNotModified(ETags.weak(page, book -> book.getId() + ":" + book.getVersion())))
+                .map(page -> page.map(mapper::toDto));
+    }
+
+    @GetMapping("{id}/loans")
+    public Mono<Page<LoanDto>> loansByBook(@PathVariable Long id, Pageable pageable, ServerWebExchange exchange){
+        return findBook(id).flatMap(book -> loanRepository.findByBookId(id, pageable)
+                .doOnNext(loan -> loan.setBook(book))
+                .collectList()
+                .zipWith(loanRepository.countByBookId(id))
+                .<Page<LoanRow>>map(page -> new PageImpl<>(page.getT1(), pageable, page.getT2())))
+                .filter(page -> !exchange.checkNotModified(ETags.weak(page, ReactiveLoanController::identity)))
+                .map(page -> page.map(mapper::toDto));
+    }
+
+    private Mono<BookRow> findBook(Long id){
+        return repository.findById(id)
+                .switchIfEmpty(Mono.error(() -> new ResponseStatusException(HttpStatus.NOT_FOUND)));
+    }
+
+    // mesmo criterio do Example do stack servlet: contem, ignorando maiusculas
+    private Criteria filter(BookDTO dto){
+        Criteria criteria = Criteria.empty();
+        if (dto.getId() != null) {
+            criteria = criteria.and("id").is(dto.getId());
+        }
+        if (dto.getTitle() != null) {
+            criteria = criteria.and("title").like("%" + dto.getTitle() + "%").ignoreCase(true);
+        }
+        if (dto.getAuthor() != null) {
+            criteria = criteria.and("author").like("%" + dto.getAuthor() + "%").ignoreCase(true);
+        }
+        if (dto.getIsbn() != null) {
+            criteria = criteria.and("isbn").like("%" + dto.getIsbn() + "%").ignoreCase(true);
+        }
+        return criteria;
+    }
+}
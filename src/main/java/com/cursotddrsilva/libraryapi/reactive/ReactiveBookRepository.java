@@ -0,0 +1,23 @@
+package com.cursotddrsilva.libraryapi.reactive;
+
+import org.springframework.data.r2dbc.repository.Query;
+import org.springframework.data.r2dbc.repository.R2dbcRepository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+public interface ReactiveBookRepository extends R2dbcRepository<BookRow, Long> {
+
+    Mono<Boolean> existsByIsbn(String isbn);
+
+    Mono<BookRow> findByIsbn(String isbn);
+
+    @Query("select * from book order by id")
+    Flux<BookRow> streamAll();
+
+    /**
+     * Cada valor da sequence reserva um bloco de 50 ids para o Hibernate; usar o proprio valor
+     * como id nunca colide com os ids gerados pelo stack JPA.
+     */
+    @Query("select nextval('book_seq')")
+    Mono<Long> nextId();
+}
@@ -0,0 +1,99 @@
+package com.cursotddrsilva.libraryapi.reactive;
+
+import com.cursotddrsilva.libraryapi.api.dto.LoanDto;
+import com.cursotddrsilva.libraryapi.api.dto.LoanFilterDTO;
+import com.cursotddrsilva.libraryapi.api.dto.ReturnedLoanDTO;
+import com.cursotddrsilva.libraryapi.api.resource.ETags;
+import com.cursotddrsilva.libraryapi.exception.BusinessException;
+import com.cursotddrsilva.libraryapi.service.LoanStatisticsService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.context.annotation.Profile;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.r2dbc.core.R2dbcEntityTemplate;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Mono;
+
+import java.time.LocalDate;
+
+/**
+ * Mesmo contrato de {@code LoanController}, servido pelo WebFlux sobre R2DBC no profile reactive.
+ */
+@RestController
+@RequestMapping("api/loans")
+@Profile("reactive")
+@RequiredArgsConstructor
+public class ReactiveLoanController {
+
+    private final ReactiveLoanRepository repository;
+    private final ReactiveBookRepository bookRepository;
+    private final R2dbcEntityTemplate template;
+    private final ReactiveRowMapper mapper;
+    private final LoanStatisticsService statistics;
+
+    @PostMapping
+    @ResponseStatus(HttpStatus.CREATED)
+    public Mono<Long> create(@RequestBody LoanDto dto){
+        return bookRepository.findByIsbn(dto.getIsbn())
+                .switchIfEmpty(Mono.error(() -> new ResponseStatusException(HttpStatus.BAD_REQUEST, "Book not found for passed isbn.")))
+                .flatMap(book -> repository.existsByActiveBookId(book.getId())
+                        .flatMap(loaned -> loaned ? Mono.error(new BusinessException("Book already loaned.")) : repository.nextId())
+                        .map(id -> {
+                            LoanRow loan = LoanRow.builder()
+                                    .id(id)
+                                    .bookId(book.getId())
+                                    .customer(dto.getCustomer())
+                                    .loanDate(LocalDate.now())
+                                    .build();
+                            loan.updateActiveBookId();
+                            return loan;
+                        }))
+                .flatMap(template::insert)
+                // o indice unico de active_book_id resolve a corrida entre dois emprestimos do mesmo livro
+                .onErrorMap(DataIntegrityViolationException.class, e -> new BusinessException("Book already loaned."))
+                .doOnNext(loan -> statistics.recordLoan(loan.getBookId(), loan.getLoanDate()))
+                .map(LoanRow::getId);
+    }
+
+    @PatchMapping("{id}")
+    public Mono<ResponseEntity<Void>> returnBook(@PathVariable Long id, @RequestBody ReturnedLoanDTO dto,
+                                                 @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch){
+        return repository.findById(id)
+                .switchIfEmpty(Mono.error(() -> new ResponseStatusException(HttpStatus.NOT_FOUND)))
+                .flatMap(loan -> {
+                    ETags.checkIfMatch(ifMatch, loan.getVersion());
+                    boolean wasActive = loan.getActiveBookId() != null;
+                    loan.setReturned(dto.getReturned());
+                    loan.updateActiveBookId();
+                    boolean active = loan.getActiveBookId() != null;
+                    return repository.save(loan)
+                            .doOnNext(saved -> {
+                                if (wasActive != active) {
+                                    statistics.recordReturn(saved.getLoanDate(), !active);
+                                }
+                            });
+                })
+                .map(loan -> ResponseEntity.ok().headers(ETags.headers(loan.getVersion())).build());
+    }
+
+    @GetMapping
+    public Mono<Page<LoanDto>> find(LoanFilterDTO dto, Pageable pageable, ServerWebExchange exchange){
+        return repository.findByBookIsbnOrCustomer(dto.getIsbn(), dto.getCustomer(), pageable)
+                .collectList()
+                .zipWith(repository.countByBookIsbnOrCustomer(dto.getIsbn(), dto.getCustomer()))
+                .<Page<LoanRow>>map(page -> new PageImpl<>(page.getT1(), pageable, page.getT2()))
+                .filter(page -> !exchange.checkNotModified(ETags.weak(page, ReactiveLoanController::identity)))
+                .map(page -> page.map(mapper::toDto));
+    }
+
+    static String identity(LoanRow loan){
+        return loan.getId() + ":" + loan.getVersion() + ":" + (loan.getBook() == null ? null : loan.getBook().getVersion());
+    }
+}
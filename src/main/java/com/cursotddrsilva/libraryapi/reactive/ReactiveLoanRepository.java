@@ -0,0 +1,19 @@
+package com.cursotddrsilva.libraryapi.reactive;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.r2dbc.repository.Query;
+import org.springframework.data.r2dbc.repository.R2dbcRepository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+public interface ReactiveLoanRepository extends R2dbcRepository<LoanRow, Long>, ReactiveLoanRepositoryCustom {
+
+    Mono<Boolean> existsByActiveBookId(Long activeBookId);
+
+    Flux<LoanRow> findByBookId(Long bookId, Pageable pageable);
+
+    Mono<Long> countByBookId(Long bookId);
+
+    @Query("select nextval('loan_seq')")
+    Mono<Long> nextId();
+}
@@ -0,0 +1,15 @@
+package com.cursotddrsilva.libraryapi.reactive;
+
+import org.springframework.data.domain.Pageable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+public interface ReactiveLoanRepositoryCustom {
+
+    /**
+     * Emprestimos pelo isbn do livro ou pelo cliente, com o livro preenchido pelo mesmo join, ordenados por id.
+     */
+    Flux<LoanRow> findByBookIsbnOrCustomer(String isbn, String customer, Pageable pageable);
+
+    Mono<Long> countByBookIsbnOrCustomer(String isbn, String customer);
+}
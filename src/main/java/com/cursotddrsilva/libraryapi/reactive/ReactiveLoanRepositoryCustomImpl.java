@@ -0,0 +1,92 @@
+package com.cursotddrsilva.libraryapi.reactive;
+
+import io.r2dbc.spi.Row;
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.Pageable;
+import org.springframework.r2dbc.core.DatabaseClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+@RequiredArgsConstructor
+public class ReactiveLoanRepositoryCustomImpl implements ReactiveLoanRepositoryCustom {
+
+    private static final String SELECT = "select l.id, l.customer, l.customer_email, l.id_book, l.loan_date, l.returned, " +
+            "l.active_book_id, l.version, b.author, b.title, b.isbn, b.version as book_version from loan l join book b on b.id = l.id_book";
+    private static final String COUNT = "select count(*) from loan l join book b on b.id = l.id_book";
+
+    private final DatabaseClient client;
+
+    @Override
+    public Flux<LoanRow> findByBookIsbnOrCustomer(String isbn, String customer, Pageable pageable) {
+        String where = where(isbn, customer);
+        if (where == null) {
+            return Flux.empty();
+        }
+        DatabaseClient.GenericExecuteSpec spec = client
+                .sql(SELECT + where + " order by l.id limit :limit offset :offset")
+                .bind("limit", pageable.getPageSize())
+                .bind("offset", pageable.getOffset());
+        return bind(spec, isbn, customer)
+                .map((row, metadata) -> toLoan(row))
+                .all();
+    }
+
+    @Override
+    public Mono<Long> countByBookIsbnOrCustomer(String isbn, String customer) {
+        String where = where(isbn, customer);
+        if (where == null) {
+            return Mono.just(0L);
+        }
+        return bind(client.sql(COUNT + where), isbn, customer)
+                .map((row, metadata) -> row.get(0, Long.class))
+                .one();
+    }
+
+    // um OR entre loan e book varre a tabela; a uniao deixa cada lado usar o seu indice
+    private String where(String isbn, String customer) {
+        List<String> ids = new ArrayList<>();
+        if (isbn != null) {
+            ids.add("select i.id from loan i join book ib on ib.id = i.id_book where ib.isbn = :isbn");
+        }
+        if (customer != null) {
+            ids.add("select c.id from loan c where c.customer = :customer");
+        }
+        return ids.isEmpty() ? null : " where l.id in (" + String.join(" union ", ids) + ")";
+    }
+
+    private DatabaseClient.GenericExecuteSpec bind(DatabaseClient.GenericExecuteSpec spec, String isbn, String customer) {
+        if (isbn != null) {
+            spec = spec.bind("isbn", isbn);
+        }
+        if (customer != null) {
+            spec = spec.bind("customer", customer);
+        }
+        return spec;
+    }
+
+    private LoanRow toLoan(Row row) {
+        Long bookId = row.get("id_book", Long.class);
+        BookRow book = BookRow.builder()
+                .id(bookId)
+                .author(row.get("author", String.class))
+                .title(row.get("title", String.class))
+                .isbn(row.get("isbn", String.class))
+                .version(row.get("book_version", Long.class))
+                .build();
+        return LoanRow.builder()
+                .id(row.get("id", Long.class))
+                .customer(row.get("customer", String.class))
+                .customerEmail(row.get("customer_email", String.class))
+                .bookId(bookId)
+                .loanDate(row.get("loan_date", LocalDate.class))
+                .returned(row.get("returned", Boolean.class))
+                .activeBookId(row.get("active_book_id", Long.class))
+                .version(row.get("version", Long.class))
+                .book(book)
+                .build();
+    }
+}
@@ -0,0 +1,22 @@
+package com.cursotddrsilva.libraryapi.reactive;
+
+import com.cursotddrsilva.libraryapi.api.dto.BookDTO;
+import com.cursotddrsilva.libraryapi.api.dto.LoanDto;
+import org.mapstruct.Mapper;
+import org.mapstruct.Mapping;
+
+/**
+ * Conversao entre as linhas do R2DBC e os mesmos DTOs expostos pelo stack servlet.
+ */
+@Mapper(componentModel = "spring")
+public interface ReactiveRowMapper {
+
+    BookDTO toDto(BookRow book);
+
+    @Mapping(target = "version", ignore = true)
+    BookRow toRow(BookDTO dto);
+
+    @Mapping(target = "isbn", source = "book.isbn")
+    @Mapping(target = "bookDTO", source = "book")
+    LoanDto toDto(LoanRow loan);
+}
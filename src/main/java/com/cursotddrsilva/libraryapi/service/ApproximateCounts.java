@@ -0,0 +1,73 @@
+package com.cursotddrsilva.libraryapi.service;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.LoadingCache;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.function.ToLongFunction;
+
+/**
+ * Totais aproximados das listagens paginadas. O count exato roda na primeira consulta de cada filtro
+ * e depois e refeito em segundo plano a cada {@code refresh-ms}; enquanto isso as respostas usam o
+ * ultimo valor calculado.
+ */
+@Component
+public class ApproximateCounts {
+
+    private final LoadingCache<Key, Long> counts;
+
+    public ApproximateCounts(@Value("${application.pagination.approx-count.refresh-ms:60000}") long refreshMs,
+                             @Value("${application.pagination.approx-count.expire-ms:600000}") long expireMs,
+                             @Value("${application.pagination.approx-count.maximum-size:10000}") long maximumSize) {
+        this.counts = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .refreshAfterWrite(refreshMs, TimeUnit.MILLISECONDS)
+                .expireAfterAccess(expireMs, TimeUnit.MILLISECONDS)
+                .build(Key::count);
+    }
+
+    /**
+     * @param query   nome da consulta contada
+     * @param filter  valor imutavel (equals/hashCode) com os campos do filtro; nunca a entidade ou o DTO da requisicao
+     * @param counter refaz o count a partir do filtro; nao deve capturar estado da requisicao
+     */
+    public <F> long get(String query, F filter, ToLongFunction<F> counter) {
+        return counts.get(new Key(query, filter, counter));
+    }
+
+    // o counter acompanha a chave para que o refresh em segundo plano saiba refazer o count
+    private static final class Key {
+
+        private final String query;
+        private final Object filter;
+        private final ToLongFunction<Object> counter;
+
+        @SuppressWarnings("unchecked")
+        private <F> Key(String query, F filter, ToLongFunction<F> counter) {
+            this.query = query;
+            this.filter = filter;
+            this.counter = (ToLongFunction<Object>) counter;
+        }
+
+        private long count() {
+            return counter.applyAsLong(filter);
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (!(other instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) other;
+            return key.query.equals(query) && Objects.equals(key.filter, filter);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(query, filter);
+        }
+    }
+}
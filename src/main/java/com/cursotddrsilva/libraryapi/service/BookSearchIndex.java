@@ -0,0 +1,264 @@
+package com.cursotddrsilva.libraryapi.service;
+
+import com.cursotddrsilva.libraryapi.model.entity.Book;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * Indice invertido em memoria de trigramas de titulo, autor e isbn.
+ * Atende a busca "contem, ignorando maiusculas" de {@link BookService#find} sem varrer a tabela book,
+ * ordenando os resultados por relevancia. Enquanto nao estiver pronto (ou se desabilitado), a busca
+ * volta para a consulta JPA. A carga inicial roda com a aplicacao ja recebendo requisicoes: inclusoes e
+ * remocoes feitas durante a carga ficam guardadas e sao aplicadas, em ordem, ao fim dela.
+ */
+@Slf4j
+@Component
+public class BookSearchIndex {
+
+    private static final int GRAM = 3;
+
+    private enum Field { TITLE, AUTHOR, ISBN }
+
+    private final boolean enabled;
+    private final ObjectProvider<BookService> bookService;
+
+    private final Map<Long, Book> documents = new ConcurrentHashMap<>();
+    private final Map<String, Set<Long>> postings = new ConcurrentHashMap<>();
+    private volatile boolean ready;
+
+    // alteracoes recebidas durante a carga inicial; nulo fora dela
+    private final Object lock = new Object();
+    private List<Runnable> pending;
+
+    public BookSearchIndex(@Value("${application.books.search-index.enabled:true}") boolean enabled,
+                           ObjectProvider<BookService> bookService) {
+        this.enabled = enabled;
+        this.bookService = bookService;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void build() {
+        if (!enabled) {
+            return;
+        }
+        long start = System.currentTimeMillis();
+        synchronized (lock) {
+            pending = new ArrayList<>();
+        }
+        bookService.getObject().exportAll(book -> index(copy(book)));
+        // a carga pode ter lido uma versao anterior a alteracoes ja confirmadas; elas sao reaplicadas por cima
+        synchronized (lock) {
+            pending.forEach(Runnable::run);
+            pending = null;
+            this.ready = true;
+        }
+        log.info("book search index built with {} books in {} ms", documents.size(), System.currentTimeMillis() - start);
+    }
+
+    public boolean isReady() {
+        return enabled && ready;
+    }
+
+    public int size() {
+        return documents.size();
+    }
+
+    /**
+     * Indexa ou reindexa o livro. Dentro de uma transacao, so e aplicado apos o commit.
+     */
+    public void add(Book book) {
+        if (!enabled || book == null || book.getId() == null) {
+            return;
+        }
+        Book document = copy(book);
+        afterCommit(() -> apply(() -> index(document)));
+    }
+
+    public void remove(Long id) {
+        if (!enabled || id == null) {
+            return;
+        }
+        afterCommit(() -> apply(() -> unindex(documents.remove(id))));
+    }
+
+    /**
+     * Busca por titulo, autor e/ou isbn (contem, ignorando maiusculas), ordenando por relevancia.
+     * Vazio quando o indice nao pode responder a consulta: indice nao pronto, nenhum campo de texto
+     * no filtro, filtro por id ou ordenacao explicita.
+     */
+    public Optional<Page<Book>> search(Book filter, Pageable pageable) {
+        if (!isReady() || filter.getId() != null || pageable.getSort().isSorted()) {
+            return Optional.empty();
+        }
+        Map<Field, String> criteria = new EnumMap<>(Field.class);
+        putIfPresent(criteria, Field.TITLE, filter.getTitle());
+        putIfPresent(criteria, Field.AUTHOR, filter.getAuthor());
+        putIfPresent(criteria, Field.ISBN, filter.getIsbn());
+        if (criteria.isEmpty()) {
+            return Optional.empty();
+        }
+
+        List<Book> matches = candidates(criteria).stream()
+                .map(documents::get)
+                .filter(Objects::nonNull)
+                .filter(book -> criteria.entrySet().stream().allMatch(c -> normalize(value(book, c.getKey())).contains(c.getValue())))
+                .map(book -> new AbstractMap.SimpleImmutableEntry<>(book, score(book, criteria)))
+                .sorted(Comparator.comparing((Map.Entry<Book, Double> ranked) -> ranked.getValue()).reversed()
+                        .thenComparing(ranked -> ranked.getKey().getId()))
+                .map(Map.Entry::getKey)
+                .collect(Collectors.toList());
+
+        if (pageable.isUnpaged()) {
+            return Optional.of(new PageImpl<>(matches, pageable, matches.size()));
+        }
+        int from = (int) Math.min(pageable.getOffset(), matches.size());
+        int to = Math.min(from + pageable.getPageSize(), matches.size());
+        return Optional.of(new PageImpl<>(new ArrayList<>(matches.subList(from, to)), pageable, matches.size()));
+    }
+
+    private void apply(Runnable change) {
+        synchronized (lock) {
+            if (pending != null) {
+                pending.add(change);
+            } else {
+                change.run();
+            }
+        }
+    }
+
+    private Collection<Long> candidates(Map<Field, String> criteria) {
+        Set<Long> result = null;
+        for (Map.Entry<Field, String> criterion : criteria.entrySet()) {
+            if (criterion.getValue().length() < GRAM) {
+                continue;
+            }
+            // interseccao comecando pela menor lista de postings
+            List<Set<Long>> lists = new ArrayList<>();
+            for (String gram : grams(criterion.getKey(), criterion.getValue())) {
+                lists.add(postings.getOrDefault(gram, Collections.emptySet()));
+            }
+            lists.sort(Comparator.comparingInt(Set::size));
+            for (Set<Long> ids : lists) {
+                if (result == null) {
+                    result = new HashSet<>(ids);
+                } else {
+                    result.retainAll(ids);
+                }
+                if (result.isEmpty()) {
+                    return result;
+                }
+            }
+        }
+        return result == null ? documents.keySet() : result;
+    }
+
+    private double score(Book book, Map<Field, String> criteria) {
+        double score = 0;
+        for (Map.Entry<Field, String> criterion : criteria.entrySet()) {
+            String value = normalize(value(book, criterion.getKey()));
+            String query = criterion.getValue();
+            if (value.equals(query)) {
+                score += 4;
+            } else if (value.startsWith(query)) {
+                score += 3;
+            } else if (value.contains(" " + query)) {
+                score += 2;
+            } else {
+                score += 1;
+            }
+            // entre resultados equivalentes, o campo mais curto e o mais proximo da consulta
+            score += (double) query.length() / Math.max(value.length(), 1);
+        }
+        return score;
+    }
+
+    private void index(Book document) {
+        unindex(documents.put(document.getId(), document));
+        grams(document).forEach(gram -> postings.computeIfAbsent(gram, key -> ConcurrentHashMap.newKeySet()).add(document.getId()));
+    }
+
+    private void unindex(Book document) {
+        if (document == null) {
+            return;
+        }
+        grams(document).forEach(gram -> {
+            Set<Long> ids = postings.get(gram);
+            if (ids != null) {
+                ids.remove(document.getId());
+            }
+        });
+    }
+
+    private Set<String> grams(Book book) {
+        Set<String> grams = new HashSet<>();
+        for (Field field : Field.values()) {
+            grams.addAll(grams(field, normalize(value(book, field))));
+        }
+        return grams;
+    }
+
+    private static Set<String> grams(Field field, String text) {
+        Set<String> grams = new HashSet<>();
+        for (int i = 0; i + GRAM <= text.length(); i++) {
+            grams.add(field.ordinal() + text.substring(i, i + GRAM));
+        }
+        return grams;
+    }
+
+    private static Book copy(Book book) {
+        return Book.builder()
+                .id(book.getId())
+                .title(book.getTitle())
+                .author(book.getAuthor())
+                .isbn(book.getIsbn())
+                .version(book.getVersion())
+                .build();
+    }
+
+    private static String value(Book book, Field field) {
+        switch (field) {
+            case TITLE:
+                return book.getTitle();
+            case AUTHOR:
+                return book.getAuthor();
+            default:
+                return book.getIsbn();
+        }
+    }
+
+    private static void putIfPresent(Map<Field, String> criteria, Field field, String value) {
+        if (value != null) {
+            criteria.put(field, normalize(value));
+        }
+    }
+
+    private static String normalize(String value) {
+        return value == null ? "" : value.toLowerCase(Locale.ROOT);
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+}
@@ -1,11 +1,18 @@
 package com.cursotddrsilva.libraryapi.service;
 
+import com.cursotddrsilva.libraryapi.api.dto.BulkChunkResultDTO;
 import com.cursotddrsilva.libraryapi.model.entity.Book;
+import com.cursotddrsilva.libraryapi.model.repository.Keyset;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.stereotype.Service;
 
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.function.Consumer;
 
 
 public interface BookService {
@@ -17,9 +24,59 @@ public interface BookService {
 
     Book update(Book book);
 
+    /**
+     * Atualiza titulo e autor com um unico UPDATE condicional no id e na versao; sem {@code expectedVersion}
+     * vale a versao do livro em cache. O isbn do livro informado e ignorado. Vazio quando nenhuma linha
+     * foi alterada; cabe a quem chama descobrir o motivo.
+     */
+    Optional<Book> updateDetails(Book book, Long expectedVersion);
+
+    /**
+     * Remove o livro com um unico DELETE, despejando as chaves do livro em cache; falso quando nao havia
+     * livro com o id.
+     */
+    boolean deleteById(Long id);
+
     Page find(Book filter, Pageable pageRequest);
 
     Page find(Book filter, java.awt.print.Pageable pageRequest);
 
+    /**
+     * Mesmo filtro de {@link #find(Book, Pageable)}, paginado por keyset e sem count.
+     */
+    Slice<Book> findAfter(Book filter, Keyset keyset, int size);
+
+    /**
+     * Mesmo filtro e paginacao de {@link #find(Book, Pageable)}, sem count.
+     */
+    Slice<Book> findSlice(Book filter, Pageable pageRequest);
+
+    /**
+     * Total de {@link #find(Book, Pageable)}, possivelmente desatualizado (ver {@link ApproximateCounts}).
+     */
+    long countApproximately(Book filter);
+
     Optional<Book> getBookByIsbn(String isbn);
+
+    /**
+     * Livros pelos ids: os que estao no cache saem dele, os demais vem de uma unica consulta.
+     * Ids sem livro ficam fora do mapa.
+     */
+    Map<Long, Book> getByIds(Collection<Long> ids);
+
+    /**
+     * Como {@link #getByIds(Collection)}, pelos isbns.
+     */
+    Map<String, Book> getBooksByIsbns(Collection<String> isbns);
+
+    /**
+     * Insere um lote de livros numa unica transacao, verificando isbns duplicados com uma unica consulta.
+     * Livros cujo isbn ja existe (na base ou no proprio lote) sao ignorados e reportados no resultado.
+     */
+    BulkChunkResultDTO saveBatch(List<Book> books);
+
+    /**
+     * Entrega todos os livros, em ordem de id, ao consumer sem manter o catalogo inteiro em memoria.
+     */
+    void exportAll(Consumer<Book> consumer);
 }
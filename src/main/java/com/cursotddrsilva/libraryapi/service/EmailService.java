@@ -1,7 +1,10 @@
 package com.cursotddrsilva.libraryapi.service;
 
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 public interface EmailService {
     void sendMails(String message, List<String> mailList);
+
+    CompletableFuture<Void> sendMail(String message, String mail);
 }
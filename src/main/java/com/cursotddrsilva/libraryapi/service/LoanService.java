@@ -1,26 +1,73 @@
 package com.cursotddrsilva.libraryapi.service;
 
+import com.cursotddrsilva.libraryapi.api.dto.BulkReturnResultDTO;
 import com.cursotddrsilva.libraryapi.api.dto.LoanFilterDTO;
 import com.cursotddrsilva.libraryapi.api.resource.BookController;
 import com.cursotddrsilva.libraryapi.model.entity.Book;
 import com.cursotddrsilva.libraryapi.model.entity.Loan;
+import com.cursotddrsilva.libraryapi.model.repository.Keyset;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 
 import java.util.List;
 import java.util.Optional;
 
 public interface LoanService {
 
+    /**
+     * Emprestimos ativos com {@code loanDate} ate hoje menos este numero de dias estao atrasados.
+     */
+    int LOAN_DAYS = 4;
+
     Loan save(Loan loan);
 
     Optional<Loan> getById(Long id);
 
     Loan update(Loan loan);
 
+    /**
+     * Devolve ({@code returned}) ou reabre o emprestimo com um unico UPDATE condicional no estado
+     * atual e na versao; sem {@code expectedVersion} a versao atual e lida com lock antes da escrita.
+     * Retorna a nova versao, ou vazio quando nenhuma linha foi alterada.
+     */
+    Optional<Long> setReturned(Long id, boolean returned, Long expectedVersion);
+
+    /**
+     * Devolve os emprestimos numa unica transacao, com um update em massa por bloco de ids.
+     * Ids inexistentes ou ja devolvidos sao reportados no resultado.
+     */
+    BulkReturnResultDTO returnLoans(List<Long> ids);
+
     Page<Loan> find(LoanFilterDTO filterDTO, Pageable pageable);
 
     Page<Loan> getLoansByBook(Book book, Pageable pageable);
 
-    List<Loan> getAllLateLoan();
+    /**
+     * Mesmo resultado de {@link #find(LoanFilterDTO, Pageable)}, sem count.
+     */
+    Slice<Loan> findSlice(LoanFilterDTO filterDTO, Pageable pageable);
+
+    long countApproximately(LoanFilterDTO filterDTO);
+
+    /**
+     * Mesmo resultado de {@link #getLoansByBook(Book, Pageable)}, sem count.
+     */
+    Slice<Loan> getLoanSliceByBook(Book book, Pageable pageable);
+
+    long countApproximatelyByBook(Book book);
+
+    Slice<Loan> findAfter(LoanFilterDTO filterDTO, Keyset keyset, int size);
+
+    Slice<Loan> getLoansByBookAfter(Book book, Keyset keyset, int size);
+
+    /**
+     * Propriedade do keyset de {@link #getLateLoansAfter}: os atrasados sao percorridos por (loanDate, id).
+     */
+    String LATE_LOANS_KEY = "loanDate";
+
+    /**
+     * Emprestimos atrasados depois do {@code keyset} em (loanDate, id), limitados a {@code size}.
+     */
+    List<Loan> getLateLoansAfter(Keyset keyset, int size);
 }
@@ -0,0 +1,37 @@
+package com.cursotddrsilva.libraryapi.service;
+
+import com.cursotddrsilva.libraryapi.api.dto.BookLoanStatisticsDTO;
+import com.cursotddrsilva.libraryapi.api.dto.LoanStatisticsDTO;
+
+import java.time.LocalDate;
+
+/**
+ * Agregados de emprestimos mantidos em memoria a cada gravacao, para consultas em tempo constante.
+ */
+public interface LoanStatisticsService {
+
+    /**
+     * Recalcula todos os agregados a partir do banco.
+     */
+    void rebuild();
+
+    /**
+     * Novo emprestimo ativo.
+     */
+    void recordLoan(Long bookId, LocalDate loanDate);
+
+    /**
+     * Emprestimo devolvido ({@code returned = true}) ou reaberto ({@code returned = false}).
+     */
+    void recordReturn(LocalDate loanDate, boolean returned);
+
+    /**
+     * Como {@link #recordReturn(LocalDate, boolean)}, para quem nao leu a linha: a data do emprestimo
+     * e buscada depois, num unico select para todas as devolucoes pendentes.
+     */
+    void recordReturnById(Long loanId, boolean returned);
+
+    LoanStatisticsDTO getStatistics();
+
+    BookLoanStatisticsDTO getBookStatistics(Long bookId);
+}
@@ -0,0 +1,251 @@
+package com.cursotddrsilva.libraryapi.service;
+
+import com.cursotddrsilva.libraryapi.config.VirtualThreads;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.mail.MailException;
+import org.springframework.mail.MailSendException;
+import org.springframework.mail.SimpleMailMessage;
+import org.springframework.mail.javamail.JavaMailSender;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Fila limitada de envio de emails. Os workers retiram lotes da fila e enviam cada lote
+ * em uma unica conexao SMTP ({@link JavaMailSender#send(SimpleMailMessage...)}), respeitando
+ * o limite de envios por segundo. Mensagens que falham sao reenfileiradas com backoff
+ * exponencial ate {@code maxAttempts}.
+ */
+@Slf4j
+@Component
+public class MailDispatcher {
+
+    private static final long POLL_TIMEOUT_MS = 500;
+    private static final long NANOS_PER_SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    private final JavaMailSender javaMailSender;
+    private final BlockingQueue<Task> queue;
+    private final int workers;
+    private final int batchSize;
+    private final int ratePerSecond;
+    private final int maxAttempts;
+    private final long initialBackoffMs;
+    private final boolean virtualThreads;
+
+    private final Timer sendTimer;
+    private final Counter sentCounter;
+    private final Counter retriedCounter;
+    private final Counter failedCounter;
+
+    private ExecutorService workerPool;
+    private ScheduledExecutorService retryScheduler;
+    private volatile boolean running;
+
+    private final ReentrantLock rateLock = new ReentrantLock();
+    private double tokens;
+    private long refilledAt;
+
+    public MailDispatcher(JavaMailSender javaMailSender,
+                          MeterRegistry meterRegistry,
+                          @Value("${application.mail.dispatcher.queue-capacity:10000}") int queueCapacity,
+                          @Value("${application.mail.dispatcher.workers:2}") int workers,
+                          @Value("${application.mail.dispatcher.batch-size:50}") int batchSize,
+                          @Value("${application.mail.dispatcher.rate-per-second:10}") int ratePerSecond,
+                          @Value("${application.mail.dispatcher.max-attempts:5}") int maxAttempts,
+                          @Value("${application.mail.dispatcher.initial-backoff-ms:1000}") long initialBackoffMs,
+                          @Value("${application.threads.virtual:false}") boolean virtualThreads) {
+        this.javaMailSender = javaMailSender;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.workers = workers;
+        this.batchSize = batchSize;
+        this.ratePerSecond = ratePerSecond;
+        this.maxAttempts = maxAttempts;
+        this.initialBackoffMs = initialBackoffMs;
+        this.virtualThreads = virtualThreads;
+        this.tokens = ratePerSecond;
+        this.refilledAt = System.nanoTime();
+
+        Gauge.builder("library.mail.queue.size", queue, Collection::size).register(meterRegistry);
+        this.sendTimer = meterRegistry.timer("library.mail.send");
+        this.sentCounter = meterRegistry.counter("library.mail.sent");
+        this.retriedCounter = meterRegistry.counter("library.mail.retried");
+        this.failedCounter = meterRegistry.counter("library.mail.failed");
+    }
+
+    @PostConstruct
+    public void start() {
+        running = true;
+        workerPool = Executors.newFixedThreadPool(workers, VirtualThreads.factory(virtualThreads, "mail-dispatcher-"));
+        retryScheduler = Executors.newSingleThreadScheduledExecutor(VirtualThreads.factory(false, "mail-retry-"));
+        for (int i = 0; i < workers; i++) {
+            workerPool.execute(this::work);
+        }
+    }
+
+    /**
+     * Enfileira a mensagem. Bloqueia enquanto a fila estiver cheia, aplicando backpressure a quem envia.
+     */
+    public CompletableFuture<Void> submit(SimpleMailMessage message) {
+        Task task = new Task(message);
+        try {
+            queue.put(task);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            task.future.completeExceptionally(e);
+        }
+        return task.future;
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        running = false;
+        workerPool.shutdown();
+        if (!workerPool.awaitTermination(10, TimeUnit.SECONDS)) {
+            workerPool.shutdownNow();
+        }
+        retryScheduler.shutdownNow();
+        List<Task> pending = new ArrayList<>();
+        queue.drainTo(pending);
+        pending.forEach(task -> fail(task, new IllegalStateException("Mail dispatcher stopped.")));
+    }
+
+    private void work() {
+        List<Task> batch = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                Task first = queue.poll(POLL_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, batchSize - 1);
+                for (int i = 0; i < batch.size(); i++) {
+                    acquire();
+                }
+                send(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                batch.forEach(task -> fail(task, e));
+                return;
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void send(List<Task> batch) {
+        SimpleMailMessage[] messages = batch.stream()
+                .map(task -> task.message)
+                .toArray(SimpleMailMessage[]::new);
+
+        MailException error = null;
+        Timer.Sample sample = Timer.start();
+        try {
+            javaMailSender.send(messages);
+        } catch (MailException e) {
+            error = e;
+        } finally {
+            sample.stop(sendTimer);
+        }
+
+        if (error == null) {
+            batch.forEach(this::succeed);
+            return;
+        }
+        // o JavaMailSender informa quais mensagens do lote falharam; as demais foram entregues
+        Map<Object, Exception> failed = error instanceof MailSendException
+                ? ((MailSendException) error).getFailedMessages()
+                : Collections.emptyMap();
+        for (Task task : batch) {
+            Exception cause = failed.get(task.message);
+            if (failed.isEmpty() || cause != null) {
+                retry(task, cause != null ? cause : error);
+            } else {
+                succeed(task);
+            }
+        }
+    }
+
+    private void succeed(Task task) {
+        sentCounter.increment();
+        task.future.complete(null);
+    }
+
+    private void retry(Task task, Exception cause) {
+        task.attempts++;
+        if (task.attempts >= maxAttempts || !running) {
+            log.warn("Falha ao enviar email para {} apos {} tentativas", task.message.getTo(), task.attempts, cause);
+            fail(task, cause);
+            return;
+        }
+        retriedCounter.increment();
+        long delay = initialBackoffMs << (task.attempts - 1);
+        retryScheduler.schedule(() -> requeue(task, delay), delay, TimeUnit.MILLISECONDS);
+    }
+
+    private void requeue(Task task, long delay) {
+        if (!queue.offer(task)) {
+            retryScheduler.schedule(() -> requeue(task, delay), delay, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void fail(Task task, Exception cause) {
+        failedCounter.increment();
+        task.future.completeExceptionally(cause);
+    }
+
+    /**
+     * Token bucket: acumula ate um segundo de envios e bloqueia quando nao ha permissao disponivel.
+     * Usa lock explicito em vez de synchronized para nao prender a carrier thread no modo virtual.
+     */
+    private void acquire() throws InterruptedException {
+        if (ratePerSecond <= 0) {
+            return;
+        }
+        rateLock.lockInterruptibly();
+        try {
+            while (true) {
+                long now = System.nanoTime();
+                tokens = Math.min(ratePerSecond, tokens + (double) (now - refilledAt) * ratePerSecond / NANOS_PER_SECOND);
+                refilledAt = now;
+                if (tokens >= 1) {
+                    tokens--;
+                    return;
+                }
+                TimeUnit.NANOSECONDS.sleep((long) ((1 - tokens) * NANOS_PER_SECOND / ratePerSecond));
+            }
+        } finally {
+            rateLock.unlock();
+        }
+    }
+
+    private static final class Task {
+
+        private final SimpleMailMessage message;
+        private final CompletableFuture<Void> future = new CompletableFuture<>();
+        private int attempts;
+
+        private Task(SimpleMailMessage message) {
+            this.message = message;
+        }
+    }
+}
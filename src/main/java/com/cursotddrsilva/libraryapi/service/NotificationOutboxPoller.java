@@ -0,0 +1,154 @@
+package com.cursotddrsilva.libraryapi.service;
+
+import com.cursotddrsilva.libraryapi.config.VirtualThreads;
+import com.cursotddrsilva.libraryapi.model.entity.NotificationOutbox;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Esvazia o outbox de notificacoes com {@code workers} threads. Cada thread reserva um lote
+ * (ver {@link NotificationService#claim}), envia e marca o resultado, ate nao haver mais pendentes.
+ * Varias instancias da aplicacao podem rodar o poller ao mesmo tempo sem enviar duplicado.
+ */
+@Slf4j
+@Component
+public class NotificationOutboxPoller {
+
+    private final NotificationService notificationService;
+    private final EmailService emailService;
+    private final int workers;
+    private final int batchSize;
+    private final int maxAttempts;
+    private final long leaseTimeoutMs;
+    private final long sendTimeoutMs;
+    private final long idleBackoffMs;
+    private final ExecutorService executor;
+
+    private final Counter sentCounter;
+    private final Counter failedCounter;
+
+    public NotificationOutboxPoller(NotificationService notificationService,
+                                    EmailService emailService,
+                                    MeterRegistry meterRegistry,
+                                    @Value("${application.outbox.workers:4}") int workers,
+                                    @Value("${application.outbox.batch-size:100}") int batchSize,
+                                    @Value("${application.outbox.max-attempts:3}") int maxAttempts,
+                                    @Value("${application.outbox.lease-timeout-ms:300000}") long leaseTimeoutMs,
+                                    @Value("${application.outbox.send-timeout-ms:60000}") long sendTimeoutMs,
+                                    @Value("${application.outbox.idle-backoff-ms:50}") long idleBackoffMs,
+                                    @Value("${application.threads.virtual:false}") boolean virtualThreads) {
+        this.notificationService = notificationService;
+        this.emailService = emailService;
+        this.workers = workers;
+        this.batchSize = batchSize;
+        this.maxAttempts = maxAttempts;
+        // a espera pelos envios precisa terminar bem antes da reserva, para marcar o resultado enquanto o lote e deste worker
+        if (sendTimeoutMs * 2 > leaseTimeoutMs) {
+            throw new IllegalStateException("application.outbox.send-timeout-ms deve ser no maximo metade de application.outbox.lease-timeout-ms.");
+        }
+        this.leaseTimeoutMs = leaseTimeoutMs;
+        this.sendTimeoutMs = sendTimeoutMs;
+        this.idleBackoffMs = idleBackoffMs;
+        this.executor = Executors.newFixedThreadPool(workers, VirtualThreads.factory(virtualThreads, "outbox-worker-"));
+        this.sentCounter = meterRegistry.counter("library.outbox.sent");
+        this.failedCounter = meterRegistry.counter("library.outbox.failed");
+    }
+
+    @Scheduled(fixedDelayString = "${application.outbox.poll-interval-ms:5000}")
+    public void poll() {
+        int released = notificationService.releaseExpired(LocalDateTime.now().minus(leaseTimeoutMs, ChronoUnit.MILLIS));
+        if (released > 0) {
+            log.warn("{} notificacoes com reserva expirada voltaram para a fila", released);
+        }
+
+        List<Callable<Integer>> drains = IntStream.range(0, workers)
+                .mapToObj(i -> (Callable<Integer>) this::drain)
+                .collect(Collectors.toList());
+        try {
+            int processed = 0;
+            for (Future<Integer> drain : executor.invokeAll(drains)) {
+                processed += drain.get();
+            }
+            if (processed > 0) {
+                log.info("Outbox: {} notificacoes processadas", processed);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            log.error("Falha ao processar o outbox de notificacoes", e.getCause());
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private int drain() throws InterruptedException {
+        int processed = 0;
+        int idle = 0;
+        while (true) {
+            String worker = UUID.randomUUID().toString();
+            List<NotificationOutbox> batch = notificationService.claim(worker, batchSize);
+            if (batch.isEmpty()) {
+                // sem reserva: ou a fila acabou ou as pendentes estao travadas por outros workers;
+                // espera com backoff exponencial (ate 16x) antes de tentar de novo
+                if (notificationService.hasPending()) {
+                    TimeUnit.MILLISECONDS.sleep(idleBackoffMs << Math.min(idle++, 4));
+                    continue;
+                }
+                return processed;
+            }
+            idle = 0;
+
+            Map<Long, CompletableFuture<Void>> sends = new LinkedHashMap<>();
+            batch.forEach(notification -> sends.put(notification.getId(),
+                    emailService.sendMail(notification.getMessage(), notification.getRecipient())));
+            try {
+                CompletableFuture.allOf(sends.values().toArray(new CompletableFuture[0]))
+                        .get(sendTimeoutMs, TimeUnit.MILLISECONDS);
+            } catch (ExecutionException | TimeoutException e) {
+                // o resultado de cada envio e verificado abaixo; os que nao terminaram
+                // continuam reservados e voltam para a fila quando a reserva expirar
+            }
+
+            List<Long> sent = new ArrayList<>();
+            List<Long> failed = new ArrayList<>();
+            sends.forEach((id, send) -> {
+                if (send.isCompletedExceptionally()) {
+                    failed.add(id);
+                } else if (send.isDone()) {
+                    sent.add(id);
+                }
+            });
+            notificationService.markSent(worker, sent);
+            notificationService.markFailed(worker, failed, maxAttempts);
+            sentCounter.increment(sent.size());
+            failedCounter.increment(failed.size());
+            processed += batch.size();
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package com.cursotddrsilva.libraryapi.service;
+
+import com.cursotddrsilva.libraryapi.model.entity.Loan;
+import com.cursotddrsilva.libraryapi.model.entity.NotificationOutbox;
+import com.cursotddrsilva.libraryapi.model.repository.Keyset;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+public interface NotificationService {
+
+    /**
+     * Le o proximo bloco de emprestimos atrasados e grava, na mesma transacao, uma notificacao
+     * no outbox para cada um que ainda nao foi notificado hoje. Retorna o bloco lido.
+     */
+    List<Loan> recordLateLoans(Keyset keyset, int size, String message);
+
+    /**
+     * Reserva ate {@code size} notificacoes pendentes para o token {@code worker} e as retorna. Linhas
+     * travadas por outros workers sao puladas; vazio quando todas as pendentes ja estao em uso.
+     */
+    List<NotificationOutbox> claim(String worker, int size);
+
+    boolean hasPending();
+
+    /**
+     * Marca como enviadas as notificacoes ainda reservadas para o token {@code worker}.
+     */
+    void markSent(String worker, List<Long> ids);
+
+    /**
+     * Conta uma tentativa nas notificacoes ainda reservadas para o token {@code worker}: voltam para a
+     * fila ou, apos {@code maxAttempts}, ficam como falhas.
+     */
+    void markFailed(String worker, List<Long> ids, int maxAttempts);
+
+    int releaseExpired(LocalDateTime claimedBefore);
+}
@@ -1,15 +1,20 @@
 package com.cursotddrsilva.libraryapi.service;
 
 import com.cursotddrsilva.libraryapi.model.entity.Loan;
+import com.cursotddrsilva.libraryapi.model.repository.Keyset;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Sort;
 import org.springframework.scheduling.annotation.EnableScheduling;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
 import java.util.List;
-import java.util.stream.Collectors;
 
+@Slf4j
 @Service
 @EnableScheduling
 @RequiredArgsConstructor
@@ -20,16 +25,38 @@ public class ScheduleService {
     @Value("${application.mail.lateLoan.message}")
     private String message;
 
-    private final LoanService loanService;
-    private final EmailService emailService;
+    @Value("${application.lateLoan.chunk-size:500}")
+    private int chunkSize;
 
+    private final NotificationService notificationService;
+    private final MeterRegistry meterRegistry;
+
+    /**
+     * Percorre os emprestimos atrasados em blocos de {@code chunkSize} (keyset por data e id) e grava
+     * cada bloco no outbox de notificacoes, mantendo em memoria apenas um bloco por vez. O envio
+     * e feito pelo {@link NotificationOutboxPoller}.
+     */
     @Scheduled(cron = CRON_LATE_LOANS)
     public void sendMailToLateLoans(){
-        List<Loan> allLateLoan = this.loanService.getAllLateLoan();
-        List<String> mailList = allLateLoan.stream()
-                .map(loan -> loan.getCustomerEmail())
-                .collect(Collectors.toList());
-
-        this.emailService.sendMails(message, mailList);
+        Timer.Sample sample = Timer.start(meterRegistry);
+        Keyset keyset = Keyset.first(LoanService.LATE_LOANS_KEY, Sort.Direction.ASC);
+        int processed = 0;
+        List<Loan> chunk;
+        do {
+            chunk = this.notificationService.recordLateLoans(keyset, chunkSize, message);
+            if (chunk.isEmpty()) {
+                break;
+            }
+
+            Loan last = chunk.get(chunk.size() - 1);
+            keyset = keyset.after(last.getLoanDate(), last.getId());
+            processed += chunk.size();
+            meterRegistry.counter("library.loans.late.processed").increment(chunk.size());
+            meterRegistry.counter("library.loans.late.chunks").increment();
+            log.debug("Emprestimos atrasados processados: {} (ultimo id {})", processed, last.getId());
+        } while (chunk.size() == chunkSize);
+
+        sample.stop(meterRegistry.timer("library.loans.late.run"));
+        log.info("Notificacoes de emprestimos atrasados registradas: {} emprestimos", processed);
     }
 }
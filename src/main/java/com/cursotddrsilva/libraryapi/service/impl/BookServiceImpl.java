@@ -1,24 +1,65 @@
 package com.cursotddrsilva.libraryapi.service.impl;
 
+import com.cursotddrsilva.libraryapi.api.dto.BulkChunkResultDTO;
+import com.cursotddrsilva.libraryapi.config.CacheConfig;
 import com.cursotddrsilva.libraryapi.exception.BusinessException;
 import com.cursotddrsilva.libraryapi.model.entity.Book;
 import com.cursotddrsilva.libraryapi.model.repository.BookRepository;
+import com.cursotddrsilva.libraryapi.model.repository.Keyset;
+import com.cursotddrsilva.libraryapi.service.ApproximateCounts;
+import com.cursotddrsilva.libraryapi.service.BookSearchIndex;
 import com.cursotddrsilva.libraryapi.service.BookService;
+import lombok.Value;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.Caching;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.data.domain.Example;
 import org.springframework.data.domain.ExampleMatcher;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
 import java.awt.print.Pageable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Service
 public class BookServiceImpl implements BookService {
 
     private BookRepository repository;
+    private BookSearchIndex searchIndex;
+    private ApproximateCounts approximateCounts;
+    private CacheManager cacheManager;
 
-    public BookServiceImpl(BookRepository repository) {
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    public BookServiceImpl(BookRepository repository, BookSearchIndex searchIndex, ApproximateCounts approximateCounts,
+                           CacheManager cacheManager) {
         this.repository = repository;
+        this.searchIndex = searchIndex;
+        this.approximateCounts = approximateCounts;
+        this.cacheManager = cacheManager;
     }
 
     @Override
@@ -26,38 +67,197 @@ public class BookServiceImpl implements BookService {
         if(repository.existsByIsbn(book.getIsbn())){
             throw new BusinessException("Isbn já cadastrado");
         }
-        return repository.save(book);
+        Book saved;
+        try {
+            saved = repository.save(book);
+        } catch (DataIntegrityViolationException e) {
+            // outro cadastro com o mesmo isbn venceu a corrida; o indice unico ux_book_isbn garante a regra
+            throw new BusinessException("Isbn já cadastrado");
+        }
+        this.searchIndex.add(saved);
+        return saved;
     }
 
+    // as leituras que alimentam o cache vao ao primario: com a replica atrasada, o cache guardaria a linha antiga
     @Override
+    @Transactional
     public Optional<Book> getById(Long id) {
-        return this.repository.findById(id);
+        return cached(CacheConfig.BOOKS, id, () -> this.repository.findById(id));
     }
 
     @Override
+    @Caching(evict = {
+            @CacheEvict(cacheNames = CacheConfig.BOOKS, key = "#book.id"),
+            @CacheEvict(cacheNames = CacheConfig.BOOKS_BY_ISBN, key = "#book.isbn", condition = "#book.isbn != null")
+    })
     public void delete(Book book) {
         if(book == null || book.getId() == null){
             throw new IllegalArgumentException("Book id can't be null");
         }
         this.repository.delete(book);
+        this.searchIndex.remove(book.getId());
     }
 
     @Override
+    @Caching(evict = {
+            @CacheEvict(cacheNames = CacheConfig.BOOKS, key = "#book.id"),
+            @CacheEvict(cacheNames = CacheConfig.BOOKS_BY_ISBN, key = "#book.isbn", condition = "#book.isbn != null")
+    })
     public Book update(Book book) {
         if(book == null || book.getId() == null){
             throw new IllegalArgumentException("Book id can't be null");
         }
-        return this.repository.save(book);
+        Book updated = this.repository.save(book);
+        this.searchIndex.add(updated);
+        return updated;
+    }
+
+    /**
+     * O isbn, que nunca muda, e a versao base vem da copia em cache (so uma falha de cache vai ao banco);
+     * a nova versao sai do proprio UPDATE, sem reler a linha. Caches e indice so sao atualizados apos o
+     * commit: um despejo antes dele deixaria uma leitura concorrente guardar de novo a linha antiga.
+     */
+    @Override
+    @Transactional
+    public Optional<Book> updateDetails(Book book, Long expectedVersion) {
+        if(book == null || book.getId() == null){
+            throw new IllegalArgumentException("Book id can't be null");
+        }
+        Optional<Book> current = getById(book.getId());
+        if (!current.isPresent()) {
+            return Optional.empty();
+        }
+        Long version = expectedVersion == null ? current.get().getVersion() : expectedVersion;
+        int updated = this.repository.updateDetails(book.getId(), book.getTitle(), book.getAuthor(), version);
+        if (updated == 0 && expectedVersion == null) {
+            // sem If-Match a copia em cache estava velha: rele a linha no banco e tenta mais uma vez
+            evict(CacheConfig.BOOKS, book.getId());
+            current = getById(book.getId());
+            if (!current.isPresent()) {
+                return Optional.empty();
+            }
+            version = current.get().getVersion();
+            updated = this.repository.updateDetails(book.getId(), book.getTitle(), book.getAuthor(), version);
+        }
+        if (updated == 0) {
+            return Optional.empty();
+        }
+        Book result = Book.builder()
+                .id(book.getId())
+                .title(book.getTitle())
+                .author(book.getAuthor())
+                .isbn(current.get().getIsbn())
+                .version(version + 1)
+                .build();
+        evictAfterCommit(result.getId(), result.getIsbn());
+        this.searchIndex.add(result);
+        return Optional.of(result);
+    }
+
+    @Override
+    @Transactional
+    public boolean deleteById(Long id) {
+        if(id == null){
+            throw new IllegalArgumentException("Book id can't be null");
+        }
+        // o isbn nunca muda: vem da copia em cache para despejar so a sua chave
+        Optional<Book> current = getById(id);
+        if (!current.isPresent() || this.repository.removeById(id) == 0) {
+            return false;
+        }
+        evictAfterCommit(id, current.get().getIsbn());
+        this.searchIndex.remove(id);
+        return true;
     }
 
+    private void evictAfterCommit(Long id, String isbn) {
+        afterCommit(() -> {
+            evict(CacheConfig.BOOKS, id);
+            evict(CacheConfig.BOOKS_BY_ISBN, isbn);
+        });
+    }
+
+    private void evict(String cacheName, Object key) {
+        Cache cache = this.cacheManager.getCache(cacheName);
+        if (cache != null) {
+            cache.evict(key);
+        }
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+
+    /**
+     * Buscas por titulo, autor ou isbn sao atendidas pelo indice em memoria, ordenadas por relevancia;
+     * as demais (ou com o indice indisponivel) vao para a consulta por Example.
+     */
     @Override
+    @Transactional(readOnly = true)
     public Page find(Book filter, org.springframework.data.domain.Pageable pageRequest) {
-        Example<Book> example = Example.of(filter, ExampleMatcher.matching()
+        return this.searchIndex.search(filter, pageRequest)
+                .orElseGet(() -> this.repository.findAll(example(filter), pageRequest));
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public Slice<Book> findSlice(Book filter, org.springframework.data.domain.Pageable pageRequest) {
+        return this.searchIndex.search(filter, pageRequest)
+                .<Slice<Book>>map(page -> page)
+                .orElseGet(() -> this.repository.findSlice(example(filter), pageRequest));
+    }
+
+    /**
+     * O indice em memoria ja conhece o total exato das buscas que atende; as demais usam o count em cache.
+     */
+    @Override
+    public long countApproximately(Book filter) {
+        return this.searchIndex.search(filter, PageRequest.of(0, 1))
+                .map(Page::getTotalElements)
+                .orElseGet(() -> this.approximateCounts.get("books",
+                        new CountFilter(filter.getId(), filter.getTitle(), filter.getAuthor(), filter.getIsbn()),
+                        this::count));
+    }
+
+    private long count(CountFilter filter) {
+        return this.repository.count(example(Book.builder()
+                .id(filter.getId())
+                .title(filter.getTitle())
+                .author(filter.getAuthor())
+                .isbn(filter.getIsbn())
+                .build()));
+    }
+
+    // chave do total aproximado: copia imutavel dos campos do filtro, sem reter a entidade
+    @Value
+    private static class CountFilter {
+        Long id;
+        String title;
+        String author;
+        String isbn;
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public Slice<Book> findAfter(Book filter, Keyset keyset, int size) {
+        return this.repository.findAfter(example(filter), keyset, size);
+    }
+
+    private Example<Book> example(Book filter) {
+        return Example.of(filter, ExampleMatcher.matching()
                                 .withIgnoreCase()
                                 .withIgnoreNullValues()
                                 .withStringMatcher(ExampleMatcher.StringMatcher.CONTAINING)
         );
-        return this.repository.findAll(example, pageRequest);
     }
 
     @Override
@@ -66,7 +266,121 @@ public class BookServiceImpl implements BookService {
     }
 
     @Override
+    @Transactional
     public Optional<Book> getBookByIsbn(String isbn) {
-        return this.repository.findByIsbn(isbn);
+        return cached(CacheConfig.BOOKS_BY_ISBN, isbn, () -> this.repository.findByIsbn(isbn));
+    }
+
+    @Override
+    @Transactional
+    public Map<Long, Book> getByIds(Collection<Long> ids) {
+        return lookup(ids, CacheConfig.BOOKS, this.repository::findByIdIn, Book::getId);
+    }
+
+    @Override
+    @Transactional
+    public Map<String, Book> getBooksByIsbns(Collection<String> isbns) {
+        return lookup(isbns, CacheConfig.BOOKS_BY_ISBN, this.repository::findByIsbnIn, Book::getIsbn);
+    }
+
+    /**
+     * Os caches guardam um {@link CachedBook} imutavel, nunca a entidade gerenciada: cada chamada recebe
+     * uma copia destacada propria, sem a colecao lazy de emprestimos.
+     */
+    private <K> Optional<Book> cached(String cacheName, K key, Supplier<Optional<Book>> finder) {
+        Cache cache = this.cacheManager.getCache(cacheName);
+        CachedBook cached = cache == null ? null : cache.get(key, CachedBook.class);
+        if (cached != null) {
+            return Optional.of(cached.toBook());
+        }
+        Optional<CachedBook> found = finder.get().map(CachedBook::of);
+        if (cache != null) {
+            found.ifPresent(book -> cache.putIfAbsent(key, book));
+        }
+        return found.map(CachedBook::toBook);
+    }
+
+    // mesmo cache de getById/getBookByIsbn: acertos nao vao ao banco e as falhas sao buscadas com um unico IN
+    private <K> Map<K, Book> lookup(Collection<K> keys, String cacheName,
+                                    Function<Collection<K>, List<Book>> finder, Function<Book, K> key) {
+        Cache cache = this.cacheManager.getCache(cacheName);
+        Map<K, Book> found = new HashMap<>();
+        List<K> misses = new ArrayList<>();
+        for (K k : new LinkedHashSet<>(keys)) {
+            CachedBook cached = cache == null ? null : cache.get(k, CachedBook.class);
+            if (cached != null) {
+                found.put(k, cached.toBook());
+            } else {
+                misses.add(k);
+            }
+        }
+        if (!misses.isEmpty()) {
+            for (Book book : finder.apply(misses)) {
+                CachedBook copy = CachedBook.of(book);
+                found.put(key.apply(book), copy.toBook());
+                if (cache != null) {
+                    cache.putIfAbsent(key.apply(book), copy);
+                }
+            }
+        }
+        return found;
+    }
+
+    @Value
+    private static class CachedBook {
+        Long id;
+        String title;
+        String author;
+        String isbn;
+        Long version;
+
+        static CachedBook of(Book book) {
+            return new CachedBook(book.getId(), book.getTitle(), book.getAuthor(), book.getIsbn(), book.getVersion());
+        }
+
+        Book toBook() {
+            return Book.builder().id(id).title(title).author(author).isbn(isbn).version(version).build();
+        }
+    }
+
+    @Override
+    @Transactional
+    public BulkChunkResultDTO saveBatch(List<Book> books) {
+        Set<String> isbns = books.stream().map(Book::getIsbn).collect(Collectors.toSet());
+        Set<String> knownIsbns = new HashSet<>(this.repository.findExistingIsbns(isbns));
+
+        List<Book> accepted = new ArrayList<>(books.size());
+        List<String> duplicated = new ArrayList<>();
+        for (Book book : books) {
+            if (knownIsbns.add(book.getIsbn())) {
+                accepted.add(book);
+            } else {
+                duplicated.add(book.getIsbn());
+            }
+        }
+
+        this.repository.saveAll(accepted);
+        this.repository.flush();
+        accepted.forEach(this.searchIndex::add);
+
+        return BulkChunkResultDTO.builder()
+                .received(books.size())
+                .imported(accepted.size())
+                .duplicatedIsbns(duplicated)
+                .build();
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public void exportAll(Consumer<Book> consumer) {
+        try (Stream<Book> books = this.repository.streamAll()) {
+            int count = 0;
+            for (Book book : (Iterable<Book>) books::iterator) {
+                consumer.accept(book);
+                if (++count % BookRepository.EXPORT_FETCH_SIZE == 0) {
+                    this.entityManager.clear();
+                }
+            }
+        }
     }
 }
@@ -1,13 +1,14 @@
 package com.cursotddrsilva.libraryapi.service.impl;
 
 import com.cursotddrsilva.libraryapi.service.EmailService;
+import com.cursotddrsilva.libraryapi.service.MailDispatcher;
 import lombok.RequiredArgsConstructor;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.mail.SimpleMailMessage;
-import org.springframework.mail.javamail.JavaMailSender;
 import org.springframework.stereotype.Service;
 
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 @Service
 @RequiredArgsConstructor
@@ -16,18 +17,24 @@ public class EmailServiceImpl implements EmailService {
     @Value("${application.mail.default.remetent}")
     private String remetent;
 
-    private final JavaMailSender javaMailSender;
+    private final MailDispatcher mailDispatcher;
 
+    /**
+     * Enfileira uma mensagem por destinatario; o envio e feito em segundo plano pelo {@link MailDispatcher}.
+     */
     @Override
     public void sendMails(String message, List<String> mailList) {
-        String[] mails = mailList.toArray(new String[mailList.size()]);
+        mailList.forEach(mail -> sendMail(message, mail));
+    }
 
+    @Override
+    public CompletableFuture<Void> sendMail(String message, String mail) {
         SimpleMailMessage mailMessage = new SimpleMailMessage();
         mailMessage.setFrom(remetent);
         mailMessage.setSubject("Livro emprestimo atrasado.");
         mailMessage.setText(message);
-        mailMessage.setTo(mails);
+        mailMessage.setTo(mail);
 
-        javaMailSender.send(mailMessage);
+        return mailDispatcher.submit(mailMessage);
     }
 }
@@ -1,26 +1,47 @@
 package com.cursotddrsilva.libraryapi.service.impl;
 
+import com.cursotddrsilva.libraryapi.api.dto.BulkReturnResultDTO;
 import com.cursotddrsilva.libraryapi.api.dto.LoanFilterDTO;
 import com.cursotddrsilva.libraryapi.exception.BusinessException;
 import com.cursotddrsilva.libraryapi.model.entity.Book;
 import com.cursotddrsilva.libraryapi.model.entity.Loan;
+import com.cursotddrsilva.libraryapi.model.repository.Keyset;
 import com.cursotddrsilva.libraryapi.model.repository.LoanRepository;
+import com.cursotddrsilva.libraryapi.service.ApproximateCounts;
 import com.cursotddrsilva.libraryapi.service.LoanService;
+import com.cursotddrsilva.libraryapi.service.LoanStatisticsService;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 @Service
 public class LoanServiceImpl implements LoanService {
 
     private LoanRepository repository;
+    private LoanStatisticsService statistics;
+    private ApproximateCounts approximateCounts;
 
-    public LoanServiceImpl(LoanRepository repository) {
+    @Value("${application.loans.bulk-return.chunk-size:500}")
+    private int bulkReturnChunkSize = 500;
+
+    public LoanServiceImpl(LoanRepository repository, LoanStatisticsService statistics, ApproximateCounts approximateCounts) {
         this.repository = repository;
+        this.statistics = statistics;
+        this.approximateCounts = approximateCounts;
     }
 
     @Override
@@ -28,33 +49,159 @@ public class LoanServiceImpl implements LoanService {
         if(this.repository.existsByBookAndNotReturned(loan.getBook())){
             throw new BusinessException("Book already loaned.");
         }
-        return this.repository.save(loan);
+        Loan saved;
+        try {
+            saved = this.repository.saveAndFlush(loan);
+        } catch (DataIntegrityViolationException e) {
+            // outro emprestimo ativo para o mesmo livro foi gravado entre a verificacao e o insert
+            throw new BusinessException("Book already loaned.");
+        }
+        this.statistics.recordLoan(saved.getBook().getId(), saved.getLoanDate());
+        return saved;
     }
 
+    // usado para conferir a versao atual depois de um PATCH sem efeito: na replica atrasada daria 404 ou 412 indevidos
     @Override
+    @Transactional
     public Optional<Loan> getById(Long id) {
         return this.repository.findById(id);
     }
 
     @Override
     public Loan update(Loan loan) {
-        return this.repository.save(loan);
+        // activeBookId so e recalculado no flush: ainda reflete o estado gravado antes desta alteracao
+        boolean wasActive = loan.getActiveBookId() != null;
+        Loan updated = this.repository.save(loan);
+        boolean active = updated.getBook() != null && !Boolean.TRUE.equals(updated.getReturned());
+        if (wasActive != active) {
+            this.statistics.recordReturn(updated.getLoanDate(), !active);
+        }
+        return updated;
     }
 
     @Override
+    @Transactional
+    public Optional<Long> setReturned(Long id, boolean returned, Long expectedVersion) {
+        if (expectedVersion == null) {
+            // sem If-Match a nova versao so e conhecida lendo a linha; o lock garante que o UPDATE a encontra igual
+            Optional<Loan> current = this.repository.findAllForUpdate(Collections.singletonList(id)).stream().findFirst();
+            if (!current.isPresent() || !update(id, returned, current.get().getVersion())) {
+                return Optional.empty();
+            }
+            this.statistics.recordReturn(current.get().getLoanDate(), returned);
+            return Optional.of(current.get().getVersion() + 1);
+        }
+        if (!update(id, returned, expectedVersion)) {
+            return Optional.empty();
+        }
+        // a data do emprestimo, que decide entre atrasados e no prazo, e buscada pelas estatisticas na leitura
+        this.statistics.recordReturnById(id, returned);
+        return Optional.of(expectedVersion + 1);
+    }
+
+    private boolean update(Long id, boolean returned, Long version) {
+        int updated = returned
+                ? this.repository.returnIfActive(id, version)
+                : this.repository.reopenIfReturned(id, version);
+        return updated > 0;
+    }
+
+    @Override
+    @Transactional
+    public BulkReturnResultDTO returnLoans(List<Long> ids) {
+        List<Long> distinct = new ArrayList<>(new LinkedHashSet<>(ids));
+        BulkReturnResultDTO result = BulkReturnResultDTO.builder().received(ids.size()).build();
+
+        for (int from = 0; from < distinct.size(); from += bulkReturnChunkSize) {
+            List<Long> chunk = distinct.subList(from, Math.min(distinct.size(), from + bulkReturnChunkSize));
+            Map<Long, Loan> loans = this.repository.findAllForUpdate(chunk).stream()
+                    .collect(Collectors.toMap(Loan::getId, Function.identity()));
+
+            List<Loan> returning = new ArrayList<>();
+            for (Long id : chunk) {
+                Loan loan = loans.get(id);
+                if (loan == null) {
+                    result.getNotFound().add(id);
+                } else if (Boolean.TRUE.equals(loan.getReturned())) {
+                    result.getAlreadyReturned().add(id);
+                } else {
+                    returning.add(loan);
+                }
+            }
+            if (returning.isEmpty()) {
+                continue;
+            }
+
+            List<Long> returningIds = returning.stream().map(Loan::getId).collect(Collectors.toList());
+            this.repository.markReturned(returningIds);
+            result.getReturned().addAll(returningIds);
+            // as estatisticas so sao atualizadas apos o commit
+            returning.stream()
+                    .filter(loan -> loan.getActiveBookId() != null)
+                    .forEach(loan -> this.statistics.recordReturn(loan.getLoanDate(), true));
+        }
+        return result;
+    }
+
+    @Override
+    @Transactional(readOnly = true)
     public Page<Loan> find(LoanFilterDTO filterDTO, Pageable pageable) {
         return repository.findByBookIsbnOrCustomer(filterDTO.getIsbn(), filterDTO.getCustomer(), pageable);
     }
 
     @Override
+    @Transactional(readOnly = true)
     public Page<Loan> getLoansByBook(Book book, Pageable pageable) {
         return this.repository.findByBook(book, pageable);
     }
 
     @Override
-    public List<Loan> getAllLateLoan() {
-        final Integer loanDays = 4;
-        LocalDate threeDaysAgo = LocalDate.now().minusDays(loanDays);
-        return this.repository.findByLoanDateLessThanAndNotReturned(threeDaysAgo);
+    @Transactional(readOnly = true)
+    public Slice<Loan> findSlice(LoanFilterDTO filterDTO, Pageable pageable) {
+        return repository.findSliceByBookIsbnOrCustomer(filterDTO.getIsbn(), filterDTO.getCustomer(), pageable);
+    }
+
+    @Override
+    public long countApproximately(LoanFilterDTO filterDTO) {
+        return approximateCounts.get("loans", new CountFilter(filterDTO.getIsbn(), filterDTO.getCustomer()),
+                filter -> this.repository.countByBookIsbnOrCustomer(filter.getIsbn(), filter.getCustomer()));
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public Slice<Loan> getLoanSliceByBook(Book book, Pageable pageable) {
+        return this.repository.findSliceByBook(book, pageable);
+    }
+
+    @Override
+    public long countApproximatelyByBook(Book book) {
+        return approximateCounts.get("loansByBook", book.getId(),
+                bookId -> this.repository.countByBook(Book.builder().id(bookId).build()));
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public Slice<Loan> findAfter(LoanFilterDTO filterDTO, Keyset keyset, int size) {
+        return this.repository.findByBookIsbnOrCustomerAfter(filterDTO.getIsbn(), filterDTO.getCustomer(), keyset, size);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public Slice<Loan> getLoansByBookAfter(Book book, Keyset keyset, int size) {
+        return this.repository.findByBookAfter(book, keyset, size);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<Loan> getLateLoansAfter(Keyset keyset, int size) {
+        LocalDate threeDaysAgo = LocalDate.now().minusDays(LOAN_DAYS);
+        return this.repository.findNotReturnedUntilAfter(threeDaysAgo, keyset, size).getContent();
+    }
+
+    // chave do total aproximado: copia imutavel dos campos do filtro, sem reter o DTO da requisicao
+    @lombok.Value
+    private static class CountFilter {
+        String isbn;
+        String customer;
     }
 }
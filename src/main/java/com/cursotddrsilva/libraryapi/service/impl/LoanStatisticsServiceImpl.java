@@ -0,0 +1,218 @@
+package com.cursotddrsilva.libraryapi.service.impl;
+
+import com.cursotddrsilva.libraryapi.api.dto.BookLoanStatisticsDTO;
+import com.cursotddrsilva.libraryapi.api.dto.LoanStatisticsDTO;
+import com.cursotddrsilva.libraryapi.model.repository.LoanRepository;
+import com.cursotddrsilva.libraryapi.service.LoanService;
+import com.cursotddrsilva.libraryapi.service.LoanStatisticsService;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.annotation.PostConstruct;
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Contadores atualizados por {@link LoanService#save} e {@link LoanService#update} e reconstruidos
+ * do banco na inicializacao. Os emprestimos ativos ainda no prazo ficam agrupados por data; a cada
+ * virada de dia os grupos que venceram passam para o contador de atrasados, sem varrer a tabela.
+ * Dentro de uma transacao os registros so sao aplicados apos o commit.
+ */
+@Slf4j
+@Service
+public class LoanStatisticsServiceImpl implements LoanStatisticsService {
+
+    private final LoanRepository repository;
+
+    private final AtomicLong totalLoans = new AtomicLong();
+    private final AtomicLong activeLoans = new AtomicLong();
+    private final Map<Long, AtomicLong> loansByBook = new ConcurrentHashMap<>();
+    // devolucoes registradas so pelo id: [id do emprestimo, variacao de ativos] ainda sem a data
+    private final Map<Long, Long> pendingByLoanId = new ConcurrentHashMap<>();
+
+    private final ReentrantLock overdueLock = new ReentrantLock();
+    private final TreeMap<LocalDate, Long> onTimeByLoanDate = new TreeMap<>();
+    private LocalDate overdueUntil = LocalDate.MIN;
+    private long overdueLoans;
+
+    public LoanStatisticsServiceImpl(LoanRepository repository, MeterRegistry meterRegistry) {
+        this.repository = repository;
+        Gauge.builder("library.loans.active", activeLoans, AtomicLong::get).register(meterRegistry);
+        Gauge.builder("library.loans.overdue", this, statistics -> statistics.getStatistics().getOverdueLoans())
+                .register(meterRegistry);
+    }
+
+    @Override
+    @PostConstruct
+    public void rebuild() {
+        List<Object[]> byBook = repository.countByBook();
+        List<Object[]> activeByDate = repository.countActiveByLoanDate();
+
+        overdueLock.lock();
+        try {
+            loansByBook.clear();
+            long total = 0;
+            for (Object[] row : byBook) {
+                long loans = (Long) row[1];
+                total += loans;
+                if (row[0] != null) {
+                    loansByBook.put((Long) row[0], new AtomicLong(loans));
+                }
+            }
+            totalLoans.set(total);
+
+            pendingByLoanId.clear();
+            onTimeByLoanDate.clear();
+            overdueUntil = LocalDate.MIN;
+            overdueLoans = 0;
+            long active = 0;
+            for (Object[] row : activeByDate) {
+                long loans = (Long) row[1];
+                active += loans;
+                addActive((LocalDate) row[0], loans);
+            }
+            activeLoans.set(active);
+        } finally {
+            overdueLock.unlock();
+        }
+        log.info("Estatisticas de emprestimos reconstruidas: {} emprestimos, {} ativos", totalLoans.get(), activeLoans.get());
+    }
+
+    @Override
+    public void recordLoan(Long bookId, LocalDate loanDate) {
+        afterCommit(() -> {
+            totalLoans.incrementAndGet();
+            loansByBook.computeIfAbsent(bookId, id -> new AtomicLong()).incrementAndGet();
+            activate(loanDate, 1);
+        });
+    }
+
+    @Override
+    public void recordReturn(LocalDate loanDate, boolean returned) {
+        afterCommit(() -> activate(loanDate, returned ? -1 : 1));
+    }
+
+    @Override
+    public void recordReturnById(Long loanId, boolean returned) {
+        afterCommit(() -> {
+            activeLoans.addAndGet(returned ? -1 : 1);
+            pendingByLoanId.merge(loanId, returned ? -1l : 1l,
+                    (current, added) -> current + added == 0 ? null : current + added);
+        });
+    }
+
+    @Override
+    public LoanStatisticsDTO getStatistics() {
+        resolvePending();
+        long overdue;
+        overdueLock.lock();
+        try {
+            roll();
+            overdue = overdueLoans;
+        } finally {
+            overdueLock.unlock();
+        }
+        return LoanStatisticsDTO.builder()
+                .totalLoans(totalLoans.get())
+                .activeLoans(activeLoans.get())
+                .overdueLoans(overdue)
+                .loanedBooks(loansByBook.size())
+                .build();
+    }
+
+    @Override
+    public BookLoanStatisticsDTO getBookStatistics(Long bookId) {
+        AtomicLong loans = loansByBook.get(bookId);
+        return BookLoanStatisticsDTO.builder()
+                .bookId(bookId)
+                .loans(loans == null ? 0 : loans.get())
+                .build();
+    }
+
+    // busca as datas das devolucoes pendentes fora do lock e so entao as aplica aos grupos por data
+    private void resolvePending() {
+        if (pendingByLoanId.isEmpty()) {
+            return;
+        }
+        Map<Long, Long> pending = new HashMap<>();
+        for (Long loanId : pendingByLoanId.keySet()) {
+            Long delta = pendingByLoanId.remove(loanId);
+            if (delta != null) {
+                pending.put(loanId, delta);
+            }
+        }
+        if (pending.isEmpty()) {
+            return;
+        }
+        List<Object[]> loanDates = repository.findLoanDates(pending.keySet());
+        overdueLock.lock();
+        try {
+            for (Object[] row : loanDates) {
+                addActive((LocalDate) row[1], pending.get((Long) row[0]));
+            }
+        } finally {
+            overdueLock.unlock();
+        }
+    }
+
+    private void activate(LocalDate loanDate, long delta) {
+        activeLoans.addAndGet(delta);
+        overdueLock.lock();
+        try {
+            addActive(loanDate, delta);
+        } finally {
+            overdueLock.unlock();
+        }
+    }
+
+    // chamado com overdueLock; emprestimos sem data nunca entram na consulta de atrasados
+    private void addActive(LocalDate loanDate, long delta) {
+        if (loanDate == null) {
+            return;
+        }
+        roll();
+        if (!loanDate.isAfter(overdueUntil)) {
+            overdueLoans += delta;
+        } else {
+            onTimeByLoanDate.merge(loanDate, delta, (current, added) -> current + added == 0 ? null : current + added);
+        }
+    }
+
+    // chamado com overdueLock: move para atrasados os grupos que venceram desde a ultima chamada
+    private void roll() {
+        LocalDate limit = LocalDate.now().minusDays(LoanService.LOAN_DAYS);
+        if (!limit.isAfter(overdueUntil)) {
+            return;
+        }
+        NavigableMap<LocalDate, Long> expired = onTimeByLoanDate.headMap(limit, true);
+        for (Long loans : expired.values()) {
+            overdueLoans += loans;
+        }
+        expired.clear();
+        overdueUntil = limit;
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+}
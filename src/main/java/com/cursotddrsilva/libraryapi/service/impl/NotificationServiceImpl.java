@@ -0,0 +1,104 @@
+package com.cursotddrsilva.libraryapi.service.impl;
+
+import com.cursotddrsilva.libraryapi.model.entity.Loan;
+import com.cursotddrsilva.libraryapi.model.entity.NotificationOutbox;
+import com.cursotddrsilva.libraryapi.model.repository.Keyset;
+import com.cursotddrsilva.libraryapi.model.repository.NotificationOutboxRepository;
+import com.cursotddrsilva.libraryapi.service.LoanService;
+import com.cursotddrsilva.libraryapi.service.NotificationService;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+@Service
+public class NotificationServiceImpl implements NotificationService {
+
+    private LoanService loanService;
+    private NotificationOutboxRepository repository;
+
+    public NotificationServiceImpl(LoanService loanService, NotificationOutboxRepository repository) {
+        this.loanService = loanService;
+        this.repository = repository;
+    }
+
+    @Override
+    @Transactional
+    public List<Loan> recordLateLoans(Keyset keyset, int size, String message) {
+        List<Loan> chunk = this.loanService.getLateLoansAfter(keyset, size);
+        if (chunk.isEmpty()) {
+            return chunk;
+        }
+        LocalDate today = LocalDate.now();
+        Set<String> existing = new HashSet<>(this.repository.findExistingKeys(chunk.stream()
+                .map(loan -> lateLoanKey(loan, today))
+                .collect(Collectors.toList())));
+
+        LocalDateTime now = LocalDateTime.now();
+        List<NotificationOutbox> notifications = chunk.stream()
+                .filter(loan -> !existing.contains(lateLoanKey(loan, today)))
+                .map(loan -> NotificationOutbox.builder()
+                        .notificationKey(lateLoanKey(loan, today))
+                        .recipient(loan.getCustomerEmail())
+                        .message(message)
+                        .status(NotificationOutbox.Status.PENDING)
+                        .createdAt(now)
+                        .build())
+                .collect(Collectors.toList());
+        this.repository.saveAll(notifications);
+        return chunk;
+    }
+
+    @Override
+    @Transactional
+    public List<NotificationOutbox> claim(String worker, int size) {
+        List<Long> ids = this.repository.findForClaim(NotificationOutbox.Status.PENDING, PageRequest.of(0, size))
+                .stream()
+                .map(NotificationOutbox::getId)
+                .collect(Collectors.toList());
+        if (ids.isEmpty() || this.repository.claim(ids, worker, LocalDateTime.now(),
+                NotificationOutbox.Status.PENDING, NotificationOutbox.Status.CLAIMED) == 0) {
+            return Collections.emptyList();
+        }
+        return this.repository.findByClaimedByAndStatus(worker, NotificationOutbox.Status.CLAIMED);
+    }
+
+    @Override
+    public boolean hasPending() {
+        return this.repository.existsByStatus(NotificationOutbox.Status.PENDING);
+    }
+
+    @Override
+    @Transactional
+    public void markSent(String worker, List<Long> ids) {
+        if (!ids.isEmpty()) {
+            this.repository.markSent(ids, worker, LocalDateTime.now(), NotificationOutbox.Status.SENT);
+        }
+    }
+
+    @Override
+    @Transactional
+    public void markFailed(String worker, List<Long> ids, int maxAttempts) {
+        if (!ids.isEmpty()) {
+            this.repository.markFailed(ids, worker, maxAttempts, NotificationOutbox.Status.FAILED);
+            this.repository.markRetry(ids, worker, NotificationOutbox.Status.PENDING);
+        }
+    }
+
+    @Override
+    @Transactional
+    public int releaseExpired(LocalDateTime claimedBefore) {
+        return this.repository.releaseExpired(claimedBefore, NotificationOutbox.Status.CLAIMED, NotificationOutbox.Status.PENDING);
+    }
+
+    private static String lateLoanKey(Loan loan, LocalDate day) {
+        return "lateLoan:" + loan.getId() + ":" + day;
+    }
+}
@@ -0,0 +1,21 @@
+create sequence book_seq start with 1 increment by 50;
+create sequence loan_seq start with 1 increment by 50;
+
+create table book (
+    id bigint not null,
+    author varchar(255),
+    title varchar(255),
+    isbn varchar(255),
+    primary key (id)
+);
+
+create table loan (
+    id bigint not null,
+    customer varchar(100),
+    customer_email varchar(255),
+    id_book bigint,
+    loan_date date,
+    returned boolean,
+    primary key (id),
+    constraint fk_loan_book foreign key (id_book) references book (id)
+);
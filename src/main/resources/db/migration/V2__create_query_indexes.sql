@@ -0,0 +1,11 @@
+-- BookRepository.findByIsbn / existsByIsbn / findExistingIsbns
+create unique index ux_book_isbn on book (isbn);
+
+-- LoanRepository.existsByBookAndNotReturned / findByBook
+create index ix_loan_book_returned on loan (id_book, returned);
+
+-- LoanRepository.findByLoanDateLessThanAndNotReturned
+create index ix_loan_date_returned on loan (loan_date, returned);
+
+-- LoanRepository.findByBookIsbnOrCustomer
+create index ix_loan_customer on loan (customer);
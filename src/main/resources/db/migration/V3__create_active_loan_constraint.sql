@@ -0,0 +1,8 @@
+-- um unico emprestimo ativo por livro: active_book_id e preenchido apenas enquanto o emprestimo nao foi devolvido
+alter table loan add column active_book_id bigint;
+
+update loan l set active_book_id = l.id_book
+ where (l.returned is null or l.returned = false)
+   and l.id = (select max(o.id) from loan o where o.id_book = l.id_book and (o.returned is null or o.returned = false));
+
+create unique index ux_loan_active_book on loan (active_book_id);
@@ -0,0 +1,24 @@
+create sequence notification_outbox_seq start with 1 increment by 50;
+
+create table notification_outbox (
+    id bigint not null,
+    notification_key varchar(100) not null,
+    recipient varchar(255),
+    message varchar(1000),
+    status varchar(20) not null,
+    attempts integer not null,
+    claimed_by varchar(100),
+    claimed_at timestamp,
+    created_at timestamp not null,
+    sent_at timestamp,
+    primary key (id)
+);
+
+-- a mesma notificacao (ex.: emprestimo atrasado no dia) nunca e gravada duas vezes
+create unique index ux_outbox_notification_key on notification_outbox (notification_key);
+
+-- NotificationOutboxRepository.claim / releaseExpired
+create index ix_outbox_status_id on notification_outbox (status, id);
+
+-- NotificationOutboxRepository.findByClaimedByAndStatus
+create index ix_outbox_claimed_by on notification_outbox (claimed_by);
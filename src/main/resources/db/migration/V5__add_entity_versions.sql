@@ -0,0 +1,3 @@
+-- versao para lock otimista (@Version) e ETags de Book e Loan
+alter table book add column version bigint default 0 not null;
+alter table loan add column version bigint default 0 not null;
@@ -0,0 +1,48 @@
+package com.cursotddrsilva.libraryapi.benchmark;
+
+import com.cursotddrsilva.libraryapi.api.dto.BookDTO;
+import com.cursotddrsilva.libraryapi.api.dto.LoanDto;
+import com.cursotddrsilva.libraryapi.api.resource.BookController;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.context.request.WebRequest;
+
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class BookControllerBenchmark {
+
+    private BookController controller;
+
+    @Setup
+    public void setUp(LibraryState state){
+        this.controller = state.getBean(BookController.class);
+    }
+
+    @Benchmark
+    public Slice<BookDTO> findFirstPage(){
+        return controller.find(new BookDTO(), PageRequest.of(0, 20), "exact", request());
+    }
+
+    @Benchmark
+    public Slice<BookDTO> findByTitle(){
+        return controller.find(BookDTO.builder().title("aventuras 12").build(), PageRequest.of(0, 20), "exact", request());
+    }
+
+    @Benchmark
+    public Slice<LoanDto> loansByBook(LibraryState state){
+        return controller.loansByBook(state.randomBookId(), PageRequest.of(0, 20), "exact", request());
+    }
+
+    // sem If-None-Match: a verificacao do ETag nunca interrompe a resposta
+    static WebRequest request(){
+        return new ServletWebRequest(new MockHttpServletRequest());
+    }
+}
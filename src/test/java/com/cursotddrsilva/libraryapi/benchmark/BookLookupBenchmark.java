@@ -0,0 +1,59 @@
+package com.cursotddrsilva.libraryapi.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+
+/**
+ * Livros de uma tela de emprestimos resolvidos por HTTP: um GET /api/books/{id} por livro contra
+ * um unico GET /api/books?ids=. O cache de livros e compartilhado, entao os dois medem sobretudo
+ * as idas e voltas.
+ */
+@State(Scope.Benchmark)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class BookLookupBenchmark {
+
+    @Param({"20", "100"})
+    private int rows;
+
+    private HttpClient client;
+    private String baseUrl;
+
+    @Setup
+    public void setUp(LibraryState state){
+        this.client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+        this.baseUrl = "http://localhost:" + state.port() + "/api/books";
+    }
+
+    @Benchmark
+    public void perId(LibraryState state, Blackhole blackhole) throws IOException, InterruptedException {
+        for (int i = 0; i < rows; i++) {
+            blackhole.consume(get(baseUrl + "/" + state.randomBookId()));
+        }
+    }
+
+    @Benchmark
+    public String multiGet(LibraryState state) throws IOException, InterruptedException {
+        String ids = LongStream.range(0, rows)
+                .map(i -> state.randomBookId())
+                .mapToObj(String::valueOf)
+                .collect(Collectors.joining(","));
+        return get(baseUrl + "?ids=" + ids);
+    }
+
+    private String get(String url) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(url)).GET().build();
+        return client.send(request, HttpResponse.BodyHandlers.ofString()).body();
+    }
+}
@@ -0,0 +1,126 @@
+package com.cursotddrsilva.libraryapi.benchmark;
+
+import com.cursotddrsilva.libraryapi.LibraryApiApplication;
+import com.cursotddrsilva.libraryapi.model.entity.Book;
+import com.cursotddrsilva.libraryapi.model.entity.Loan;
+import com.cursotddrsilva.libraryapi.model.repository.BookRepository;
+import com.cursotddrsilva.libraryapi.model.repository.LoanRepository;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Sobe a aplicacao completa sobre um H2 embarcado e o popula com {@code books} livros e
+ * {@code loans} emprestimos. Compartilhado pelas suites que exercitam controllers e servicos.
+ */
+@State(Scope.Benchmark)
+public class LibraryState {
+
+    private static final int SEED_CHUNK = 2_000;
+
+    @Param({"10000"})
+    public int books;
+
+    @Param({"50000"})
+    public int loans;
+
+    private ConfigurableApplicationContext context;
+
+    @Setup(Level.Trial)
+    public void start(){
+        start(new String[0]);
+    }
+
+    /**
+     * Sobe a aplicacao com propriedades adicionais (ex.: {@code application.threads.virtual=true}).
+     */
+    public void start(String... properties){
+        this.context = new SpringApplicationBuilder(LibraryApiApplication.class)
+                .properties(
+                        "server.port=0",
+                        "spring.datasource.url=jdbc:h2:mem:benchmark;DB_CLOSE_DELAY=-1",
+                        "spring.jpa.show-sql=false",
+                        "logging.level.root=WARN",
+                        "spring.main.banner-mode=off")
+                .properties(properties)
+                .run();
+        seed();
+    }
+
+    @TearDown(Level.Trial)
+    public void stop(){
+        this.context.close();
+    }
+
+    public <T> T getBean(Class<T> type){
+        return this.context.getBean(type);
+    }
+
+    public int port(){
+        return this.context.getEnvironment().getRequiredProperty("local.server.port", Integer.class);
+    }
+
+    public long randomBookId(){
+        return 1 + (long) (Math.random() * books);
+    }
+
+    /** Isbn de um livro existente. */
+    public String randomIsbn(){
+        return isbn((int) (Math.random() * books));
+    }
+
+    /** Cliente com emprestimos existentes. */
+    public String randomCustomer(){
+        return customer((int) (Math.random() * loans));
+    }
+
+    private void seed(){
+        BookRepository bookRepository = getBean(BookRepository.class);
+        LoanRepository loanRepository = getBean(LoanRepository.class);
+        TransactionTemplate transaction = new TransactionTemplate(getBean(PlatformTransactionManager.class));
+
+        List<Book> savedBooks = new ArrayList<>(books);
+        for (int start = 0; start < books; start += SEED_CHUNK) {
+            List<Book> chunk = new ArrayList<>(SEED_CHUNK);
+            for (int i = start; i < Math.min(books, start + SEED_CHUNK); i++) {
+                chunk.add(Book.builder()
+                        .title("As aventuras " + i)
+                        .author("Autor " + (i % 500))
+                        .isbn(isbn(i))
+                        .build());
+            }
+            savedBooks.addAll(transaction.execute(status -> bookRepository.saveAll(chunk)));
+        }
+
+        LocalDate today = LocalDate.now();
+        for (int start = 0; start < loans; start += SEED_CHUNK) {
+            List<Loan> chunk = new ArrayList<>(SEED_CHUNK);
+            for (int i = start; i < Math.min(loans, start + SEED_CHUNK); i++) {
+                // no maximo um emprestimo ativo por livro
+                boolean returned = i >= books || i % 2 == 0;
+                chunk.add(Loan.builder()
+                        .book(savedBooks.get(i % books))
+                        .customer(customer(i))
+                        .customerEmail(customer(i) + "@email.com")
+                        .loanDate(today.minusDays(i % 30))
+                        .returned(returned)
+                        .build());
+            }
+            transaction.execute(status -> loanRepository.saveAll(chunk));
+        }
+    }
+
+    private static String isbn(int i){
+        return "isbn-" + i;
+    }
+
+    private static String customer(int i){
+        return "cliente" + (i % 1_000);
+    }
+}
@@ -0,0 +1,37 @@
+package com.cursotddrsilva.libraryapi.benchmark;
+
+import com.cursotddrsilva.libraryapi.api.dto.LoanDto;
+import com.cursotddrsilva.libraryapi.api.dto.LoanFilterDTO;
+import com.cursotddrsilva.libraryapi.api.resource.LoanController;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
+
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class LoanControllerBenchmark {
+
+    private LoanController controller;
+
+    @Setup
+    public void setUp(LibraryState state){
+        this.controller = state.getBean(LoanController.class);
+    }
+
+    @Benchmark
+    public Slice<LoanDto> findByIsbn(LibraryState state){
+        LoanFilterDTO filter = LoanFilterDTO.builder().isbn(state.randomIsbn()).build();
+        return controller.find(filter, PageRequest.of(0, 20), "exact", BookControllerBenchmark.request());
+    }
+
+    @Benchmark
+    public Slice<LoanDto> findByCustomer(LibraryState state){
+        LoanFilterDTO filter = LoanFilterDTO.builder().customer(state.randomCustomer()).build();
+        return controller.find(filter, PageRequest.of(0, 20), "exact", BookControllerBenchmark.request());
+    }
+}
@@ -0,0 +1,61 @@
+package com.cursotddrsilva.libraryapi.benchmark;
+
+import com.cursotddrsilva.libraryapi.model.entity.Book;
+import com.cursotddrsilva.libraryapi.model.entity.Loan;
+import com.cursotddrsilva.libraryapi.model.repository.BookRepository;
+import com.cursotddrsilva.libraryapi.model.repository.LoanRepository;
+import com.cursotddrsilva.libraryapi.service.LoanService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.data.domain.Pageable;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+@State(Scope.Benchmark)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class LoanServiceBenchmark {
+
+    private LoanService loanService;
+    private BookRepository bookRepository;
+    private LoanRepository loanRepository;
+
+    private Book book;
+
+    @Setup(Level.Trial)
+    public void setUp(LibraryState state){
+        this.loanService = state.getBean(LoanService.class);
+        this.bookRepository = state.getBean(BookRepository.class);
+        this.loanRepository = state.getBean(LoanRepository.class);
+    }
+
+    /**
+     * Devolve os emprestimos ativos do livro sorteado, fora da medicao, para que o
+     * {@code save} medido sempre encontre o livro disponivel.
+     */
+    @Setup(Level.Invocation)
+    public void releaseBook(LibraryState state){
+        this.book = bookRepository.findById(state.randomBookId()).orElseThrow(IllegalStateException::new);
+        List<Loan> active = loanRepository.findByBook(book, Pageable.unpaged())
+                .stream()
+                .filter(loan -> !Boolean.TRUE.equals(loan.getReturned()))
+                .peek(loan -> loan.setReturned(true))
+                .collect(Collectors.toList());
+        loanRepository.saveAll(active);
+    }
+
+    @Benchmark
+    public Loan save(){
+        Loan loan = Loan.builder()
+                .book(book)
+                .customer("benchmark")
+                .customerEmail("benchmark@email.com")
+                .loanDate(LocalDate.now())
+                .build();
+        return loanService.save(loan);
+    }
+}
@@ -0,0 +1,98 @@
+package com.cursotddrsilva.libraryapi.benchmark;
+
+import com.cursotddrsilva.libraryapi.api.dto.BookDTO;
+import com.cursotddrsilva.libraryapi.api.dto.LoanDto;
+import com.cursotddrsilva.libraryapi.api.mapper.BookMapper;
+import com.cursotddrsilva.libraryapi.api.mapper.BookMapperImpl;
+import com.cursotddrsilva.libraryapi.api.mapper.LoanMapper;
+import com.cursotddrsilva.libraryapi.api.mapper.LoanMapperImpl;
+import com.cursotddrsilva.libraryapi.model.entity.Book;
+import com.cursotddrsilva.libraryapi.model.entity.Loan;
+import org.modelmapper.ModelMapper;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Compara o mapeamento reflexivo do ModelMapper (caminho antigo dos controllers)
+ * com os mappers gerados pelo MapStruct, para uma pagina de livros e de emprestimos.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MappingBenchmark {
+
+    @Param({"20", "100"})
+    private int pageSize;
+
+    private ModelMapper modelMapper;
+    private AnnotationConfigApplicationContext context;
+    private BookMapper bookMapper;
+    private LoanMapper loanMapper;
+
+    private List<Book> books;
+    private List<Loan> loans;
+
+    @Setup
+    public void setUp(){
+        this.modelMapper = new ModelMapper();
+        this.context = new AnnotationConfigApplicationContext(BookMapperImpl.class, LoanMapperImpl.class);
+        this.bookMapper = context.getBean(BookMapper.class);
+        this.loanMapper = context.getBean(LoanMapper.class);
+
+        this.books = new ArrayList<>();
+        this.loans = new ArrayList<>();
+        for (long i = 0; i < pageSize; i++) {
+            Book book = Book.builder().id(i).title("Titulo " + i).author("Autor " + i).isbn("isbn-" + i).build();
+            books.add(book);
+            loans.add(Loan.builder()
+                    .id(i)
+                    .customer("Cliente " + i)
+                    .customerEmail("cliente" + i + "@email.com")
+                    .book(book)
+                    .loanDate(LocalDate.now())
+                    .build());
+        }
+    }
+
+    @TearDown
+    public void tearDown(){
+        this.context.close();
+    }
+
+    @Benchmark
+    public List<BookDTO> booksModelMapper(){
+        return books.stream()
+                .map(entity -> modelMapper.map(entity, BookDTO.class))
+                .collect(Collectors.toList());
+    }
+
+    @Benchmark
+    public List<BookDTO> booksMapStruct(){
+        return bookMapper.toDtoList(books);
+    }
+
+    @Benchmark
+    public List<LoanDto> loansModelMapper(){
+        return loans.stream()
+                .map(entity -> {
+                    BookDTO bookDTO = modelMapper.map(entity.getBook(), BookDTO.class);
+                    LoanDto loanDto = modelMapper.map(entity, LoanDto.class);
+                    loanDto.setBookDTO(bookDTO);
+                    return loanDto;
+                }).collect(Collectors.toList());
+    }
+
+    @Benchmark
+    public List<LoanDto> loansMapStruct(){
+        return loanMapper.toDtoList(loans);
+    }
+}
@@ -0,0 +1,98 @@
+package com.cursotddrsilva.libraryapi.benchmark;
+
+import com.cursotddrsilva.libraryapi.api.dto.BookDTO;
+import com.cursotddrsilva.libraryapi.api.dto.CompactPageDTO;
+import com.cursotddrsilva.libraryapi.api.dto.LoanDto;
+import com.cursotddrsilva.libraryapi.api.resource.PageEnvelopeAdvice;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.module.blackbird.BlackbirdModule;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Serializacao de uma pagina de livros e de emprestimos: JSON do Page do Spring Data contra o
+ * envelope compacto, com o Jackson por reflexao ({@code default}) e com o Blackbird.
+ * O tamanho de cada payload e impresso no setup.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PageEnvelopeBenchmark {
+
+    @Param({"20", "100"})
+    private int pageSize;
+
+    @Param({"default", "blackbird"})
+    private String serializer;
+
+    private ObjectMapper objectMapper;
+
+    private Page<BookDTO> books;
+    private CompactPageDTO<BookDTO> compactBooks;
+    private Page<LoanDto> loans;
+    private CompactPageDTO<LoanDto> compactLoans;
+
+    @Setup
+    public void setUp() throws JsonProcessingException {
+        this.objectMapper = new ObjectMapper();
+        if ("blackbird".equals(serializer)) {
+            this.objectMapper.registerModule(new BlackbirdModule());
+        }
+
+        List<BookDTO> bookContent = new ArrayList<>();
+        List<LoanDto> loanContent = new ArrayList<>();
+        for (long i = 0; i < pageSize; i++) {
+            BookDTO book = BookDTO.builder().id(i).title("Titulo " + i).author("Autor " + i).isbn("isbn-" + i).version(1l).build();
+            bookContent.add(book);
+            loanContent.add(LoanDto.builder()
+                    .id(i)
+                    .isbn(book.getIsbn())
+                    .customer("Cliente " + i)
+                    .customerEmail("cliente" + i + "@email.com")
+                    .bookDTO(book)
+                    .version(1l)
+                    .build());
+        }
+        PageRequest pageRequest = PageRequest.of(1, pageSize, Sort.by("id"));
+        this.books = new PageImpl<>(bookContent, pageRequest, 10_000);
+        this.compactBooks = PageEnvelopeAdvice.compact(books);
+        this.loans = new PageImpl<>(loanContent, pageRequest, 10_000);
+        this.compactLoans = PageEnvelopeAdvice.compact(loans);
+
+        System.out.printf("%npayload pageSize=%d: books page=%d bytes, compact=%d bytes; loans page=%d bytes, compact=%d bytes%n",
+                pageSize,
+                objectMapper.writeValueAsBytes(books).length, objectMapper.writeValueAsBytes(compactBooks).length,
+                objectMapper.writeValueAsBytes(loans).length, objectMapper.writeValueAsBytes(compactLoans).length);
+    }
+
+    @Benchmark
+    public byte[] booksPage() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(books);
+    }
+
+    @Benchmark
+    public byte[] booksCompact() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(compactBooks);
+    }
+
+    @Benchmark
+    public byte[] loansPage() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(loans);
+    }
+
+    @Benchmark
+    public byte[] loansCompact() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(compactLoans);
+    }
+}
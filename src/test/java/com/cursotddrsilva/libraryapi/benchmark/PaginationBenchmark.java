@@ -0,0 +1,63 @@
+package com.cursotddrsilva.libraryapi.benchmark;
+
+import com.cursotddrsilva.libraryapi.model.entity.Book;
+import com.cursotddrsilva.libraryapi.model.repository.Keyset;
+import com.cursotddrsilva.libraryapi.service.BookService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Paginacao por offset (com count, sem count e com total aproximado) contra paginacao por keyset,
+ * na primeira pagina e numa pagina profunda.
+ * Para a pagina 10.000 com 20 itens: -p books=200020 -p page=0,10000
+ */
+@State(Scope.Benchmark)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class PaginationBenchmark {
+
+    private static final int SIZE = 20;
+
+    @Param({"0", "400"})
+    private int page;
+
+    private BookService service;
+    private Keyset keyset;
+
+    @Setup
+    public void setUp(LibraryState state){
+        this.service = state.getBean(BookService.class);
+        // os ids sao sequenciais a partir de 1, entao a pagina N comeca depois do id N * SIZE
+        Keyset first = Keyset.first(Keyset.ID, Sort.Direction.ASC);
+        long lastId = (long) page * SIZE;
+        this.keyset = page == 0 ? first : first.after(lastId, lastId);
+    }
+
+    @Benchmark
+    public Page<Book> offset(){
+        return service.find(new Book(), PageRequest.of(page, SIZE, Sort.by(Keyset.ID)));
+    }
+
+    @Benchmark
+    public Slice<Book> offsetSlice(){
+        return service.findSlice(new Book(), PageRequest.of(page, SIZE, Sort.by(Keyset.ID)));
+    }
+
+    @Benchmark
+    public long offsetSliceApproxTotal(){
+        return service.findSlice(new Book(), PageRequest.of(page, SIZE, Sort.by(Keyset.ID))).getNumberOfElements()
+                + service.countApproximately(new Book());
+    }
+
+    @Benchmark
+    public Slice<Book> keyset(){
+        return service.findAfter(new Book(), keyset, SIZE);
+    }
+}
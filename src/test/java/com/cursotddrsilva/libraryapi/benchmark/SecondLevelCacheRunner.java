@@ -0,0 +1,90 @@
+package com.cursotddrsilva.libraryapi.benchmark;
+
+import com.cursotddrsilva.libraryapi.api.dto.LoanFilterDTO;
+import com.cursotddrsilva.libraryapi.api.resource.LoanController;
+import com.cursotddrsilva.libraryapi.model.repository.BookRepository;
+import com.cursotddrsilva.libraryapi.model.repository.LoanRepository;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManagerFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Idas ao banco por operacao com e sem o cache de segundo nivel do Hibernate, medidas pelas
+ * estatisticas do Hibernate apos um aquecimento. Cobre a listagem de {@link LoanController#find},
+ * a carga lazy de {@code Loan.book} e a busca de livro por isbn (cache de consultas).
+ *
+ * <pre>
+ * ./mvnw test-compile exec:java -Dexec.classpathScope=test \
+ *     -Dexec.mainClass=com.cursotddrsilva.libraryapi.benchmark.SecondLevelCacheRunner \
+ *     -Dcache.operations=5000
+ * </pre>
+ */
+public class SecondLevelCacheRunner {
+
+    private static final int OPERATIONS = Integer.getInteger("cache.operations", 5_000);
+
+    public static void main(String[] args) {
+        List<String> summary = new ArrayList<>();
+        for (boolean enabled : new boolean[]{false, true}) {
+            LibraryState state = new LibraryState();
+            state.books = 10_000;
+            state.loans = 50_000;
+            state.start(
+                    "spring.datasource.url=jdbc:h2:mem:cache-" + enabled + ";DB_CLOSE_DELAY=-1",
+                    "spring.jpa.properties.hibernate.cache.use_second_level_cache=" + enabled,
+                    "spring.jpa.properties.hibernate.cache.use_query_cache=" + enabled);
+            try {
+                summary.addAll(run(enabled ? "com cache" : "sem cache", state));
+            } finally {
+                state.stop();
+            }
+        }
+        System.out.printf("%-10s %-16s %12s %10s%n", "modo", "operacao", "sql/op", "us/op");
+        summary.forEach(System.out::println);
+    }
+
+    private static List<String> run(String mode, LibraryState state) {
+        LoanController loanController = state.getBean(LoanController.class);
+        LoanRepository loanRepository = state.getBean(LoanRepository.class);
+        BookRepository bookRepository = state.getBean(BookRepository.class);
+        TransactionTemplate transaction = new TransactionTemplate(state.getBean(PlatformTransactionManager.class));
+        transaction.setReadOnly(true);
+        Statistics statistics = state.getBean(EntityManagerFactory.class).unwrap(SessionFactory.class).getStatistics();
+
+        Runnable findLoans = () -> loanController.find(
+                LoanFilterDTO.builder().isbn(state.randomIsbn()).build(), PageRequest.of(0, 20),
+                "exact", BookControllerBenchmark.request());
+        Runnable loanBook = () -> transaction.execute(status -> loanRepository
+                .findById(1 + (long) (Math.random() * state.loans))
+                .map(loan -> loan.getBook().getTitle()));
+        Runnable bookByIsbn = () -> bookRepository.findByIsbn(state.randomIsbn());
+
+        List<String> lines = new ArrayList<>();
+        lines.add(measure(mode, "loans.find", findLoans, statistics));
+        lines.add(measure(mode, "loan.book", loanBook, statistics));
+        lines.add(measure(mode, "book.isbn", bookByIsbn, statistics));
+        return lines;
+    }
+
+    private static String measure(String mode, String operation, Runnable action, Statistics statistics) {
+        for (int i = 0; i < OPERATIONS; i++) {
+            action.run();
+        }
+        statistics.clear();
+        long start = System.nanoTime();
+        for (int i = 0; i < OPERATIONS; i++) {
+            action.run();
+        }
+        long elapsed = System.nanoTime() - start;
+        return String.format("%-10s %-16s %12.2f %10.1f", mode, operation,
+                (double) statistics.getPrepareStatementCount() / OPERATIONS,
+                (double) TimeUnit.NANOSECONDS.toMicros(elapsed) / OPERATIONS);
+    }
+}
@@ -0,0 +1,173 @@
+package com.cursotddrsilva.libraryapi.benchmark;
+
+import com.cursotddrsilva.libraryapi.config.VirtualThreads;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Teste de carga de malha fechada comparando o modo de threads de plataforma, o de virtual
+ * threads ({@code application.threads.virtual=true}, apenas em Java 21+) e o stack reativo
+ * (profile {@code reactive}, WebFlux + R2DBC) no mesmo hardware. Para cada modo sobe a
+ * aplicacao com {@link LibraryState} e aumenta o numero de clientes simultaneos, reportando vazao,
+ * p50/p99 e erros. A concorrencia maxima sustentada e o maior nivel sem erros e com p99 dentro do SLO.
+ *
+ * <pre>
+ * ./mvnw test-compile exec:java -Dexec.classpathScope=test \
+ *     -Dexec.mainClass=com.cursotddrsilva.libraryapi.benchmark.ThreadModeLoadRunner \
+ *     -Dload.modes=platform,virtual,reactive -Dload.levels=50,100,200,400,800,1600 -Dload.seconds=10 -Dload.slo=250
+ * </pre>
+ */
+public class ThreadModeLoadRunner {
+
+    private static final List<String> MODES = Arrays.asList(System.getProperty("load.modes", "platform,virtual,reactive").split(","));
+    private static final int[] LEVELS = Arrays.stream(System.getProperty("load.levels", "50,100,200,400,800,1600").split(","))
+            .mapToInt(Integer::parseInt)
+            .toArray();
+    private static final Duration STEP = Duration.ofSeconds(Integer.getInteger("load.seconds", 10));
+    private static final long SLO_MS = Integer.getInteger("load.slo", 250);
+    private static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(5);
+
+    public static void main(String[] args) throws Exception {
+        List<String> summary = new ArrayList<>();
+        for (String mode : MODES) {
+            if ("virtual".equals(mode) && !VirtualThreads.isSupported()) {
+                summary.add("virtual: nao suportado em Java " + System.getProperty("java.version"));
+                continue;
+            }
+            LibraryState state = new LibraryState();
+            state.books = 10_000;
+            state.loans = 50_000;
+            state.start(properties(mode));
+            try {
+                summary.add(mode + ": concorrencia maxima sustentada = " + run(mode, state));
+            } finally {
+                state.stop();
+            }
+        }
+        summary.forEach(System.out::println);
+    }
+
+    private static String[] properties(String mode) {
+        List<String> properties = new ArrayList<>(Arrays.asList(
+                "application.threads.virtual=" + "virtual".equals(mode),
+                "spring.datasource.url=jdbc:h2:mem:load-" + mode + ";DB_CLOSE_DELAY=-1",
+                "management.metrics.distribution.percentiles-histogram.library=false"));
+        if ("reactive".equals(mode)) {
+            properties.add("spring.profiles.active=reactive");
+            properties.add("spring.r2dbc.url=r2dbc:h2:mem:///load-" + mode + "?options=DB_CLOSE_DELAY=-1");
+        }
+        return properties.toArray(new String[0]);
+    }
+
+    private static int run(String mode, LibraryState state) throws Exception {
+        HttpClient client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(REQUEST_TIMEOUT)
+                .build();
+        String baseUrl = "http://localhost:" + state.port() + "/api";
+
+        System.out.printf("%-9s %8s %10s %8s %8s %7s%n", "modo", "clientes", "req/s", "p50 ms", "p99 ms", "erros");
+        int sustained = 0;
+        for (int level : LEVELS) {
+            Step step = step(client, baseUrl, state, level);
+            System.out.printf("%-9s %8d %10.0f %8d %8d %7d%n",
+                    mode, level, step.throughput(), step.percentile(0.5), step.percentile(0.99), step.errors);
+            if (step.errors == 0 && step.percentile(0.99) <= SLO_MS) {
+                sustained = level;
+            }
+        }
+        return sustained;
+    }
+
+    private static Step step(HttpClient client, String baseUrl, LibraryState state, int clients) throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(clients);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicInteger errors = new AtomicInteger();
+        List<Future<long[]>> results = new ArrayList<>(clients);
+        long deadline = System.nanoTime() + STEP.toNanos();
+        try {
+            for (int i = 0; i < clients; i++) {
+                results.add(pool.submit(() -> {
+                    long[] latencies = new long[1024];
+                    int count = 0;
+                    start.await();
+                    while (System.nanoTime() < deadline) {
+                        HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + randomPath(state)))
+                                .timeout(REQUEST_TIMEOUT)
+                                .GET()
+                                .build();
+                        long begin = System.nanoTime();
+                        try {
+                            HttpResponse<Void> response = client.send(request, HttpResponse.BodyHandlers.discarding());
+                            if (response.statusCode() >= 400) {
+                                errors.incrementAndGet();
+                            }
+                        } catch (Exception e) {
+                            errors.incrementAndGet();
+                        }
+                        if (count == latencies.length) {
+                            latencies = Arrays.copyOf(latencies, count * 2);
+                        }
+                        latencies[count++] = System.nanoTime() - begin;
+                    }
+                    return Arrays.copyOf(latencies, count);
+                }));
+            }
+            start.countDown();
+
+            List<long[]> all = new ArrayList<>(clients);
+            for (Future<long[]> result : results) {
+                all.add(result.get());
+            }
+            return new Step(all.stream().flatMapToLong(Arrays::stream).sorted().toArray(), errors.get());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private static String randomPath(LibraryState state) {
+        switch ((int) (Math.random() * 3)) {
+            case 0:
+                return "/books/" + state.randomBookId();
+            case 1:
+                return "/books/" + state.randomBookId() + "/loans?page=0&size=10";
+            default:
+                return "/loans?customer=" + state.randomCustomer() + "&page=0&size=10";
+        }
+    }
+
+    private static final class Step {
+
+        private final long[] sortedNanos;
+        private final int errors;
+
+        private Step(long[] sortedNanos, int errors) {
+            this.sortedNanos = sortedNanos;
+            this.errors = errors;
+        }
+
+        private double throughput() {
+            return sortedNanos.length / (double) STEP.getSeconds();
+        }
+
+        private long percentile(double percentile) {
+            if (sortedNanos.length == 0) {
+                return 0;
+            }
+            int index = (int) Math.ceil(percentile * sortedNanos.length) - 1;
+            return Duration.ofNanos(sortedNanos[Math.max(0, index)]).toMillis();
+        }
+    }
+}
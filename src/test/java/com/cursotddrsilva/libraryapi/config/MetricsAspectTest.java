@@ -0,0 +1,89 @@
+package com.cursotddrsilva.libraryapi.config;
+
+import com.cursotddrsilva.libraryapi.model.entity.Book;
+import com.cursotddrsilva.libraryapi.model.repository.BookRepository;
+import com.cursotddrsilva.libraryapi.service.ApproximateCounts;
+import com.cursotddrsilva.libraryapi.service.BookSearchIndex;
+import com.cursotddrsilva.libraryapi.service.BookService;
+import com.cursotddrsilva.libraryapi.service.impl.BookServiceImpl;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.aop.aspectj.annotation.AspectJProxyFactory;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.cache.support.NoOpCacheManager;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(SpringExtension.class)
+@ActiveProfiles("test")
+public class MetricsAspectTest {
+
+    @MockBean
+    BookRepository repository;
+
+    MeterRegistry meterRegistry;
+
+    BookService service;
+
+    BookRepository instrumentedRepository;
+
+    @BeforeEach
+    public void setUp(){
+        this.meterRegistry = new SimpleMeterRegistry();
+        MetricsAspect aspect = new MetricsAspect(meterRegistry);
+
+        AspectJProxyFactory repositoryFactory = new AspectJProxyFactory(repository);
+        repositoryFactory.addAspect(aspect);
+        this.instrumentedRepository = repositoryFactory.getProxy();
+
+        AspectJProxyFactory serviceFactory = new AspectJProxyFactory(
+                new BookServiceImpl(instrumentedRepository, new BookSearchIndex(false, null), new ApproximateCounts(60000, 600000, 100), new NoOpCacheManager()));
+        serviceFactory.addAspect(aspect);
+        this.service = serviceFactory.getProxy();
+    }
+
+    @Test
+    @DisplayName("Deve medir as chamadas de service e repositorio com a operacao na tag")
+    public void recordOperationTest(){
+        //cenario
+        when(repository.findById(1l)).thenReturn(Optional.of(Book.builder().id(1l).build()));
+
+        //execucao
+        service.getById(1l);
+        service.getById(1l);
+
+        //verificacao
+        assertThat(meterRegistry.get("library.service")
+                .tags("operation", "BookService.getById", "exception", "none")
+                .timer().count()).isEqualTo(2);
+        assertThat(meterRegistry.get("library.repository")
+                .tags("operation", "BookRepository.findById", "exception", "none")
+                .timer().count()).isEqualTo(2);
+    }
+
+    @Test
+    @DisplayName("Deve contar os erros por operacao e excecao")
+    public void recordErrorTest(){
+        //execucao
+        Throwable exception = catchThrowable(() -> service.delete(new Book()));
+
+        //verificacao
+        assertThat(exception).isInstanceOf(IllegalArgumentException.class);
+        assertThat(meterRegistry.get("library.service.errors")
+                .tags("operation", "BookService.delete", "exception", "IllegalArgumentException")
+                .counter().count()).isEqualTo(1);
+        assertThat(meterRegistry.get("library.service")
+                .tags("operation", "BookService.delete", "exception", "IllegalArgumentException")
+                .timer().count()).isEqualTo(1);
+    }
+}
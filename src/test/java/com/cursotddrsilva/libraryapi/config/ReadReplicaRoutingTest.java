@@ -0,0 +1,97 @@
+package com.cursotddrsilva.libraryapi.config;
+
+import com.cursotddrsilva.libraryapi.model.entity.Book;
+import com.cursotddrsilva.libraryapi.model.repository.Keyset;
+import com.cursotddrsilva.libraryapi.service.BookService;
+import com.cursotddrsilva.libraryapi.service.LoanService;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Sort;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+import javax.persistence.EntityManagerFactory;
+import javax.sql.DataSource;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Primario e replica em duas instancias H2 sem replicacao: o que cada leitura enxerga mostra para
+ * qual pool ela foi. O cache de segundo nivel fica ligado para conferir que a leitura na replica
+ * nao guarda a linha nele.
+ */
+@ExtendWith(SpringExtension.class)
+@ActiveProfiles("test")
+@SpringBootTest(properties = {
+        "application.datasource.replica.enabled=true",
+        "spring.datasource.url=jdbc:h2:mem:routing-primary;DB_CLOSE_DELAY=-1",
+        "application.datasource.replica.url=jdbc:h2:mem:routing-replica;DB_CLOSE_DELAY=-1",
+        "application.datasource.replica.migrate=true",
+        "spring.jpa.open-in-view=false",
+        "spring.cache.type=none"
+})
+public class ReadReplicaRoutingTest {
+
+    @Autowired
+    BookService bookService;
+
+    @Autowired
+    LoanService loanService;
+
+    @Autowired
+    EntityManagerFactory entityManagerFactory;
+
+    // conexoes diretas a cada banco, fora dos pools da aplicacao
+    DataSource primaryDataSource = new DriverManagerDataSource("jdbc:h2:mem:routing-primary", "sa", "");
+    DataSource replicaDataSource = new DriverManagerDataSource("jdbc:h2:mem:routing-replica", "sa", "");
+
+    @Test
+    @DisplayName("Deve gravar no primario, ler da replica nas transacoes somente leitura e buscar no primario o que vai para o cache")
+    public void routeReadOnlyTransactionsToReplicaTest(){
+        //cenario
+        Book saved = bookService.save(Book.builder().isbn("routing-primary").title("As aventuras").author("Fulano").build());
+        new JdbcTemplate(replicaDataSource).update(
+                "insert into book (id, isbn, title, author, version) values (?, ?, ?, ?, 0)",
+                999_999l, "routing-replica", "As aventuras", "Fulano");
+
+        //execucao
+        List<Book> listed = bookService.findAfter(Book.builder().isbn("routing-").build(),
+                Keyset.first(Keyset.ID, Sort.Direction.ASC), 10).getContent();
+        boolean cachedLookupSeesPrimary = bookService.getById(saved.getId()).isPresent();
+        boolean cachedLookupSeesReplica = bookService.getBookByIsbn("routing-replica").isPresent();
+
+        //verificacao
+        assertThat(listed).extracting(Book::getIsbn).containsExactly("routing-replica");
+        assertThat(entityManagerFactory.getCache().contains(Book.class, 999_999l)).isFalse();
+        assertThat(cachedLookupSeesPrimary).isTrue();
+        assertThat(cachedLookupSeesReplica).isFalse();
+        assertThat(countByIsbn(primaryDataSource, "routing-primary")).isEqualTo(1);
+        assertThat(countByIsbn(primaryDataSource, "routing-replica")).isZero();
+    }
+
+    @Test
+    @DisplayName("Deve conferir no primario o emprestimo de um PATCH sem efeito")
+    public void getLoanFromPrimaryTest(){
+        //cenario
+        Book book = bookService.save(Book.builder().isbn("routing-loan").title("As aventuras").author("Fulano").build());
+        new JdbcTemplate(primaryDataSource).update(
+                "insert into loan (id, customer, id_book, loan_date, returned, version) values (?, ?, ?, current_date, true, 0)",
+                999_999l, "Fulano", book.getId());
+
+        //execucao
+        boolean found = loanService.getById(999_999l).isPresent();
+
+        //verificacao
+        assertThat(found).isTrue();
+    }
+
+    private static Integer countByIsbn(DataSource dataSource, String isbn){
+        return new JdbcTemplate(dataSource).queryForObject("select count(*) from book where isbn = ?", Integer.class, isbn);
+    }
+}
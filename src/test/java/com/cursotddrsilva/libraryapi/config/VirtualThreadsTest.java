@@ -0,0 +1,54 @@
+package com.cursotddrsilva.libraryapi.config;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.ThreadFactory;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
+import static org.junit.jupiter.api.Assumptions.assumeFalse;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+public class VirtualThreadsTest {
+
+    @Test
+    @DisplayName("Deve criar virtual threads nomeadas quando a JVM suportar")
+    public void virtualFactoryTest() throws Exception {
+        assumeTrue(VirtualThreads.isSupported());
+
+        //execucao
+        Thread thread = VirtualThreads.factory("mail-dispatcher-").newThread(() -> { });
+
+        //verificacao
+        assertThat(thread.getName()).isEqualTo("mail-dispatcher-1");
+        assertThat((Boolean) Thread.class.getMethod("isVirtual").invoke(thread)).isTrue();
+    }
+
+    @Test
+    @DisplayName("Deve falhar ao ligar virtual threads em uma JVM sem suporte")
+    public void unsupportedTest(){
+        assumeFalse(VirtualThreads.isSupported());
+
+        //execucao
+        Throwable exception = catchThrowable(() -> VirtualThreads.factory("mail-dispatcher-"));
+
+        //verificacao
+        assertThat(exception).isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("application.threads.virtual=true");
+    }
+
+    @Test
+    @DisplayName("Deve criar threads daemon de plataforma quando o modo virtual estiver desligado")
+    public void platformFactoryTest(){
+        //execucao
+        ThreadFactory factory = VirtualThreads.factory(false, "outbox-worker-");
+        Thread first = factory.newThread(() -> { });
+        Thread second = factory.newThread(() -> { });
+
+        //verificacao
+        assertThat(first.getName()).isEqualTo("outbox-worker-1");
+        assertThat(second.getName()).isEqualTo("outbox-worker-2");
+        assertThat(first.isDaemon()).isTrue();
+    }
+}
@@ -0,0 +1,89 @@
+package com.cursotddrsilva.libraryapi.mapper;
+
+import com.cursotddrsilva.libraryapi.api.dto.BookDTO;
+import com.cursotddrsilva.libraryapi.api.dto.LoanDto;
+import com.cursotddrsilva.libraryapi.api.mapper.BookMapper;
+import com.cursotddrsilva.libraryapi.api.mapper.BookMapperImpl;
+import com.cursotddrsilva.libraryapi.api.mapper.LoanMapper;
+import com.cursotddrsilva.libraryapi.api.mapper.LoanMapperImpl;
+import com.cursotddrsilva.libraryapi.model.entity.Book;
+import com.cursotddrsilva.libraryapi.model.entity.Loan;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+import java.time.LocalDate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@ExtendWith(SpringExtension.class)
+@ActiveProfiles("test")
+@ContextConfiguration(classes = {BookMapperImpl.class, LoanMapperImpl.class})
+public class LoanMapperTest {
+
+    @Autowired
+    private BookMapper bookMapper;
+
+    @Autowired
+    private LoanMapper loanMapper;
+
+    @Test
+    @DisplayName("Deve converter um livro para dto e de volta")
+    public void bookRoundTripTest(){
+        //cenario
+        Book book = Book.builder().id(1l).title("As aventuras").author("Fulano").isbn("123").build();
+
+        //execucao
+        BookDTO dto = this.bookMapper.toDto(book);
+        Book entity = this.bookMapper.toEntity(dto);
+
+        //verificacao
+        assertThat(dto.getId()).isEqualTo(1l);
+        assertThat(dto.getTitle()).isEqualTo("As aventuras");
+        assertThat(dto.getAuthor()).isEqualTo("Fulano");
+        assertThat(dto.getIsbn()).isEqualTo("123");
+        assertThat(entity).isEqualTo(book);
+    }
+
+    @Test
+    @DisplayName("Deve converter um emprestimo para dto com o livro aninhado")
+    public void loanToDtoTest(){
+        //cenario
+        Book book = Book.builder().id(1l).title("As aventuras").author("Fulano").isbn("123").build();
+        Loan loan = Loan.builder()
+                .id(10l)
+                .customer("Fulano")
+                .customerEmail("fulano@email.com")
+                .book(book)
+                .loanDate(LocalDate.now())
+                .build();
+
+        //execucao
+        LoanDto dto = this.loanMapper.toDto(loan);
+
+        //verificacao
+        assertThat(dto.getId()).isEqualTo(10l);
+        assertThat(dto.getCustomer()).isEqualTo("Fulano");
+        assertThat(dto.getCustomerEmail()).isEqualTo("fulano@email.com");
+        assertThat(dto.getIsbn()).isEqualTo("123");
+        assertThat(dto.getBookDTO()).isEqualTo(this.bookMapper.toDto(book));
+    }
+
+    @Test
+    @DisplayName("Deve converter um emprestimo sem livro")
+    public void loanWithoutBookToDtoTest(){
+        //cenario
+        Loan loan = Loan.builder().id(10l).customer("Fulano").build();
+
+        //execucao
+        LoanDto dto = this.loanMapper.toDto(loan);
+
+        //verificacao
+        assertThat(dto.getIsbn()).isNull();
+        assertThat(dto.getBookDTO()).isNull();
+    }
+}
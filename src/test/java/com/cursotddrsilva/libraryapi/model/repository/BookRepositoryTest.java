@@ -2,16 +2,27 @@ package com.cursotddrsilva.libraryapi.model.repository;
 
 import com.cursotddrsilva.libraryapi.model.entity.Book;
 import org.assertj.core.api.Assertions;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
 import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.data.domain.Example;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
 
+import javax.persistence.EntityManagerFactory;
+import java.util.List;
 import java.util.Optional;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @ExtendWith(SpringExtension.class)
 @ActiveProfiles("test")
@@ -24,6 +35,9 @@ public class BookRepositoryTest {
     @Autowired
     BookRepository repository;
 
+    @Autowired
+    EntityManagerFactory entityManagerFactory;
+
     @Test
     @DisplayName("Deve retornar verdadeiro quando existir um livro na base com o isbn informado")
     public void returnTrueWhenIsbnExistis(){
@@ -101,4 +115,110 @@ public class BookRepositoryTest {
 
     }
 
+    @Test
+    @DisplayName("Deve atualizar um livro apenas quando id e versao conferem")
+    public void updateDetailsTest(){
+        //cenario
+        Book book = this.createNewBook("123");
+        this.entityManager.persist(book);
+        this.entityManager.flush();
+        Long version = book.getVersion();
+
+        //execucao
+        int staleVersion = this.repository.updateDetails(book.getId(), "Novo titulo", "Novo autor", version + 1);
+        int updated = this.repository.updateDetails(book.getId(), "Novo titulo", "Novo autor", version);
+
+        //verificacao
+        Assertions.assertThat(staleVersion).isZero();
+        Assertions.assertThat(updated).isEqualTo(1);
+        Book found = this.entityManager.find(Book.class, book.getId());
+        Assertions.assertThat(found.getTitle()).isEqualTo("Novo titulo");
+        Assertions.assertThat(found.getIsbn()).isEqualTo("123");
+        Assertions.assertThat(found.getVersion()).isEqualTo(version + 1);
+    }
+
+    @Test
+    @DisplayName("Deve deletar um livro pelo id com um unico delete")
+    public void removeByIdTest(){
+        Book book = this.createNewBook("123");
+        this.entityManager.persist(book);
+
+        Assertions.assertThat(this.repository.removeById(book.getId())).isEqualTo(1);
+        Assertions.assertThat(this.repository.removeById(book.getId())).isZero();
+        Assertions.assertThat(this.entityManager.find(Book.class, book.getId())).isNull();
+    }
+
+    @Test
+    @DisplayName("Deve percorrer todos os livros em ordem de id")
+    public void streamAllTest(){
+        //cenario
+        Book first = this.createNewBook("123");
+        Book second = this.createNewBook("456");
+        this.entityManager.persist(first);
+        this.entityManager.persist(second);
+        this.entityManager.flush();
+        this.entityManager.clear();
+
+        //execucao
+        List<Long> ids;
+        try (Stream<Book> books = this.repository.streamAll()) {
+            ids = books.map(Book::getId).collect(Collectors.toList());
+        }
+
+        //verificacao
+        Assertions.assertThat(ids).containsExactly(first.getId(), second.getId());
+    }
+
+    @Test
+    @DisplayName("Deve paginar livros por keyset a partir do ultimo titulo e id")
+    public void findAfterTest(){
+        //cenario
+        Book first = Book.builder().title("A").author("Fulano").isbn("1").build();
+        Book second = Book.builder().title("B").author("Fulano").isbn("2").build();
+        Book third = Book.builder().title("B").author("Fulano").isbn("3").build();
+        this.entityManager.persist(third);
+        this.entityManager.persist(first);
+        this.entityManager.persist(second);
+        Example<Book> all = Example.of(new Book());
+        Keyset keyset = Keyset.first("title", Sort.Direction.ASC);
+
+        //execucao
+        Slice<Book> firstPage = this.repository.findAfter(all, keyset, 2);
+        Book last = firstPage.getContent().get(1);
+        Slice<Book> secondPage = this.repository.findAfter(all, keyset.after(last.getTitle(), last.getId()), 2);
+
+        //verificacao
+        Assertions.assertThat(firstPage.getContent()).extracting(Book::getIsbn)
+                .containsExactly("1", "3");
+        Assertions.assertThat(firstPage.hasNext()).isTrue();
+        Assertions.assertThat(secondPage.getContent()).hasSize(1);
+        Assertions.assertThat(secondPage.hasNext()).isFalse();
+    }
+
+    // o cache so atende sessoes abertas depois da escrita, entao cada passo roda na sua propria transacao
+    @Test
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    @DisplayName("Deve obter o livro por id e por isbn do cache de segundo nivel sem ir ao banco")
+    public void secondLevelCacheTest(){
+        //cenario
+        Book book = repository.save(createNewBook("second-level"));
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        try {
+            repository.findByIsbn("second-level");
+            statistics.clear();
+
+            //execucao
+            Optional<Book> byId = repository.findById(book.getId());
+            Optional<Book> byIsbn = repository.findByIsbn("second-level");
+
+            //verificacao
+            Assertions.assertThat(byId).isPresent();
+            Assertions.assertThat(byIsbn.map(Book::getId)).contains(book.getId());
+            Assertions.assertThat(statistics.getPrepareStatementCount()).isZero();
+            Assertions.assertThat(statistics.getSecondLevelCacheHitCount()).isPositive();
+            Assertions.assertThat(statistics.getQueryCacheHitCount()).isEqualTo(1);
+        } finally {
+            repository.delete(book);
+        }
+    }
 }
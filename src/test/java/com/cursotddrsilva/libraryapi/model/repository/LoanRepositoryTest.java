@@ -2,6 +2,8 @@ package com.cursotddrsilva.libraryapi.model.repository;
 
 import com.cursotddrsilva.libraryapi.model.entity.Book;
 import com.cursotddrsilva.libraryapi.model.entity.Loan;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -10,10 +12,13 @@ import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
 import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
 
 import java.time.LocalDate;
+import java.util.Arrays;
 import java.util.List;
 
 import static com.cursotddrsilva.libraryapi.model.repository.BookRepositoryTest.createNewBook;
@@ -21,7 +26,7 @@ import static org.assertj.core.api.Assertions.assertThat;
 
 @ExtendWith(SpringExtension.class)
 @ActiveProfiles("test")
-@DataJpaTest
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
 public class LoanRepositoryTest {
 
     @Autowired
@@ -63,12 +68,12 @@ public class LoanRepositoryTest {
 
     @Test
     @DisplayName("Deve obter emprestimos cuja data emprestimo for menor ou igual a tres dias atras e nao retornados")
-    public void findByLoanDateLessThanAndNotReturned(){
+    public void findNotReturnedUntilAfter(){
         //cenario
         Loan loan = this.createAndPersistLoan(LocalDate.now().minusDays(5));
 
         //execucao
-        List<Loan> result = this.repository.findByLoanDateLessThanAndNotReturned(LocalDate.now().minusDays(4));
+        List<Loan> result = this.repository.findNotReturnedUntilAfter(LocalDate.now().minusDays(4), lateLoansKeyset(), 10).getContent();
 
         //verificacao
         assertThat(result).hasSize(1).contains(loan);
@@ -76,17 +81,212 @@ public class LoanRepositoryTest {
 
     @Test
     @DisplayName("Deve retornar vazio quando nao ouver emprestimos atrasados.")
-    public void notFindByLoanDateLessThanAndNotReturned(){
+    public void notFindNotReturnedUntilAfter(){
         //cenario
         Loan loan = this.createAndPersistLoan(LocalDate.now());
 
         //execucao
-        List<Loan> result = this.repository.findByLoanDateLessThanAndNotReturned(LocalDate.now().minusDays(4));
+        List<Loan> result = this.repository.findNotReturnedUntilAfter(LocalDate.now().minusDays(4), lateLoansKeyset(), 10).getContent();
 
         //verificacao
         assertThat(result).isEmpty();
     }
 
+    @Test
+    @DisplayName("Deve obter emprestimos atrasados em blocos ordenados por data e id")
+    public void findNotReturnedUntilAfterChunksTest(){
+        //cenario
+        Loan first = this.createAndPersistLoan(LocalDate.now().minusDays(5));
+        Book book = createNewBook("321");
+        this.entityManager.persist(book);
+        Loan second = Loan.builder().book(book).customer("Fulano").loanDate(LocalDate.now().minusDays(6)).build();
+        this.entityManager.persist(second);
+        Book other = createNewBook("456");
+        this.entityManager.persist(other);
+        Loan third = Loan.builder().book(other).customer("Fulano").loanDate(LocalDate.now().minusDays(5)).build();
+        this.entityManager.persist(third);
+        LocalDate threeDaysAgo = LocalDate.now().minusDays(4);
+
+        //execucao
+        Slice<Loan> firstChunk = this.repository.findNotReturnedUntilAfter(threeDaysAgo, lateLoansKeyset(), 1);
+        Slice<Loan> secondChunk = this.repository.findNotReturnedUntilAfter(threeDaysAgo,
+                lateLoansKeyset().after(second.getLoanDate(), second.getId()), 1);
+        Slice<Loan> thirdChunk = this.repository.findNotReturnedUntilAfter(threeDaysAgo,
+                lateLoansKeyset().after(first.getLoanDate(), first.getId()), 1);
+        Slice<Loan> lastChunk = this.repository.findNotReturnedUntilAfter(threeDaysAgo,
+                lateLoansKeyset().after(third.getLoanDate(), third.getId()), 1);
+
+        //verificacao: o mais antigo primeiro; na mesma data, pelo id
+        assertThat(firstChunk.getContent()).containsExactly(second);
+        assertThat(secondChunk.getContent()).containsExactly(first);
+        assertThat(thirdChunk.getContent()).containsExactly(third);
+        assertThat(lastChunk.getContent()).isEmpty();
+        assertThat(thirdChunk.hasNext()).isFalse();
+    }
+
+    private static Keyset lateLoansKeyset(){
+        return Keyset.first("loanDate", Sort.Direction.ASC);
+    }
+
+    @Test
+    @DisplayName("Deve buscar emprestimos e livros por isbn ou customer com um numero fixo de consultas por pagina")
+    public void findByBookIsbnOrCustomerStatementCountTest(){
+        //cenario
+        for (int i = 0; i < 30; i++) {
+            Book book = createNewBook("isbn-" + i);
+            this.entityManager.persist(book);
+            this.entityManager.persist(Loan.builder().book(book).customer("Fulano").loanDate(LocalDate.now()).build());
+        }
+        this.entityManager.flush();
+
+        for (int size : new int[]{ 5, 10, 20 }) {
+            Statistics statistics = clearStatistics();
+
+            //execucao
+            Page<Loan> result = this.repository.findByBookIsbnOrCustomer(null, "Fulano", PageRequest.of(0, size));
+            result.forEach(loan -> loan.getBook().getTitle());
+
+            //verificacao: select da pagina (com o livro) + count
+            assertThat(result.getContent()).hasSize(size);
+            assertThat(result.getTotalElements()).isEqualTo(30);
+            assertThat(statistics.getPrepareStatementCount()).isEqualTo(2);
+        }
+    }
+
+    @Test
+    @DisplayName("Deve buscar emprestimos do livro com um numero fixo de consultas por pagina")
+    public void findByBookStatementCountTest(){
+        //cenario
+        Book book = createNewBook("123");
+        this.entityManager.persist(book);
+        for (int i = 0; i < 30; i++) {
+            this.entityManager.persist(Loan.builder().book(book).customer("Fulano").loanDate(LocalDate.now()).returned(true).build());
+        }
+        this.entityManager.flush();
+
+        for (int size : new int[]{ 5, 10, 20 }) {
+            Statistics statistics = clearStatistics();
+
+            //execucao
+            Page<Loan> result = this.repository.findByBook(book, PageRequest.of(0, size));
+            result.forEach(loan -> loan.getBook().getTitle());
+
+            //verificacao: select da pagina + count
+            assertThat(result.getContent()).hasSize(size);
+            assertThat(statistics.getPrepareStatementCount()).isEqualTo(2);
+        }
+    }
+
+    @Test
+    @DisplayName("Deve buscar emprestimos e livros em Slice sem consulta de count")
+    public void findSliceByBookIsbnOrCustomerStatementCountTest(){
+        //cenario
+        for (int i = 0; i < 30; i++) {
+            Book book = createNewBook("isbn-" + i);
+            this.entityManager.persist(book);
+            this.entityManager.persist(Loan.builder().book(book).customer("Fulano").loanDate(LocalDate.now()).build());
+        }
+        this.entityManager.flush();
+
+        for (int page = 0; page < 3; page++) {
+            Statistics statistics = clearStatistics();
+
+            //execucao
+            Slice<Loan> result = this.repository.findSliceByBookIsbnOrCustomer(null, "Fulano", PageRequest.of(page, 10));
+            result.forEach(loan -> loan.getBook().getTitle());
+
+            //verificacao
+            assertThat(result.getContent()).hasSize(10);
+            assertThat(result.hasNext()).isEqualTo(page < 2);
+            //so o select da pagina, com o livro
+            assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+        }
+        assertThat(this.repository.countByBookIsbnOrCustomer(null, "Fulano")).isEqualTo(30);
+    }
+
+    @Test
+    @DisplayName("Deve buscar emprestimos e livros por keyset com um numero fixo de consultas por pagina")
+    public void findByBookIsbnOrCustomerAfterStatementCountTest(){
+        //cenario
+        for (int i = 0; i < 30; i++) {
+            Book book = createNewBook("isbn-" + i);
+            this.entityManager.persist(book);
+            this.entityManager.persist(Loan.builder().book(book).customer("Fulano").loanDate(LocalDate.now()).build());
+        }
+        this.entityManager.flush();
+
+        for (int size : new int[]{ 5, 10, 20 }) {
+            Statistics statistics = clearStatistics();
+
+            //execucao
+            Slice<Loan> result = this.repository.findByBookIsbnOrCustomerAfter(null, "Fulano", Keyset.first(Keyset.ID, Sort.Direction.ASC), size);
+            result.forEach(loan -> loan.getBook().getTitle());
+
+            //verificacao: so o select da pagina, com o livro
+            assertThat(result.getContent()).hasSize(size);
+            assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+        }
+    }
+
+    @Test
+    @DisplayName("Deve devolver emprestimos em massa liberando o livro e incrementando a versao")
+    public void markReturnedTest(){
+        //cenario
+        Loan loan = this.createAndPersistLoan(LocalDate.now());
+        this.entityManager.flush();
+        Long version = loan.getVersion();
+        Statistics statistics = clearStatistics();
+
+        //execucao
+        int updated = this.repository.markReturned(Arrays.asList(loan.getId()));
+
+        //verificacao
+        assertThat(updated).isEqualTo(1);
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+        Loan found = this.entityManager.find(Loan.class, loan.getId());
+        assertThat(found.getReturned()).isTrue();
+        assertThat(found.getActiveBookId()).isNull();
+        assertThat(found.getVersion()).isEqualTo(version + 1);
+        assertThat(this.repository.existsByBookAndNotReturned(found.getBook())).isFalse();
+    }
+
+    @Test
+    @DisplayName("Deve devolver e reabrir um empréstimo com updates condicionais")
+    public void returnIfActiveTest(){
+        //cenario
+        Loan loan = this.createAndPersistLoan(LocalDate.now());
+        this.entityManager.flush();
+        Long version = loan.getVersion();
+        Statistics statistics = clearStatistics();
+
+        //execucao
+        int stale = this.repository.returnIfActive(loan.getId(), version + 1);
+        int returned = this.repository.returnIfActive(loan.getId(), version);
+        int alreadyReturned = this.repository.returnIfActive(loan.getId(), version + 1);
+        int reopened = this.repository.reopenIfReturned(loan.getId(), version + 1);
+
+        //verificacao
+        assertThat(stale).isZero();
+        assertThat(returned).isEqualTo(1);
+        assertThat(alreadyReturned).isZero();
+        assertThat(reopened).isEqualTo(1);
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(4);
+        Loan found = this.entityManager.find(Loan.class, loan.getId());
+        assertThat(found.getReturned()).isFalse();
+        assertThat(found.getActiveBookId()).isEqualTo(found.getBook().getId());
+        assertThat(found.getVersion()).isEqualTo(version + 2);
+    }
+
+    private Statistics clearStatistics(){
+        this.entityManager.clear();
+        Statistics statistics = this.entityManager.getEntityManager()
+                .getEntityManagerFactory()
+                .unwrap(SessionFactory.class)
+                .getStatistics();
+        statistics.clear();
+        return statistics;
+    }
+
     public Loan createAndPersistLoan(LocalDate loanDate){
         Book book = createNewBook("123");
         this.entityManager.persist(book);
@@ -0,0 +1,172 @@
+package com.cursotddrsilva.libraryapi.model.repository;
+
+import com.cursotddrsilva.libraryapi.model.entity.NotificationOutbox;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@ExtendWith(SpringExtension.class)
+@ActiveProfiles("test")
+@DataJpaTest
+public class NotificationOutboxRepositoryTest {
+
+    @Autowired
+    private NotificationOutboxRepository repository;
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Test
+    @DisplayName("Deve reservar lotes disjuntos de notificacoes pendentes")
+    public void claimTest(){
+        //cenario
+        for (int i = 0; i < 5; i++) {
+            entityManager.persist(createNotification("n" + i, NotificationOutbox.Status.PENDING));
+        }
+        entityManager.persist(createNotification("enviada", NotificationOutbox.Status.SENT));
+        entityManager.flush();
+
+        //execucao
+        int first = claim("w1", 3);
+        int second = claim("w2", 10);
+        int third = claim("w3", 10);
+        entityManager.clear();
+
+        //verificacao
+        assertThat(first).isEqualTo(3);
+        assertThat(second).isEqualTo(2);
+        assertThat(third).isZero();
+        List<NotificationOutbox> claimedByFirst = repository.findByClaimedByAndStatus("w1", NotificationOutbox.Status.CLAIMED);
+        List<NotificationOutbox> claimedBySecond = repository.findByClaimedByAndStatus("w2", NotificationOutbox.Status.CLAIMED);
+        assertThat(claimedByFirst).extracting(NotificationOutbox::getNotificationKey).containsExactlyInAnyOrder("n0", "n1", "n2");
+        assertThat(claimedBySecond).extracting(NotificationOutbox::getNotificationKey).containsExactlyInAnyOrder("n3", "n4");
+    }
+
+    @Test
+    @DisplayName("Deve devolver para a fila as reservas expiradas")
+    public void releaseExpiredTest(){
+        //cenario
+        NotificationOutbox expired = createNotification("expirada", NotificationOutbox.Status.CLAIMED);
+        expired.setClaimedBy("w1");
+        expired.setClaimedAt(LocalDateTime.now().minusHours(1));
+        NotificationOutbox active = createNotification("ativa", NotificationOutbox.Status.CLAIMED);
+        active.setClaimedBy("w2");
+        active.setClaimedAt(LocalDateTime.now());
+        entityManager.persist(expired);
+        entityManager.persist(active);
+        entityManager.flush();
+
+        //execucao
+        int released = repository.releaseExpired(LocalDateTime.now().minusMinutes(5),
+                NotificationOutbox.Status.CLAIMED, NotificationOutbox.Status.PENDING);
+        entityManager.clear();
+
+        //verificacao
+        assertThat(released).isEqualTo(1);
+        assertThat(repository.findById(expired.getId()).get().getStatus()).isEqualTo(NotificationOutbox.Status.PENDING);
+        assertThat(repository.findById(active.getId()).get().getStatus()).isEqualTo(NotificationOutbox.Status.CLAIMED);
+    }
+
+    @Test
+    @DisplayName("Deve marcar como falha apenas as notificacoes que atingiram o maximo de tentativas")
+    public void markRetryAndFailedTest(){
+        //cenario
+        NotificationOutbox first = createNotification("n1", NotificationOutbox.Status.CLAIMED);
+        NotificationOutbox last = createNotification("n2", NotificationOutbox.Status.CLAIMED);
+        first.setClaimedBy("w1");
+        last.setClaimedBy("w1");
+        last.setAttempts(2);
+        entityManager.persist(first);
+        entityManager.persist(last);
+        entityManager.flush();
+        List<Long> ids = List.of(first.getId(), last.getId());
+
+        //execucao
+        repository.markFailed(ids, "w1", 3, NotificationOutbox.Status.FAILED);
+        repository.markRetry(ids, "w1", NotificationOutbox.Status.PENDING);
+        entityManager.clear();
+
+        //verificacao
+        NotificationOutbox retried = repository.findById(first.getId()).get();
+        NotificationOutbox failed = repository.findById(last.getId()).get();
+        assertThat(retried.getStatus()).isEqualTo(NotificationOutbox.Status.PENDING);
+        assertThat(retried.getAttempts()).isEqualTo(1);
+        assertThat(failed.getStatus()).isEqualTo(NotificationOutbox.Status.FAILED);
+        assertThat(failed.getAttempts()).isEqualTo(3);
+    }
+
+    @Test
+    @DisplayName("Nao deve marcar o resultado de um worker cuja reserva expirou e passou para outro")
+    public void markOtherWorkerClaimTest(){
+        //cenario
+        NotificationOutbox notification = createNotification("n1", NotificationOutbox.Status.CLAIMED);
+        notification.setClaimedBy("w2");
+        entityManager.persist(notification);
+        entityManager.flush();
+        List<Long> ids = List.of(notification.getId());
+
+        //execucao
+        int sent = repository.markSent(ids, "w1", LocalDateTime.now(), NotificationOutbox.Status.SENT);
+        int failed = repository.markFailed(ids, "w1", 1, NotificationOutbox.Status.FAILED);
+        int retried = repository.markRetry(ids, "w1", NotificationOutbox.Status.PENDING);
+        entityManager.clear();
+
+        //verificacao
+        assertThat(sent).isZero();
+        assertThat(failed).isZero();
+        assertThat(retried).isZero();
+        NotificationOutbox found = repository.findById(notification.getId()).get();
+        assertThat(found.getStatus()).isEqualTo(NotificationOutbox.Status.CLAIMED);
+        assertThat(found.getClaimedBy()).isEqualTo("w2");
+        assertThat(found.getAttempts()).isZero();
+    }
+
+    @Test
+    @DisplayName("Nao deve reservar uma notificacao que ja foi reservada por outro worker")
+    public void claimAlreadyClaimedTest(){
+        //cenario
+        NotificationOutbox notification = entityManager.persist(createNotification("n1", NotificationOutbox.Status.PENDING));
+        entityManager.flush();
+        List<Long> ids = List.of(notification.getId());
+
+        //execucao: o segundo worker travou a mesma linha antes do primeiro reservar
+        int first = repository.claim(ids, "w1", LocalDateTime.now(), NotificationOutbox.Status.PENDING, NotificationOutbox.Status.CLAIMED);
+        int second = repository.claim(ids, "w2", LocalDateTime.now(), NotificationOutbox.Status.PENDING, NotificationOutbox.Status.CLAIMED);
+
+        //verificacao
+        assertThat(first).isEqualTo(1);
+        assertThat(second).isZero();
+        assertThat(repository.findById(notification.getId()).get().getClaimedBy()).isEqualTo("w1");
+    }
+
+    private int claim(String worker, int size){
+        List<Long> ids = repository.findForClaim(NotificationOutbox.Status.PENDING, PageRequest.of(0, size))
+                .stream()
+                .map(NotificationOutbox::getId)
+                .collect(Collectors.toList());
+        return ids.isEmpty() ? 0 : repository.claim(ids, worker, LocalDateTime.now(),
+                NotificationOutbox.Status.PENDING, NotificationOutbox.Status.CLAIMED);
+    }
+
+    public static NotificationOutbox createNotification(String key, NotificationOutbox.Status status){
+        return NotificationOutbox.builder()
+                .notificationKey(key)
+                .recipient(key + "@email.com")
+                .message("atrasado")
+                .status(status)
+                .createdAt(LocalDateTime.now())
+                .build();
+    }
+}
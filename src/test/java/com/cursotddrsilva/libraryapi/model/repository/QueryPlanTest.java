@@ -0,0 +1,205 @@
+package com.cursotddrsilva.libraryapi.model.repository;
+
+import com.cursotddrsilva.libraryapi.model.entity.Book;
+import com.cursotddrsilva.libraryapi.model.entity.Loan;
+import com.cursotddrsilva.libraryapi.model.entity.NotificationOutbox;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Chama os metodos dos repositorios, captura o SQL gerado pelo Hibernate e roda EXPLAIN no H2
+ * para cada select. Falha quando alguma consulta deixa de usar o indice criado pelas migrations
+ * (db/migration) ou varre uma tabela.
+ */
+@ExtendWith(SpringExtension.class)
+@ActiveProfiles("test")
+@DataJpaTest(properties = {
+        "spring.jpa.properties.hibernate.session_factory.statement_inspector=com.cursotddrsilva.libraryapi.model.repository.QueryPlanTest$CapturedSql",
+        "spring.jpa.properties.hibernate.cache.use_second_level_cache=false",
+        "spring.jpa.properties.hibernate.cache.use_query_cache=false"
+})
+public class QueryPlanTest {
+
+    // trecho do plano do H2 para uma busca indexada por livro: /* PUBLIC.<indice>: ID_BOOK = ?1 */
+    private static final String BOOK_INDEX_LOOKUP = ": ID_BOOK = ?1";
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    @Autowired
+    private LoanRepository loanRepository;
+
+    @Autowired
+    private NotificationOutboxRepository outboxRepository;
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private Book book;
+
+    @BeforeEach
+    public void setUp(){
+        book = BookRepositoryTest.createNewBook("123");
+        entityManager.persist(book);
+        entityManager.persist(Loan.builder().book(book).customer("Fulano").loanDate(LocalDate.now()).build());
+        entityManager.flush();
+        entityManager.clear();
+    }
+
+    @Test
+    @DisplayName("findByIsbn e existsByIsbn devem usar o indice unico de isbn")
+    public void findByIsbnPlanTest(){
+        assertUsesIndexes(() -> {
+            bookRepository.findByIsbn("123");
+            bookRepository.existsByIsbn("123");
+        }, "ux_book_isbn");
+    }
+
+    @Test
+    @DisplayName("findExistingIsbns deve usar o indice unico de isbn")
+    public void findExistingIsbnsPlanTest(){
+        assertUsesIndexes(() -> bookRepository.findExistingIsbns(Arrays.asList("123", "456")), "ux_book_isbn");
+    }
+
+    // o H2 cria um indice proprio para fk_loan_book, com a mesma coluna inicial de ix_loan_book_returned;
+    // com o OR em returned os dois atendem a busca igualmente e o otimizador pode escolher qualquer um
+    @Test
+    @DisplayName("existsByBookAndNotReturned deve buscar pelo indice do livro")
+    public void existsByBookAndNotReturnedPlanTest(){
+        assertUsesIndexes(() -> loanRepository.existsByBookAndNotReturned(book), BOOK_INDEX_LOOKUP);
+    }
+
+    @Test
+    @DisplayName("findByBook deve buscar pelo indice do livro")
+    public void findByBookPlanTest(){
+        assertUsesIndexes(() -> loanRepository.findByBook(book, PageRequest.of(0, 10)), BOOK_INDEX_LOOKUP);
+    }
+
+    @Test
+    @DisplayName("findNotReturnedUntilAfter deve usar o indice de data e devolucao na primeira e nas proximas paginas")
+    public void findNotReturnedUntilAfterPlanTest(){
+        Keyset first = Keyset.first("loanDate", Sort.Direction.ASC);
+        assertUsesIndexes(() -> {
+            loanRepository.findNotReturnedUntilAfter(LocalDate.now().minusDays(4), first, 100);
+            loanRepository.findNotReturnedUntilAfter(LocalDate.now().minusDays(4),
+                    first.after(LocalDate.now().minusDays(10), 1L), 100);
+        }, "ix_loan_date_returned");
+    }
+
+    @Test
+    @DisplayName("findByBookIsbnOrCustomer deve usar os indices de cliente e de isbn")
+    public void findByBookIsbnOrCustomerPlanTest(){
+        assertUsesIndexes(() -> loanRepository.findByBookIsbnOrCustomer("123", "Fulano", PageRequest.of(0, 10)),
+                "ix_loan_customer", "ux_book_isbn");
+    }
+
+    @Test
+    @DisplayName("claim do outbox deve usar o indice de status")
+    public void claimPlanTest(){
+        assertUsesIndexes(() -> outboxRepository.findForClaim(NotificationOutbox.Status.PENDING, PageRequest.of(0, 100)),
+                "ix_outbox_status_id");
+    }
+
+    private void assertUsesIndexes(Runnable query, String... indexes){
+        CapturedSql.clear();
+        query.run();
+        List<String> selects = CapturedSql.statements().stream()
+                .filter(sql -> sql.trim().toLowerCase().startsWith("select"))
+                .collect(Collectors.toList());
+        assertThat(selects).as("nenhum select capturado").isNotEmpty();
+
+        List<String> plans = new ArrayList<>();
+        for (String sql : selects) {
+            String plan = explain(sql);
+            assertThat(plan).as("plano de: %s", sql).doesNotContainIgnoringCase("tableScan");
+            plans.add(plan);
+        }
+        for (String index : indexes) {
+            assertThat(String.join("\n", plans)).as("planos de: %s", selects).containsIgnoringCase(index);
+        }
+    }
+
+    // os parametros recebem um valor do tipo que o H2 inferiu para eles; o plano nao depende do valor
+    private String explain(String sql){
+        return jdbcTemplate.execute("explain " + sql, (PreparedStatement statement) -> {
+            int count = statement.getParameterMetaData().getParameterCount();
+            for (int i = 1; i <= count; i++) {
+                switch (statement.getParameterMetaData().getParameterType(i)) {
+                    case Types.VARCHAR:
+                        statement.setString(i, "1");
+                        break;
+                    case Types.DATE:
+                        statement.setDate(i, Date.valueOf("2021-01-01"));
+                        break;
+                    case Types.TIMESTAMP:
+                        statement.setTimestamp(i, Timestamp.valueOf("2021-01-01 00:00:00"));
+                        break;
+                    case Types.BOOLEAN:
+                        statement.setBoolean(i, false);
+                        break;
+                    default:
+                        statement.setLong(i, 1L);
+                }
+            }
+            try (ResultSet plan = statement.executeQuery()) {
+                plan.next();
+                return plan.getString(1);
+            }
+        });
+    }
+
+    /**
+     * Guarda o SQL preparado pelo Hibernate. Instanciado pelo Hibernate, por isso o estado e estatico.
+     */
+    public static class CapturedSql implements StatementInspector {
+
+        private static final List<String> STATEMENTS = new ArrayList<>();
+
+        @Override
+        public String inspect(String sql) {
+            synchronized (STATEMENTS) {
+                STATEMENTS.add(sql);
+            }
+            return sql;
+        }
+
+        static List<String> statements() {
+            synchronized (STATEMENTS) {
+                return new ArrayList<>(STATEMENTS);
+            }
+        }
+
+        static void clear() {
+            synchronized (STATEMENTS) {
+                STATEMENTS.clear();
+            }
+        }
+    }
+}
@@ -0,0 +1,279 @@
+package com.cursotddrsilva.libraryapi.reactive;
+
+import com.cursotddrsilva.libraryapi.api.dto.BookDTO;
+import com.cursotddrsilva.libraryapi.api.dto.LoanDto;
+import com.cursotddrsilva.libraryapi.model.entity.Book;
+import com.cursotddrsilva.libraryapi.model.repository.BookRepository;
+import com.cursotddrsilva.libraryapi.model.repository.LoanRepository;
+import com.cursotddrsilva.libraryapi.service.BookSearchIndex;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.reactive.AutoConfigureWebTestClient;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.support.NoOpCacheManager;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import reactor.core.publisher.Flux;
+import reactor.test.StepVerifier;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+// a primeira requisicao inicializa Netty, R2DBC e Jackson e pode passar dos 5s padrao
+@AutoConfigureWebTestClient(timeout = "30s")
+@ActiveProfiles({"test", "reactive"})
+public class ReactiveApiTest {
+
+    static String BOOK_API = "/api/books";
+    static String LOAN_API = "/api/loans";
+
+    @Autowired
+    WebTestClient client;
+
+    @Autowired
+    BookRepository bookRepository;
+
+    @Autowired
+    LoanRepository loanRepository;
+
+    @Autowired
+    ReactiveBookRepository reactiveBookRepository;
+
+    @Autowired
+    CacheManager cacheManager;
+
+    @Autowired
+    BookSearchIndex searchIndex;
+
+    @AfterEach
+    public void tearDown(){
+        loanRepository.deleteAllInBatch();
+        bookRepository.deleteAllInBatch();
+    }
+
+    @Test
+    @DisplayName("Deve criar e obter um livro pelo stack reativo")
+    public void createAndGetBookTest(){
+        //cenario
+        BookDTO dto = BookDTO.builder().author("Artur").title("As aventuras").isbn("001").build();
+
+        //execucao
+        BookDTO created = client.post().uri(BOOK_API)
+                .bodyValue(dto)
+                .exchange()
+                .expectStatus().isCreated()
+                .expectBody(BookDTO.class)
+                .returnResult()
+                .getResponseBody();
+
+        //verificacao
+        assertThat(created.getId()).isNotNull();
+        assertThat(bookRepository.findById(created.getId())).isPresent();
+        client.get().uri(BOOK_API + "/" + created.getId())
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("isbn").isEqualTo("001")
+                .jsonPath("title").isEqualTo("As aventuras");
+    }
+
+    @Test
+    @DisplayName("Deve responder 304 e respeitar If-Match com a versao do livro")
+    public void bookETagTest(){
+        //cenario
+        Book book = bookRepository.save(Book.builder().author("Artur").title("As aventuras").isbn("001").build());
+        String etag = "\"" + book.getVersion() + "\"";
+
+        //execucao e verificacao
+        client.get().uri(BOOK_API + "/" + book.getId())
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().valueEquals("ETag", etag);
+        client.get().uri(BOOK_API + "/" + book.getId())
+                .header("If-None-Match", etag)
+                .exchange()
+                .expectStatus().isNotModified();
+
+        BookDTO dto = BookDTO.builder().author("Fulano").title("Outro titulo").isbn("001").build();
+        String updatedETag = client.put().uri(BOOK_API + "/" + book.getId())
+                .header("If-Match", etag)
+                .bodyValue(dto)
+                .exchange()
+                .expectStatus().isOk()
+                .returnResult(BookDTO.class)
+                .getResponseHeaders()
+                .getETag();
+        assertThat(updatedETag).isNotEqualTo(etag);
+        client.put().uri(BOOK_API + "/" + book.getId())
+                .header("If-Match", etag)
+                .bodyValue(dto)
+                .exchange()
+                .expectStatus().isEqualTo(412);
+    }
+
+    @Test
+    @DisplayName("Deve retornar erro de validacao ao criar livro sem dados")
+    public void createInvalidBookTest(){
+        client.post().uri(BOOK_API)
+                .bodyValue(new BookDTO())
+                .exchange()
+                .expectStatus().isBadRequest()
+                .expectBody()
+                .jsonPath("errors.length()").isEqualTo(3);
+    }
+
+    @Test
+    @DisplayName("Deve retornar 404 ao obter livro inexistente")
+    public void bookNotFoundTest(){
+        client.get().uri(BOOK_API + "/1")
+                .exchange()
+                .expectStatus().isNotFound();
+    }
+
+    @Test
+    @DisplayName("Deve filtrar livros com paginacao")
+    public void findBooksTest(){
+        //cenario
+        bookRepository.save(Book.builder().author("Artur").title("As aventuras").isbn("001").build());
+        bookRepository.save(Book.builder().author("Fulano").title("Outro livro").isbn("002").build());
+
+        //execucao e verificacao
+        client.get().uri(BOOK_API + "?title=AVENTURAS&page=0&size=10")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("content.length()").isEqualTo(1)
+                .jsonPath("content[0].isbn").isEqualTo("001")
+                .jsonPath("totalElements").isEqualTo(1)
+                .jsonPath("pageable.pageSize").isEqualTo(10);
+    }
+
+    @Test
+    @DisplayName("Deve emprestar um livro uma unica vez e listar o emprestimo com o livro")
+    public void loanTest(){
+        //cenario
+        Book book = bookRepository.save(Book.builder().author("Artur").title("As aventuras").isbn("123").build());
+        LoanDto dto = LoanDto.builder().isbn("123").customer("Fulano").build();
+
+        //execucao
+        Long id = client.post().uri(LOAN_API)
+                .bodyValue(dto)
+                .exchange()
+                .expectStatus().isCreated()
+                .expectBody(Long.class)
+                .returnResult()
+                .getResponseBody();
+
+        //verificacao
+        assertThat(loanRepository.findById(id)).hasValueSatisfying(loan -> assertThat(loan.getActiveBookId()).isEqualTo(book.getId()));
+        client.post().uri(LOAN_API)
+                .bodyValue(dto)
+                .exchange()
+                .expectStatus().isBadRequest()
+                .expectBody()
+                .jsonPath("errors[0]").isEqualTo("Book already loaned.");
+        client.get().uri(LOAN_API + "?customer=Fulano&page=0&size=10")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("content[0].id").isEqualTo(id)
+                .jsonPath("content[0].isbn").isEqualTo("123")
+                .jsonPath("content[0].bookDTO.id").isEqualTo(book.getId())
+                .jsonPath("totalElements").isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Deve liberar o livro para novo emprestimo apos a devolucao")
+    public void returnBookTest(){
+        //cenario
+        bookRepository.save(Book.builder().author("Artur").title("As aventuras").isbn("123").build());
+        LoanDto dto = LoanDto.builder().isbn("123").customer("Fulano").build();
+        Long id = client.post().uri(LOAN_API).bodyValue(dto).exchange().expectBody(Long.class).returnResult().getResponseBody();
+
+        //execucao
+        client.patch().uri(LOAN_API + "/" + id)
+                .bodyValue("{\"returned\": true}")
+                .header("Content-Type", MediaType.APPLICATION_JSON_VALUE)
+                .exchange()
+                .expectStatus().isOk();
+
+        //verificacao
+        assertThat(loanRepository.findById(id)).hasValueSatisfying(loan -> {
+            assertThat(loan.getReturned()).isTrue();
+            assertThat(loan.getActiveBookId()).isNull();
+        });
+        client.post().uri(LOAN_API).bodyValue(dto).exchange().expectStatus().isCreated();
+    }
+
+    @Test
+    @DisplayName("Deve exportar todos os livros em NDJSON")
+    public void exportTest(){
+        //cenario
+        bookRepository.saveAll(IntStream.range(0, 500)
+                .mapToObj(i -> Book.builder().author("Fulano").title("Livro " + i).isbn("isbn-" + i).build())
+                .collect(Collectors.toList()));
+
+        //execucao
+        Flux<BookDTO> export = client.get().uri(BOOK_API + "/export")
+                .accept(MediaType.APPLICATION_NDJSON)
+                .exchange()
+                .expectStatus().isOk()
+                .returnResult(BookDTO.class)
+                .getResponseBody();
+
+        //verificacao
+        StepVerifier.create(export)
+                .expectNextCount(500)
+                .verifyComplete();
+    }
+
+    /**
+     * O export so aplica map sobre o Flux do repositorio, entao a demanda do cliente chega inalterada
+     * ao R2DBC; aqui e verificado que o repositorio nao le linhas alem do pedido.
+     */
+    @Test
+    @DisplayName("Deve ler do banco somente as linhas pedidas pelo assinante do export")
+    public void exportBackpressureTest(){
+        //cenario
+        bookRepository.saveAll(IntStream.range(0, 500)
+                .mapToObj(i -> Book.builder().author("Fulano").title("Livro " + i).isbn("isbn-" + i).build())
+                .collect(Collectors.toList()));
+        AtomicLong requested = new AtomicLong();
+        AtomicLong fetched = new AtomicLong();
+
+        //execucao
+        Flux<BookRow> export = reactiveBookRepository.streamAll()
+                .doOnRequest(requested::addAndGet)
+                .doOnNext(row -> fetched.incrementAndGet());
+
+        //verificacao
+        StepVerifier.create(export, 0)
+                .expectSubscription()
+                .then(() -> assertThat(fetched).hasValue(0))
+                .thenRequest(10)
+                .expectNextCount(10)
+                .then(() -> {
+                    assertThat(requested).hasValue(10);
+                    assertThat(fetched).hasValue(10);
+                })
+                .thenRequest(490)
+                .expectNextCount(490)
+                .verifyComplete();
+        assertThat(fetched).hasValue(500);
+    }
+
+    @Test
+    @DisplayName("Deve desligar os caches de livros e o indice de busca no profile reactive")
+    public void cachesDisabledTest(){
+        assertThat(cacheManager).isInstanceOf(NoOpCacheManager.class);
+        assertThat(searchIndex.isReady()).isFalse();
+    }
+}
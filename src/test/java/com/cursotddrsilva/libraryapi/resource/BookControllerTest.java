@@ -1,9 +1,14 @@
 package com.cursotddrsilva.libraryapi.resource;
 
 import com.cursotddrsilva.libraryapi.api.dto.BookDTO;
+import com.cursotddrsilva.libraryapi.api.dto.BulkChunkResultDTO;
+import com.cursotddrsilva.libraryapi.api.dto.IsbnLookupDTO;
+import com.cursotddrsilva.libraryapi.api.mapper.BookMapperImpl;
+import com.cursotddrsilva.libraryapi.api.mapper.LoanMapperImpl;
 import com.cursotddrsilva.libraryapi.api.resource.BookController;
 import com.cursotddrsilva.libraryapi.exception.BusinessException;
 import com.cursotddrsilva.libraryapi.model.entity.Book;
+import com.cursotddrsilva.libraryapi.model.repository.Keyset;
 import com.cursotddrsilva.libraryapi.service.BookService;
 import com.cursotddrsilva.libraryapi.service.LoanService;
 import com.fasterxml.jackson.databind.ObjectMapper;
@@ -17,27 +22,41 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.data.domain.Sort;
 import org.springframework.http.MediaType;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
 import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
 import org.springframework.test.web.servlet.result.MockMvcResultMatchers;
 import org.springframework.test.web.servlet.result.StatusResultMatchers;
 
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Optional;
+import java.util.function.Consumer;
 
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 
 @ExtendWith(SpringExtension.class)
 @ActiveProfiles("test")
 @WebMvcTest(controllers = BookController.class)
 @AutoConfigureMockMvc
+@Import({BookMapperImpl.class, LoanMapperImpl.class})
 public class BookControllerTest {
 
     private static String BOOK_API = "/api/books";
@@ -159,6 +178,84 @@ public class BookControllerTest {
         ;
     }
 
+    @Test
+    @DisplayName("Deve obter varios livros por id na ordem pedida, listando os nao encontrados")
+    public void getBooksByIdsTest() throws Exception {
+        //cenario
+        Map<Long, Book> found = new HashMap<>();
+        found.put(1l, Book.builder().id(1l).isbn("001").build());
+        found.put(3l, Book.builder().id(3l).isbn("003").build());
+        BDDMockito.given(service.getByIds(Arrays.asList(3l, 2l, 1l))).willReturn(found);
+
+        //execucao
+        mvc.perform(MockMvcRequestBuilders.get(BOOK_API + "?ids=3,2,1").accept(MediaType.APPLICATION_JSON))
+        //verificacao
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("books", Matchers.hasSize(2)))
+                .andExpect(jsonPath("books[0].id").value(3))
+                .andExpect(jsonPath("books[1].id").value(1))
+                .andExpect(jsonPath("notFound[0]").value(2));
+    }
+
+    @Test
+    @DisplayName("Deve obter varios livros por isbn com uma unica chamada ao servico")
+    public void lookupBooksByIsbnTest() throws Exception {
+        //cenario
+        IsbnLookupDTO dto = IsbnLookupDTO.builder().isbns(Arrays.asList("001", "999")).build();
+        BDDMockito.given(service.getBooksByIsbns(dto.getIsbns()))
+                .willReturn(Collections.singletonMap("001", Book.builder().id(1l).isbn("001").build()));
+
+        //execucao
+        mvc.perform(MockMvcRequestBuilders.post(BOOK_API.concat("/lookup"))
+                .accept(MediaType.APPLICATION_JSON)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(new ObjectMapper().writeValueAsString(dto)))
+        //verificacao
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("books[0].isbn").value("001"))
+                .andExpect(jsonPath("notFound[0]").value("999"));
+        Mockito.verify(service, Mockito.never()).getBookByIsbn(Mockito.anyString());
+    }
+
+    @Test
+    @DisplayName("Deve retornar 304 quando o livro nao mudou desde a ultima leitura do cliente")
+    public void getBookNotModifiedTest() throws Exception {
+        //cenario
+        Book book = Book.builder().id(1l).title("As aventuras").author("Artur").isbn("001").version(3l).build();
+        BDDMockito.given(service.getById(1l)).willReturn(Optional.of(book));
+
+        //execucao e verificacao
+        mvc.perform(MockMvcRequestBuilders.get(BOOK_API.concat("/1")).accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", "\"3\""))
+                .andExpect(jsonPath("version").value(3));
+
+        mvc.perform(MockMvcRequestBuilders.get(BOOK_API.concat("/1"))
+                .header("If-None-Match", "\"3\"")
+                .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isNotModified())
+                .andExpect(content().string(""));
+    }
+
+    @Test
+    @DisplayName("Deve retornar 412 ao atualizar um livro alterado desde a leitura do cliente")
+    public void updateModifiedBookTest() throws Exception {
+        //cenario
+        Book book = Book.builder().id(1l).title("some title").author("some author").isbn("001").version(2l).build();
+        BDDMockito.given(service.getById(1l)).willReturn(Optional.of(book));
+
+        //execucao
+        mvc.perform(MockMvcRequestBuilders.put(BOOK_API.concat("/1"))
+                .header("If-Match", "\"1\"")
+                .content(new ObjectMapper().writeValueAsString(createNewBook()))
+                .contentType(MediaType.APPLICATION_JSON)
+                .accept(MediaType.APPLICATION_JSON))
+        //verificacao
+                .andExpect(status().isPreconditionFailed())
+                .andExpect(jsonPath("errors[0]").value("Resource has been modified."));
+        Mockito.verify(service).updateDetails(Mockito.any(Book.class), Mockito.eq(1l));
+    }
+
     @Test
     @DisplayName("Deve retornar resource not found quando o livro procurado nao existir")
     public void bookNotFoundTest() throws Exception{
@@ -181,7 +278,7 @@ public class BookControllerTest {
     @DisplayName("Deve deletar um livro")
     public void deleteBookTest() throws Exception{
         //cenario
-        BDDMockito.given(service.getById(Mockito.anyLong())).willReturn(Optional.of(Book.builder().id(1L).build()));
+        BDDMockito.given(service.deleteById(1L)).willReturn(true);
 
         //execucao
         MockHttpServletRequestBuilder request = MockMvcRequestBuilders.delete(BOOK_API.concat("/") + 1)
@@ -191,13 +288,14 @@ public class BookControllerTest {
         mvc
                 .perform(request)
                 .andExpect(status().isNoContent());
+        Mockito.verify(service, Mockito.never()).getById(Mockito.anyLong());
     }
 
     @Test
     @DisplayName("Deve retornar resource not found quando nao encontrar um livro para deletar")
     public void deleteInexistentBookTest() throws Exception{
         //cenario
-        BDDMockito.given(service.getById(Mockito.anyLong())).willReturn(Optional.empty());
+        BDDMockito.given(service.deleteById(Mockito.anyLong())).willReturn(false);
 
         //execucao
         MockHttpServletRequestBuilder request = MockMvcRequestBuilders.delete(BOOK_API.concat("/") + 1)
@@ -216,11 +314,8 @@ public class BookControllerTest {
         Long id = 1l;
         String json = new ObjectMapper().writeValueAsString(createNewBook());
 
-        Book updatingBook = Book.builder().id(1l).title("some title").author("some author").isbn("001").build();
-        BDDMockito.given(service.getById(id)).willReturn(Optional.of(updatingBook));
-
-        Book updatedBook = Book.builder().id(id).author("Artur").title("As aventuras").isbn("001").build();
-        BDDMockito.given(service.update(updatingBook)).willReturn(updatedBook);
+        Book updatedBook = Book.builder().id(id).author("Artur").title("As aventuras").isbn("001").version(2l).build();
+        BDDMockito.given(service.updateDetails(Mockito.any(Book.class), Mockito.isNull())).willReturn(Optional.of(updatedBook));
 
         //execucao
         MockHttpServletRequestBuilder request = MockMvcRequestBuilders
@@ -237,7 +332,9 @@ public class BookControllerTest {
                 .andExpect(jsonPath("title").value(createNewBook().getTitle()))
                 .andExpect(jsonPath("author").value(createNewBook().getAuthor()))
                 .andExpect(jsonPath("isbn").value("001"))
+                .andExpect(header().string("ETag", "\"2\""))
         ;
+        Mockito.verify(service, Mockito.never()).getById(Mockito.anyLong());
     }
 
     @Test
@@ -245,6 +342,8 @@ public class BookControllerTest {
     public void updateInexistentBookTest() throws Exception{
         //cenario
         String json = new ObjectMapper().writeValueAsString(createNewBook());
+        BDDMockito.given(service.updateDetails(Mockito.any(Book.class), Mockito.isNull()))
+                .willReturn(Optional.empty());
         BDDMockito.given(service.getById(Mockito.anyLong()))
                 .willReturn(Optional.empty());
 
@@ -262,6 +361,24 @@ public class BookControllerTest {
 
     }
 
+    @Test
+    @DisplayName("Deve ignorar o isbn enviado ao atualizar um livro")
+    public void updateBookIsbnTest() throws Exception{
+        //cenario
+        Book book = Book.builder().id(1l).title("As aventuras").author("Artur").isbn("002").version(2l).build();
+        BDDMockito.given(service.updateDetails(Mockito.any(Book.class), Mockito.isNull())).willReturn(Optional.of(book));
+
+        //execucao
+        mvc.perform(MockMvcRequestBuilders.put(BOOK_API.concat("/1"))
+                .content(new ObjectMapper().writeValueAsString(createNewBook()))
+                .contentType(MediaType.APPLICATION_JSON)
+                .accept(MediaType.APPLICATION_JSON))
+        //verificacao
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("isbn").value("002"));
+        Mockito.verify(service).updateDetails(Mockito.argThat(changes -> changes.getIsbn() == null), Mockito.isNull());
+    }
+
     @Test
     @DisplayName("Deve filtrar livros")
     public void findBookTest() throws Exception {
@@ -279,7 +396,7 @@ public class BookControllerTest {
         BDDMockito.given(service.find(Mockito.any(Book.class), Mockito.any(Pageable.class)))
                 .willReturn(new PageImpl<Book>(Arrays.asList(book), PageRequest.of(0,100),1));
 
-        String queryString = String.format("?title=%s&author=%s&page=0&size=100",
+        String queryString = String.format("?title=%s&author=%s&page=0&size=100&total=exact",
                 book.getTitle(), book.getAuthor());
 
         MockHttpServletRequestBuilder request = MockMvcRequestBuilders
@@ -295,6 +412,221 @@ public class BookControllerTest {
                 .andExpect(jsonPath("pageable.pageNumber").value(0));
     }
 
+    @Test
+    @DisplayName("Deve filtrar livros respondendo o envelope compacto")
+    public void findBookCompactTest() throws Exception {
+        //cenario
+        Book book = Book.builder().id(1l).title("As aventuras").author("Artur").isbn("001").build();
+        BDDMockito.given(service.find(Mockito.any(Book.class), Mockito.any(Pageable.class)))
+                .willReturn(new PageImpl<Book>(Arrays.asList(book), PageRequest.of(0, 1), 3));
+
+        //execucao
+        mvc.perform(MockMvcRequestBuilders.get(BOOK_API.concat("?page=0&size=1&total=exact&envelope=compact"))
+                .accept(MediaType.APPLICATION_JSON))
+        //verificacoes
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("items", Matchers.hasSize(1)))
+                .andExpect(jsonPath("items[0].isbn").value("001"))
+                .andExpect(jsonPath("next").value(1))
+                .andExpect(jsonPath("total").value(3))
+                .andExpect(jsonPath("pageable").doesNotExist())
+                .andExpect(jsonPath("content").doesNotExist());
+    }
+
+    @Test
+    @DisplayName("Deve omitir total e proxima pagina no envelope compacto da ultima pagina sem count")
+    public void findBookCompactSliceTest() throws Exception {
+        //cenario
+        Book book = Book.builder().id(1l).title("As aventuras").author("Artur").isbn("001").build();
+        BDDMockito.given(service.findSlice(Mockito.any(Book.class), Mockito.any(Pageable.class)))
+                .willReturn(new SliceImpl<Book>(Arrays.asList(book), PageRequest.of(2, 1), false));
+
+        //execucao
+        mvc.perform(MockMvcRequestBuilders.get(BOOK_API.concat("?page=2&size=1&total=none&envelope=compact"))
+                .accept(MediaType.APPLICATION_JSON))
+        //verificacoes
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("items", Matchers.hasSize(1)))
+                .andExpect(jsonPath("next").doesNotExist())
+                .andExpect(jsonPath("total").doesNotExist());
+    }
+
+    @Test
+    @DisplayName("Deve retornar erro para um envelope desconhecido")
+    public void findBookInvalidEnvelopeTest() throws Exception {
+        BDDMockito.given(service.find(Mockito.any(Book.class), Mockito.any(Pageable.class)))
+                .willReturn(new PageImpl<Book>(Arrays.asList(), PageRequest.of(0, 10), 0));
+
+        mvc.perform(MockMvcRequestBuilders.get(BOOK_API.concat("?total=exact&envelope=full"))
+                .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("errors[0]").value("Invalid envelope, expected page or compact."));
+    }
+
+    @Test
+    @DisplayName("Deve importar livros em lote reportando os invalidos")
+    public void bulkCreateBooksTest() throws Exception {
+        //cenario
+        BookDTO valid = createNewBook();
+        BookDTO invalid = BookDTO.builder().title("Sem autor").isbn("002").build();
+        String json = new ObjectMapper().writeValueAsString(Arrays.asList(valid, invalid));
+
+        BDDMockito.given(service.saveBatch(Mockito.anyList()))
+                .willReturn(BulkChunkResultDTO.builder().received(1).imported(1).build());
+
+        //execucao
+        MockHttpServletRequestBuilder request = MockMvcRequestBuilders
+                .post(BOOK_API.concat("/bulk"))
+                .contentType(MediaType.APPLICATION_JSON)
+                .accept(MediaType.APPLICATION_JSON)
+                .content(json);
+
+        //verificacoes
+        mvc.perform(request)
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("received").value(2))
+                .andExpect(jsonPath("imported").value(1))
+                .andExpect(jsonPath("rejected").value(1))
+                .andExpect(jsonPath("chunks", Matchers.hasSize(1)))
+                .andExpect(jsonPath("chunks[0].errors", Matchers.hasSize(1)));
+
+        Mockito.verify(service, Mockito.times(1)).saveBatch(Mockito.anyList());
+    }
+
+    @Test
+    @DisplayName("Deve importar os livros lidos antes de um JSON malformado e reportar o erro")
+    public void bulkCreateMalformedJsonTest() throws Exception {
+        //cenario
+        String json = "[" + new ObjectMapper().writeValueAsString(createNewBook()) + ", {\"isbn\": ";
+
+        BDDMockito.given(service.saveBatch(Mockito.anyList()))
+                .willReturn(BulkChunkResultDTO.builder().received(1).imported(1).build());
+
+        //execucao
+        MockHttpServletRequestBuilder request = MockMvcRequestBuilders
+                .post(BOOK_API.concat("/bulk"))
+                .contentType(MediaType.APPLICATION_JSON)
+                .accept(MediaType.APPLICATION_JSON)
+                .content(json);
+
+        //verificacoes
+        mvc.perform(request)
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("received").value(1))
+                .andExpect(jsonPath("imported").value(1))
+                .andExpect(jsonPath("chunks", Matchers.hasSize(1)))
+                .andExpect(jsonPath("error").value(Matchers.startsWith("Element 1: malformed JSON")));
+
+        Mockito.verify(service, Mockito.times(1)).saveBatch(Mockito.anyList());
+    }
+
+    @Test
+    @DisplayName("Deve importar os livros lidos antes de um elemento que nao e objeto e reportar o erro")
+    public void bulkCreateNonObjectElementTest() throws Exception {
+        //cenario
+        String json = "[" + new ObjectMapper().writeValueAsString(createNewBook()) + ", 42]";
+
+        BDDMockito.given(service.saveBatch(Mockito.anyList()))
+                .willReturn(BulkChunkResultDTO.builder().received(1).imported(1).build());
+
+        //execucao
+        MockHttpServletRequestBuilder request = MockMvcRequestBuilders
+                .post(BOOK_API.concat("/bulk"))
+                .contentType(MediaType.APPLICATION_JSON)
+                .accept(MediaType.APPLICATION_JSON)
+                .content(json);
+
+        //verificacoes
+        mvc.perform(request)
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("imported").value(1))
+                .andExpect(jsonPath("error").value("Element 1: expected a book object, found VALUE_NUMBER_INT."));
+
+        Mockito.verify(service, Mockito.times(1)).saveBatch(Mockito.anyList());
+    }
+
+    @Test
+    @DisplayName("Deve retornar erro quando a importacao em lote nao receber um array")
+    public void bulkCreateWithoutArrayTest() throws Exception {
+        //cenario
+        String json = new ObjectMapper().writeValueAsString(createNewBook());
+
+        //execucao
+        MockHttpServletRequestBuilder request = MockMvcRequestBuilders
+                .post(BOOK_API.concat("/bulk"))
+                .contentType(MediaType.APPLICATION_JSON)
+                .accept(MediaType.APPLICATION_JSON)
+                .content(json);
+
+        //verificacoes
+        mvc.perform(request)
+                .andExpect(status().isBadRequest());
+
+        Mockito.verify(service, Mockito.never()).saveBatch(Mockito.anyList());
+    }
+
+    @Test
+    @DisplayName("Deve filtrar livros por keyset devolvendo o cursor da proxima pagina")
+    public void findBookAfterTest() throws Exception {
+        //cenario
+        Book book = Book.builder().id(7l).title("As aventuras").author("Artur").isbn("001").build();
+        BDDMockito.given(service.findAfter(Mockito.any(Book.class), Mockito.any(Keyset.class), Mockito.eq(1)))
+                .willReturn(new SliceImpl<>(Arrays.asList(book), PageRequest.of(0, 1), true));
+
+        //execucao
+        MockHttpServletRequestBuilder request = MockMvcRequestBuilders
+                .get(BOOK_API.concat("?title=aventuras&after=&size=1&sort=title,desc"))
+                .accept(MediaType.APPLICATION_JSON);
+
+        //verificacoes
+        String next = java.util.Base64.getUrlEncoder().withoutPadding()
+                .encodeToString("title|DESC|7|As aventuras".getBytes());
+        mvc.perform(request)
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("content", Matchers.hasSize(1)))
+                .andExpect(jsonPath("hasNext").value(true))
+                .andExpect(jsonPath("next").value(next))
+                .andExpect(jsonPath("totalElements").doesNotExist());
+
+        Mockito.verify(service).findAfter(Mockito.any(Book.class),
+                Mockito.eq(Keyset.first("title", Sort.Direction.DESC)), Mockito.eq(1));
+    }
+
+    @Test
+    @DisplayName("Deve retornar erro para um cursor invalido")
+    public void findBookWithInvalidCursorTest() throws Exception {
+        mvc.perform(MockMvcRequestBuilders.get(BOOK_API.concat("?after=invalido")).accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    @DisplayName("Deve exportar os livros como json delimitado por linhas")
+    public void exportBooksTest() throws Exception {
+        //cenario
+        Book first = Book.builder().id(1l).title("As aventuras").author("Artur").isbn("001").version(3l).build();
+        Book second = Book.builder().id(2l).title("Outras aventuras").author("Artur").isbn("002").version(0l).build();
+        BDDMockito.willAnswer(invocation -> {
+            Consumer<Book> consumer = invocation.getArgument(0);
+            consumer.accept(first);
+            consumer.accept(second);
+            return null;
+        }).given(service).exportAll(Mockito.any());
+
+        //execucao
+        MvcResult result = mvc.perform(MockMvcRequestBuilders.get(BOOK_API.concat("/export")))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        //verificacoes
+        assertThat(result.getRequest().getAsyncContext().getTimeout()).isEqualTo(1800000l);
+        mvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_NDJSON))
+                .andExpect(content().string(
+                        "{\"id\":1,\"title\":\"As aventuras\",\"author\":\"Artur\",\"isbn\":\"001\",\"version\":3}\n" +
+                        "{\"id\":2,\"title\":\"Outras aventuras\",\"author\":\"Artur\",\"isbn\":\"002\",\"version\":0}\n"));
+    }
+
     private BookDTO createNewBook() {
         return BookDTO.builder().author("Artur").title("As aventuras").isbn("001").build();
     }
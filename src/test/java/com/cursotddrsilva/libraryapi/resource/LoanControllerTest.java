@@ -1,8 +1,12 @@
 package com.cursotddrsilva.libraryapi.resource;
 
+import com.cursotddrsilva.libraryapi.api.dto.BulkReturnLoanDTO;
+import com.cursotddrsilva.libraryapi.api.dto.BulkReturnResultDTO;
 import com.cursotddrsilva.libraryapi.api.dto.LoanDto;
 import com.cursotddrsilva.libraryapi.api.dto.LoanFilterDTO;
 import com.cursotddrsilva.libraryapi.api.dto.ReturnedLoanDTO;
+import com.cursotddrsilva.libraryapi.api.mapper.BookMapperImpl;
+import com.cursotddrsilva.libraryapi.api.mapper.LoanMapperImpl;
 import com.cursotddrsilva.libraryapi.api.resource.LoanController;
 import com.cursotddrsilva.libraryapi.exception.BusinessException;
 import com.cursotddrsilva.libraryapi.model.entity.Book;
@@ -23,9 +27,11 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.SliceImpl;
 import org.springframework.http.MediaType;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
@@ -38,9 +44,11 @@ import javax.swing.text.html.Option;
 import java.net.URI;
 import java.time.LocalDate;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.Date;
 import java.util.Optional;
 
+import static org.assertj.core.api.Assertions.assertThat;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.patch;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
@@ -48,6 +56,7 @@ import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.
 @ActiveProfiles("test")
 @WebMvcTest(controllers = LoanController.class)
 @AutoConfigureMockMvc
+@Import({BookMapperImpl.class, LoanMapperImpl.class})
 public class LoanControllerTest {
 
     private static final String LOAN_API = "/api/loans";
@@ -144,11 +153,9 @@ public class LoanControllerTest {
     public void returnBookTest() throws Exception {
         //cenario
         ReturnedLoanDTO dto = ReturnedLoanDTO.builder().returned(true).build();
-        Loan loan = Loan.builder().id(1l).build();
 
         //execucao
-        BDDMockito.given(loanService.getById(Mockito.anyLong()))
-                .willReturn(Optional.of(loan));
+        BDDMockito.given(loanService.setReturned(1l, true, null)).willReturn(Optional.of(2l));
 
         String json = new ObjectMapper().writeValueAsString(dto);
 
@@ -158,9 +165,10 @@ public class LoanControllerTest {
                 .accept(MediaType.APPLICATION_JSON)
                 .contentType(MediaType.APPLICATION_JSON)
                 .content(json)
-        ).andExpect(status().isOk());
+        ).andExpect(status().isOk())
+                .andExpect(header().string("ETag", "\"2\""));
 
-        Mockito.verify(loanService, Mockito.times(1)).update(loan);
+        Mockito.verify(loanService, Mockito.never()).getById(Mockito.anyLong());
     }
 
     @Test
@@ -171,6 +179,7 @@ public class LoanControllerTest {
         String json = new ObjectMapper().writeValueAsString(dto);
 
         //execucao
+        BDDMockito.given(loanService.setReturned(1l, true, null)).willReturn(Optional.empty());
         BDDMockito.given(loanService.getById(Mockito.anyLong()))
                 .willReturn(Optional.empty());
 
@@ -184,6 +193,46 @@ public class LoanControllerTest {
         ).andExpect(status().isNotFound());
     }
 
+    @Test
+    @DisplayName("Deve devolver varios emprestimos de uma vez")
+    public void returnBooksTest() throws Exception {
+        //cenario
+        BulkReturnLoanDTO dto = BulkReturnLoanDTO.builder().ids(Arrays.asList(1l, 2l, 3l)).build();
+        BulkReturnResultDTO result = BulkReturnResultDTO.builder()
+                .received(3)
+                .returned(Arrays.asList(1l))
+                .alreadyReturned(Arrays.asList(2l))
+                .notFound(Arrays.asList(3l))
+                .build();
+        BDDMockito.given(loanService.returnLoans(dto.getIds())).willReturn(result);
+
+        //execucao
+        mvc.perform(patch(LOAN_API)
+                .accept(MediaType.APPLICATION_JSON)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(new ObjectMapper().writeValueAsString(dto)))
+        //verificacao
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("received").value(3))
+                .andExpect(jsonPath("returned[0]").value(1))
+                .andExpect(jsonPath("alreadyReturned[0]").value(2))
+                .andExpect(jsonPath("notFound[0]").value(3));
+    }
+
+    @Test
+    @DisplayName("Deve retornar erro ao devolver uma lista vazia de emprestimos")
+    public void returnBooksEmptyTest() throws Exception {
+        BulkReturnLoanDTO dto = BulkReturnLoanDTO.builder().ids(Collections.emptyList()).build();
+
+        mvc.perform(patch(LOAN_API)
+                .accept(MediaType.APPLICATION_JSON)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(new ObjectMapper().writeValueAsString(dto)))
+                .andExpect(status().isBadRequest());
+
+        Mockito.verify(loanService, Mockito.never()).returnLoans(Mockito.anyList());
+    }
+
     @Test
     @DisplayName("Deve filtrar emprestimos")
     public void findLoanTest() throws Exception {
@@ -198,7 +247,7 @@ public class LoanControllerTest {
         BDDMockito.given(loanService.find(Mockito.any(LoanFilterDTO.class), Mockito.any(Pageable.class)))
                 .willReturn(new PageImpl<Loan>(Arrays.asList(loan), PageRequest.of(0,10),1));
 
-        String queryString = String.format("?isbn=%s&customer=%s&page=0&size=10",
+        String queryString = String.format("?isbn=%s&customer=%s&page=0&size=10&total=exact",
                 book.getIsbn(), loan.getCustomer());
 
         MockHttpServletRequestBuilder request = MockMvcRequestBuilders
@@ -213,4 +262,104 @@ public class LoanControllerTest {
                 .andExpect(jsonPath("pageable.pageSize").value(10))
                 .andExpect(jsonPath("pageable.pageNumber").value(0));
     }
+
+    @Test
+    @DisplayName("Deve filtrar emprestimos sem total quando total=none")
+    public void findLoanSliceTest() throws Exception {
+        //cenario
+        Loan loan = LoanServiceTest.createLoan();
+        loan.setId(1l);
+        loan.setBook(Book.builder().id(1l).isbn("321").build());
+
+        BDDMockito.given(loanService.findSlice(Mockito.any(LoanFilterDTO.class), Mockito.any(Pageable.class)))
+                .willReturn(new SliceImpl<Loan>(Arrays.asList(loan), PageRequest.of(0,10), true));
+
+        //execucao
+        mvc.perform(MockMvcRequestBuilders.get(LOAN_API + "?customer=Fulano&page=0&size=10&total=none")
+                .accept(MediaType.APPLICATION_JSON))
+        //verificacoes
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("content", Matchers.hasSize(1)))
+                .andExpect(jsonPath("last").value(false))
+                .andExpect(jsonPath("totalElements").doesNotExist());
+        Mockito.verify(loanService, Mockito.never()).find(Mockito.any(LoanFilterDTO.class), Mockito.any(Pageable.class));
+        Mockito.verify(loanService, Mockito.never()).countApproximately(Mockito.any(LoanFilterDTO.class));
+    }
+
+    @Test
+    @DisplayName("Deve filtrar emprestimos com total aproximado por padrao")
+    public void findLoanApproximateTotalTest() throws Exception {
+        //cenario
+        Loan loan = LoanServiceTest.createLoan();
+        loan.setId(1l);
+        loan.setBook(Book.builder().id(1l).isbn("321").build());
+
+        BDDMockito.given(loanService.findSlice(Mockito.any(LoanFilterDTO.class), Mockito.any(Pageable.class)))
+                .willReturn(new SliceImpl<Loan>(Arrays.asList(loan), PageRequest.of(0,10), false));
+        BDDMockito.given(loanService.countApproximately(Mockito.any(LoanFilterDTO.class))).willReturn(1000l);
+
+        //execucao
+        mvc.perform(MockMvcRequestBuilders.get(LOAN_API + "?customer=Fulano&page=0&size=10")
+                .accept(MediaType.APPLICATION_JSON))
+        //verificacoes
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("content", Matchers.hasSize(1)))
+                .andExpect(jsonPath("totalElements").value(1000));
+        Mockito.verify(loanService, Mockito.never()).find(Mockito.any(LoanFilterDTO.class), Mockito.any(Pageable.class));
+    }
+
+    @Test
+    @DisplayName("Deve retornar erro para um modo de total invalido")
+    public void findLoanInvalidTotalTest() throws Exception {
+        mvc.perform(MockMvcRequestBuilders.get(LOAN_API + "?customer=Fulano&total=sometimes")
+                .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("errors[0]").value("Invalid total, expected none, approx or exact."));
+    }
+
+    @Test
+    @DisplayName("Deve retornar 412 ao devolver um emprestimo alterado desde a leitura do cliente")
+    public void returnModifiedLoanTest() throws Exception {
+        //cenario
+        ReturnedLoanDTO dto = ReturnedLoanDTO.builder().returned(true).build();
+        Loan loan = Loan.builder().id(1l).version(2l).build();
+        BDDMockito.given(loanService.getById(1l)).willReturn(Optional.of(loan));
+
+        //execucao
+        mvc.perform(patch(LOAN_API.concat("/1"))
+                .header("If-Match", "\"1\"")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(new ObjectMapper().writeValueAsString(dto)))
+        //verificacao
+                .andExpect(status().isPreconditionFailed());
+        Mockito.verify(loanService).setReturned(1l, true, 1l);
+    }
+
+    @Test
+    @DisplayName("Deve retornar 304 quando a pagina de emprestimos nao mudou")
+    public void findLoanNotModifiedTest() throws Exception {
+        //cenario
+        Loan loan = LoanServiceTest.createLoan();
+        loan.setId(1l);
+        loan.setVersion(0l);
+        loan.setBook(Book.builder().id(1l).isbn("321").version(0l).build());
+        BDDMockito.given(loanService.find(Mockito.any(LoanFilterDTO.class), Mockito.any(Pageable.class)))
+                .willReturn(new PageImpl<Loan>(Arrays.asList(loan), PageRequest.of(0,10),1));
+        String url = LOAN_API + "?customer=Fulano&page=0&size=10&total=exact";
+
+        //execucao
+        String etag = mvc.perform(MockMvcRequestBuilders.get(url).accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader("ETag");
+
+        //verificacao
+        assertThat(etag).startsWith("W/");
+        mvc.perform(MockMvcRequestBuilders.get(url).header("If-None-Match", etag).accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isNotModified())
+                .andExpect(content().string(""));
+
+        loan.getBook().setVersion(1l);
+        mvc.perform(MockMvcRequestBuilders.get(url).header("If-None-Match", etag).accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk());
+    }
 }
@@ -0,0 +1,68 @@
+package com.cursotddrsilva.libraryapi.resource;
+
+import com.cursotddrsilva.libraryapi.api.dto.BookLoanStatisticsDTO;
+import com.cursotddrsilva.libraryapi.api.dto.LoanStatisticsDTO;
+import com.cursotddrsilva.libraryapi.api.resource.StatisticsController;
+import com.cursotddrsilva.libraryapi.service.LoanStatisticsService;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.BDDMockito;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
+
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@ExtendWith(SpringExtension.class)
+@ActiveProfiles("test")
+@WebMvcTest(controllers = StatisticsController.class)
+@AutoConfigureMockMvc
+public class StatisticsControllerTest {
+
+    private static final String STATS_API = "/api/stats";
+
+    @Autowired
+    private MockMvc mvc;
+
+    @MockBean
+    private LoanStatisticsService service;
+
+    @Test
+    @DisplayName("Deve obter as estatisticas de emprestimos")
+    public void getStatisticsTest() throws Exception {
+        //cenario
+        BDDMockito.given(service.getStatistics()).willReturn(LoanStatisticsDTO.builder()
+                .totalLoans(10).activeLoans(4).overdueLoans(1).loanedBooks(3).build());
+
+        //execucao
+        mvc.perform(MockMvcRequestBuilders.get(STATS_API).accept(MediaType.APPLICATION_JSON))
+        //verificacao
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("totalLoans").value(10))
+                .andExpect(jsonPath("activeLoans").value(4))
+                .andExpect(jsonPath("overdueLoans").value(1))
+                .andExpect(jsonPath("loanedBooks").value(3));
+    }
+
+    @Test
+    @DisplayName("Deve obter a quantidade de emprestimos de um livro")
+    public void getBookStatisticsTest() throws Exception {
+        //cenario
+        BDDMockito.given(service.getBookStatistics(1l)).willReturn(BookLoanStatisticsDTO.builder().bookId(1l).loans(7).build());
+
+        //execucao
+        mvc.perform(MockMvcRequestBuilders.get(STATS_API + "/books/1").accept(MediaType.APPLICATION_JSON))
+        //verificacao
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("bookId").value(1))
+                .andExpect(jsonPath("loans").value(7));
+    }
+}
@@ -0,0 +1,150 @@
+package com.cursotddrsilva.libraryapi.service;
+
+import com.cursotddrsilva.libraryapi.model.entity.Book;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.BDDMockito;
+import org.mockito.Mockito;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+
+import java.util.Optional;
+import java.util.function.Consumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class BookSearchIndexTest {
+
+    private BookSearchIndex index;
+
+    private BookService bookService;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    public void setUp(){
+        bookService = Mockito.mock(BookService.class);
+        ObjectProvider<BookService> provider = Mockito.mock(ObjectProvider.class);
+        BDDMockito.given(provider.getObject()).willReturn(bookService);
+        BDDMockito.willAnswer(invocation -> {
+            Consumer<Book> consumer = invocation.getArgument(0);
+            consumer.accept(book(1l, "As aventuras de Artur", "Fulano", "001"));
+            consumer.accept(book(2l, "Aventuras", "Ciclano", "002"));
+            consumer.accept(book(3l, "O livro", "Fulano Aventureiro", "003"));
+            return null;
+        }).given(bookService).exportAll(Mockito.any());
+
+        this.index = new BookSearchIndex(true, provider);
+    }
+
+    @Test
+    @DisplayName("Nao deve responder buscas antes de construido")
+    public void notReadyTest(){
+        //execucao
+        Optional<Page<Book>> result = this.index.search(Book.builder().title("aventuras").build(), PageRequest.of(0, 10));
+
+        //verificacao
+        assertThat(result).isEmpty();
+    }
+
+    @Test
+    @DisplayName("Deve buscar livros pelo titulo ignorando maiusculas e ordenar por relevancia")
+    public void searchByTitleTest(){
+        //cenario
+        this.index.build();
+
+        //execucao
+        Page<Book> result = this.index.search(Book.builder().title("AVENTURAS").build(), PageRequest.of(0, 10)).get();
+
+        //verificacao
+        assertThat(result.getTotalElements()).isEqualTo(2);
+        assertThat(result.getContent()).extracting(Book::getId).containsExactly(2l, 1l);
+    }
+
+    @Test
+    @DisplayName("Deve combinar os filtros de titulo e autor")
+    public void searchByTitleAndAuthorTest(){
+        //cenario
+        this.index.build();
+
+        //execucao
+        Page<Book> result = this.index.search(Book.builder().title("livro").author("fulano").build(), PageRequest.of(0, 10)).get();
+
+        //verificacao
+        assertThat(result.getContent()).extracting(Book::getId).containsExactly(3l);
+    }
+
+    @Test
+    @DisplayName("Deve refletir livros adicionados, alterados e removidos")
+    public void updateIndexTest(){
+        //cenario
+        this.index.build();
+
+        //execucao
+        this.index.add(book(4l, "Mais aventuras", "Beltrano", "004"));
+        this.index.add(book(2l, "Outro titulo", "Ciclano", "002"));
+        this.index.remove(1l);
+        Page<Book> result = this.index.search(Book.builder().title("aventuras").build(), PageRequest.of(0, 10)).get();
+
+        //verificacao
+        assertThat(result.getContent()).extracting(Book::getId).containsExactly(4l);
+    }
+
+    @Test
+    @DisplayName("Deve aplicar ao fim da carga as alteracoes feitas durante ela")
+    public void updateDuringBuildTest(){
+        //cenario: a carga le o livro 2 antigo depois das alteracoes terem sido confirmadas
+        BDDMockito.willAnswer(invocation -> {
+            Consumer<Book> consumer = invocation.getArgument(0);
+            consumer.accept(book(1l, "As aventuras de Artur", "Fulano", "001"));
+            this.index.add(book(2l, "Outro titulo", "Ciclano", "002"));
+            this.index.add(book(4l, "Mais aventuras", "Beltrano", "004"));
+            this.index.remove(1l);
+            consumer.accept(book(2l, "Aventuras", "Ciclano", "002"));
+            return null;
+        }).given(bookService).exportAll(Mockito.any());
+
+        //execucao
+        this.index.build();
+        Page<Book> result = this.index.search(Book.builder().title("aventuras").build(), PageRequest.of(0, 10)).get();
+
+        //verificacao
+        assertThat(result.getContent()).extracting(Book::getId).containsExactly(4l);
+        assertThat(this.index.size()).isEqualTo(2);
+    }
+
+    @Test
+    @DisplayName("Deve paginar os resultados do indice")
+    public void pageTest(){
+        //cenario
+        this.index.build();
+
+        //execucao
+        Page<Book> result = this.index.search(Book.builder().author("o").build(), PageRequest.of(1, 2)).get();
+
+        //verificacao
+        assertThat(result.getTotalElements()).isEqualTo(3);
+        assertThat(result.getContent()).hasSize(1);
+    }
+
+    @Test
+    @DisplayName("Deve deixar para o banco buscas ordenadas ou sem campos de texto")
+    public void fallbackTest(){
+        //cenario
+        this.index.build();
+
+        //execucao
+        Optional<Page<Book>> sorted = this.index.search(Book.builder().title("aventuras").build(), PageRequest.of(0, 10, Sort.by("title")));
+        Optional<Page<Book>> withoutText = this.index.search(new Book(), PageRequest.of(0, 10));
+
+        //verificacao
+        assertThat(sorted).isEmpty();
+        assertThat(withoutText).isEmpty();
+    }
+
+    private static Book book(Long id, String title, String author, String isbn){
+        return Book.builder().id(id).title(title).author(author).isbn(isbn).build();
+    }
+}
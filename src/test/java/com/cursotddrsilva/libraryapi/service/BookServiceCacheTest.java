@@ -0,0 +1,206 @@
+package com.cursotddrsilva.libraryapi.service;
+
+import com.cursotddrsilva.libraryapi.config.CacheConfig;
+import com.cursotddrsilva.libraryapi.model.entity.Book;
+import com.cursotddrsilva.libraryapi.model.repository.BookRepository;
+import com.cursotddrsilva.libraryapi.service.impl.BookServiceImpl;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.autoconfigure.cache.CacheAutoConfiguration;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+import javax.persistence.EntityManagerFactory;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(SpringExtension.class)
+@ActiveProfiles("test")
+@ContextConfiguration(classes = {CacheConfig.class, BookServiceImpl.class})
+@ImportAutoConfiguration(CacheAutoConfiguration.class)
+@TestPropertySource(properties = {
+        "spring.cache.type=caffeine",
+        "spring.cache.cache-names=books,booksByIsbn",
+        "spring.cache.caffeine.spec=maximumSize=100,expireAfterWrite=10m,recordStats"
+})
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_EACH_TEST_METHOD)
+public class BookServiceCacheTest {
+
+    @Autowired
+    BookService service;
+
+    @MockBean
+    BookRepository repository;
+
+    @MockBean
+    BookSearchIndex searchIndex;
+
+    @MockBean
+    ApproximateCounts approximateCounts;
+
+    @MockBean
+    EntityManagerFactory entityManagerFactory;
+
+    @Test
+    @DisplayName("Deve buscar o livro por id apenas uma vez na base")
+    public void getByIdCachedTest(){
+        //cenario
+        Book book = Book.builder().id(1l).isbn("123").author("Fulano").title("As aventuras").build();
+        when(repository.findById(1l)).thenReturn(Optional.of(book));
+
+        //execucao
+        service.getById(1l);
+        Optional<Book> foundBook = service.getById(1l);
+
+        //verificacao
+        assertThat(foundBook).contains(book);
+        verify(repository, times(1)).findById(1l);
+    }
+
+    @Test
+    @DisplayName("Deve buscar o livro por isbn apenas uma vez na base")
+    public void getBookByIsbnCachedTest(){
+        //cenario
+        Book book = Book.builder().id(1l).isbn("123").author("Fulano").title("As aventuras").build();
+        when(repository.findByIsbn("123")).thenReturn(Optional.of(book));
+
+        //execucao
+        service.getBookByIsbn("123");
+        Optional<Book> foundBook = service.getBookByIsbn("123");
+
+        //verificacao
+        assertThat(foundBook).contains(book);
+        verify(repository, times(1)).findByIsbn("123");
+    }
+
+    @Test
+    @DisplayName("Deve guardar no cache uma copia que nao e afetada por quem altera o livro retornado")
+    public void getByIdCachedCopyTest(){
+        //cenario
+        Book book = Book.builder().id(1l).isbn("123").author("Fulano").title("As aventuras").build();
+        when(repository.findById(1l)).thenReturn(Optional.of(book));
+
+        //execucao
+        Book first = service.getById(1l).get();
+        first.setTitle("Alterado");
+        book.setTitle("Alterado na entidade");
+        Book second = service.getById(1l).get();
+
+        //verificacao
+        assertThat(second).isNotSameAs(first);
+        assertThat(second.getTitle()).isEqualTo("As aventuras");
+        assertThat(second.getLoans()).isNull();
+    }
+
+    @Test
+    @DisplayName("Deve invalidar o cache ao atualizar um livro")
+    public void evictOnUpdateTest(){
+        //cenario
+        Book book = Book.builder().id(1l).isbn("123").author("Fulano").title("As aventuras").build();
+        when(repository.findById(1l)).thenReturn(Optional.of(book));
+        when(repository.findByIsbn("123")).thenReturn(Optional.of(book));
+        when(repository.save(book)).thenReturn(book);
+        service.getById(1l);
+        service.getBookByIsbn("123");
+
+        //execucao
+        service.update(book);
+        service.getById(1l);
+        service.getBookByIsbn("123");
+
+        //verificacao
+        verify(repository, times(2)).findById(1l);
+        verify(repository, times(2)).findByIsbn("123");
+    }
+
+    @Test
+    @DisplayName("Deve invalidar o cache ao deletar um livro")
+    public void evictOnDeleteTest(){
+        //cenario
+        Book book = Book.builder().id(1l).isbn("123").build();
+        when(repository.findById(1l)).thenReturn(Optional.of(book));
+        service.getById(1l);
+
+        //execucao
+        service.delete(book);
+        when(repository.findById(1l)).thenReturn(Optional.empty());
+        Optional<Book> foundBook = service.getById(1l);
+
+        //verificacao
+        assertThat(foundBook).isEmpty();
+        verify(repository, times(2)).findById(1l);
+    }
+
+    @Test
+    @DisplayName("Deve invalidar apenas o isbn do livro deletado pelo id")
+    public void evictOnDeleteByIdTest(){
+        //cenario
+        Book book = Book.builder().id(1l).isbn("123").build();
+        Book other = Book.builder().id(2l).isbn("456").build();
+        when(repository.findByIsbn("123")).thenReturn(Optional.of(book));
+        when(repository.findByIsbn("456")).thenReturn(Optional.of(other));
+        when(repository.findById(1l)).thenReturn(Optional.of(book));
+        when(repository.removeById(1l)).thenReturn(1);
+        service.getBookByIsbn("123");
+        service.getBookByIsbn("456");
+
+        //execucao
+        service.deleteById(1l);
+        service.getBookByIsbn("123");
+        service.getBookByIsbn("456");
+
+        //verificacao
+        verify(repository, times(2)).findByIsbn("123");
+        verify(repository, times(1)).findByIsbn("456");
+    }
+
+    @Test
+    @DisplayName("Deve atualizar um livro em cache com um unico update, sem ler a linha")
+    public void updateDetailsCachedTest(){
+        //cenario
+        Book book = Book.builder().id(1l).title("Titulo").author("Autor").isbn("123").version(2l).build();
+        when(repository.findById(1l)).thenReturn(Optional.of(book));
+        when(repository.updateDetails(1l, "Novo titulo", "Novo autor", 2l)).thenReturn(1);
+        service.getById(1l);
+
+        //execucao
+        Optional<Book> updated = service.updateDetails(Book.builder().id(1l).title("Novo titulo").author("Novo autor").build(), 2l);
+
+        //verificacao
+        assertThat(updated.map(Book::getVersion)).contains(3l);
+        assertThat(updated.map(Book::getIsbn)).contains("123");
+        verify(repository, times(1)).findById(1l);
+    }
+
+    @Test
+    @DisplayName("Deve buscar na base apenas os livros que nao estao no cache")
+    public void getByIdsCachedTest(){
+        //cenario
+        Book first = Book.builder().id(1l).isbn("123").build();
+        Book second = Book.builder().id(2l).isbn("456").build();
+        when(repository.findById(1l)).thenReturn(Optional.of(first));
+        when(repository.findByIdIn(Arrays.asList(2l, 3l))).thenReturn(Arrays.asList(second));
+        service.getById(1l);
+
+        //execucao
+        Map<Long, Book> books = service.getByIds(Arrays.asList(1l, 2l, 3l));
+        Optional<Book> cached = service.getById(2l);
+
+        //verificacao
+        assertThat(books).containsOnlyKeys(1l, 2l);
+        assertThat(cached).contains(second);
+        verify(repository).findByIdIn(Arrays.asList(2l, 3l));
+        verify(repository, never()).findById(2l);
+    }
+}
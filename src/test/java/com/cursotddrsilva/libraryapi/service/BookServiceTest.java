@@ -1,5 +1,6 @@
 package com.cursotddrsilva.libraryapi.service;
 
+import com.cursotddrsilva.libraryapi.api.dto.BulkChunkResultDTO;
 import com.cursotddrsilva.libraryapi.exception.BusinessException;
 import com.cursotddrsilva.libraryapi.model.entity.Book;
 import com.cursotddrsilva.libraryapi.model.repository.BookRepository;
@@ -11,6 +12,7 @@ import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.Mockito;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.cache.support.NoOpCacheManager;
 import org.springframework.data.domain.Example;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
@@ -21,6 +23,7 @@ import org.springframework.test.context.junit.jupiter.SpringExtension;
 import java.awt.print.Pageable;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 import static org.assertj.core.api.Assertions.assertThat;
@@ -37,7 +40,7 @@ public class BookServiceTest {
 
     @BeforeEach
     public void setUp(){
-        this.service = new BookServiceImpl( repository);
+        this.service = new BookServiceImpl( repository, new BookSearchIndex(false, null), new ApproximateCounts(60000, 600000, 100), new NoOpCacheManager());
     }
 
     @Test
@@ -162,6 +165,81 @@ public class BookServiceTest {
         assertThat(book.getAuthor()).isEqualTo(updateBook.getAuthor());
     }
 
+    @Test
+    @DisplayName("Deve atualizar um livro com um update condicional e devolver a nova versao sem reler a linha")
+    public void updateDetailsTest(){
+        //cenario
+        Book book = Book.builder().id(1l).title("Novo titulo").author("Novo autor").isbn("outro").build();
+        Book stored = Book.builder().id(1l).title("Titulo").author("Autor").isbn("123").version(2l).build();
+        when(this.repository.findById(1l)).thenReturn(Optional.of(stored));
+        when(this.repository.updateDetails(1l, book.getTitle(), book.getAuthor(), 2l)).thenReturn(1);
+
+        //execucao
+        Optional<Book> updated = this.service.updateDetails(book, 2l);
+
+        //verificacoes
+        assertThat(updated).isPresent();
+        assertThat(updated.get().getVersion()).isEqualTo(3l);
+        assertThat(updated.get().getIsbn()).isEqualTo("123");
+        assertThat(updated.get().getTitle()).isEqualTo(book.getTitle());
+        Mockito.verify(this.repository, Mockito.times(1)).findById(1l);
+        Mockito.verify(this.repository, Mockito.never()).save(Mockito.any(Book.class));
+    }
+
+    @Test
+    @DisplayName("Deve usar a versao atual ao atualizar um livro sem versao esperada")
+    public void updateDetailsWithoutVersionTest(){
+        Book book = this.createValidBook();
+        book.setId(1l);
+        when(this.repository.findById(1l)).thenReturn(Optional.of(Book.builder().id(1l).isbn("123").version(4l).build()));
+        when(this.repository.updateDetails(1l, book.getTitle(), book.getAuthor(), 4l)).thenReturn(1);
+
+        Optional<Book> updated = this.service.updateDetails(book, null);
+
+        assertThat(updated.map(Book::getVersion)).contains(5l);
+    }
+
+    @Test
+    @DisplayName("Deve reler o livro e tentar de novo quando a versao lida estava velha e nao havia versao esperada")
+    public void updateDetailsStaleVersionTest(){
+        Book book = this.createValidBook();
+        book.setId(1l);
+        when(this.repository.findById(1l)).thenReturn(
+                Optional.of(Book.builder().id(1l).isbn("123").version(4l).build()),
+                Optional.of(Book.builder().id(1l).isbn("123").version(6l).build()));
+        when(this.repository.updateDetails(1l, book.getTitle(), book.getAuthor(), 4l)).thenReturn(0);
+        when(this.repository.updateDetails(1l, book.getTitle(), book.getAuthor(), 6l)).thenReturn(1);
+
+        Optional<Book> updated = this.service.updateDetails(book, null);
+
+        assertThat(updated.map(Book::getVersion)).contains(7l);
+    }
+
+    @Test
+    @DisplayName("Deve retornar vazio quando o update condicional nao altera nenhum livro")
+    public void updateDetailsNothingChangedTest(){
+        Book book = this.createValidBook();
+        book.setId(1l);
+        when(this.repository.findById(1l)).thenReturn(Optional.of(Book.builder().id(1l).isbn("123").version(3l).build()));
+        when(this.repository.updateDetails(1l, book.getTitle(), book.getAuthor(), 2l)).thenReturn(0);
+
+        assertThat(this.service.updateDetails(book, 2l)).isEmpty();
+        Mockito.verify(this.repository, Mockito.times(1)).updateDetails(Mockito.anyLong(), Mockito.any(), Mockito.any(), Mockito.any());
+    }
+
+    @Test
+    @DisplayName("Deve deletar um livro pelo id com um unico delete")
+    public void deleteByIdTest(){
+        when(this.repository.findById(1l)).thenReturn(Optional.of(Book.builder().id(1l).isbn("123").build()));
+        when(this.repository.findById(2l)).thenReturn(Optional.empty());
+        when(this.repository.removeById(1l)).thenReturn(1);
+
+        assertThat(this.service.deleteById(1l)).isTrue();
+        assertThat(this.service.deleteById(2l)).isFalse();
+        Mockito.verify(this.repository, Mockito.never()).removeById(2l);
+        Mockito.verify(this.repository, Mockito.never()).delete(Mockito.any(Book.class));
+    }
+
     @Test
     @DisplayName("Deve ocorrer erro ao tentar deletar um livro inexistente")
     public void updateInvalidBookTest(){
@@ -197,6 +275,36 @@ public class BookServiceTest {
         assertThat(result.getPageable().getPageSize()).isEqualTo(10);
     }
 
+    @Test
+    @DisplayName("Deve reaproveitar o total aproximado de um mesmo filtro")
+    public void countApproximatelyTest(){
+        //cenario
+        Book filter = Book.builder().title("aventuras").build();
+        when(this.repository.count(Mockito.any(Example.class))).thenReturn(42l);
+
+        //execucao
+        long first = this.service.countApproximately(filter);
+        long second = this.service.countApproximately(Book.builder().title("aventuras").build());
+
+        //verificacoes
+        assertThat(first).isEqualTo(42);
+        assertThat(second).isEqualTo(42);
+        verify(this.repository, times(1)).count(Mockito.any(Example.class));
+    }
+
+    @Test
+    @DisplayName("Nao deve confundir um filtro nulo com o texto null no total aproximado")
+    public void countApproximatelyNullFilterTest(){
+        when(this.repository.count(Mockito.any(Example.class))).thenReturn(42l, 7l);
+
+        long withoutTitle = this.service.countApproximately(Book.builder().build());
+        long nullTitle = this.service.countApproximately(Book.builder().title("null").build());
+
+        assertThat(withoutTitle).isEqualTo(42);
+        assertThat(nullTitle).isEqualTo(7);
+        verify(this.repository, times(2)).count(Mockito.any(Example.class));
+    }
+
     @Test
     @DisplayName("Deve obter um livro pelo isbn")
     public void getBookByIsbnTest(){
@@ -215,6 +323,44 @@ public class BookServiceTest {
         verify(this.repository, times(1)).findByIsbn(isbn);
     }
 
+    @Test
+    @DisplayName("Deve buscar varios livros por isbn com uma unica consulta")
+    public void getBooksByIsbnsTest(){
+        //cenario
+        Book book = createValidBook();
+        book.setId(1l);
+        when(repository.findByIsbnIn(Arrays.asList("123", "999"))).thenReturn(Arrays.asList(book));
+
+        //execucao
+        Map<String, Book> books = service.getBooksByIsbns(Arrays.asList("123", "999", "123"));
+
+        //verificacao
+        assertThat(books).containsOnlyKeys("123");
+        assertThat(books.get("123")).isEqualTo(book);
+        verify(repository, times(1)).findByIsbnIn(Mockito.anyCollection());
+    }
+
+    @Test
+    @DisplayName("Deve salvar um lote de livros ignorando isbns duplicados")
+    public void saveBatchTest(){
+        //cenario
+        Book existing = Book.builder().isbn("001").title("As aventuras").author("Fulano").build();
+        Book first = Book.builder().isbn("002").title("As aventuras").author("Fulano").build();
+        Book repeated = Book.builder().isbn("002").title("Outro titulo").author("Ciclano").build();
+        when(this.repository.findExistingIsbns(Mockito.anyCollection())).thenReturn(Arrays.asList("001"));
+
+        //execucao
+        BulkChunkResultDTO result = this.service.saveBatch(Arrays.asList(existing, first, repeated));
+
+        //verificacoes
+        assertThat(result.getReceived()).isEqualTo(3);
+        assertThat(result.getImported()).isEqualTo(1);
+        assertThat(result.getDuplicatedIsbns()).containsExactly("001", "002");
+        verify(this.repository, times(1)).findExistingIsbns(Mockito.anyCollection());
+        verify(this.repository).saveAll(Arrays.asList(first));
+        verify(this.repository, never()).existsByIsbn(Mockito.anyString());
+    }
+
     private Book createValidBook() {
         return Book.builder().id(1l).isbn("123").author("Fulano").title("As aventuras").build();
     }
@@ -0,0 +1,117 @@
+package com.cursotddrsilva.libraryapi.service;
+
+import com.cursotddrsilva.libraryapi.exception.BusinessException;
+import com.cursotddrsilva.libraryapi.model.entity.Book;
+import com.cursotddrsilva.libraryapi.model.entity.Loan;
+import com.cursotddrsilva.libraryapi.model.repository.BookRepository;
+import com.cursotddrsilva.libraryapi.model.repository.LoanRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@Slf4j
+@SpringBootTest
+@ActiveProfiles("test")
+public class LoanConcurrencyTest {
+
+    private static final int CLIENTS = 64;
+    private static final int BOOKS = 8;
+    private static final int ROUNDS = 20;
+
+    @Autowired
+    LoanService service;
+
+    @Autowired
+    BookRepository bookRepository;
+
+    @Autowired
+    LoanRepository loanRepository;
+
+    @AfterEach
+    public void tearDown(){
+        loanRepository.deleteAllInBatch();
+        bookRepository.deleteAllInBatch();
+    }
+
+    @Test
+    @DisplayName("Deve emprestar cada livro uma unica vez com 64 clientes concorrentes")
+    public void concurrentLoansTest() throws InterruptedException {
+        //cenario
+        List<Book> books = bookRepository.saveAll(IntStream.range(0, BOOKS)
+                .mapToObj(i -> Book.builder().isbn("stress-" + i).author("Fulano").title("Livro " + i).build())
+                .collect(Collectors.toList()));
+
+        AtomicInteger loaned = new AtomicInteger();
+        AtomicInteger rejected = new AtomicInteger();
+        ConcurrentLinkedQueue<Throwable> errors = new ConcurrentLinkedQueue<>();
+        List<Long> roundMillis = new ArrayList<>();
+
+        ExecutorService executor = Executors.newFixedThreadPool(CLIENTS);
+        try {
+            for (int round = 0; round < ROUNDS; round++) {
+                CountDownLatch start = new CountDownLatch(1);
+                CountDownLatch done = new CountDownLatch(CLIENTS);
+                for (int client = 0; client < CLIENTS; client++) {
+                    Book book = books.get(client % BOOKS);
+                    String customer = "cliente" + client;
+                    executor.execute(() -> {
+                        try {
+                            start.await();
+                            service.save(Loan.builder().book(book).customer(customer).loanDate(LocalDate.now()).build());
+                            loaned.incrementAndGet();
+                        } catch (BusinessException e) {
+                            rejected.incrementAndGet();
+                        } catch (Throwable e) {
+                            errors.add(e);
+                        } finally {
+                            done.countDown();
+                        }
+                    });
+                }
+
+                //execucao
+                long begin = System.nanoTime();
+                start.countDown();
+                assertThat(done.await(30, TimeUnit.SECONDS)).isTrue();
+                roundMillis.add(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - begin));
+
+                //verificacao
+                for (Book book : books) {
+                    List<Loan> active = loanRepository.findByBook(book, Pageable.unpaged()).stream()
+                            .filter(loan -> !Boolean.TRUE.equals(loan.getReturned()))
+                            .collect(Collectors.toList());
+                    assertThat(active).hasSize(1);
+                    active.forEach(loan -> loan.setReturned(true));
+                    loanRepository.saveAll(active);
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        //verificacao
+        assertThat(errors).isEmpty();
+        assertThat(loaned.get()).isEqualTo(BOOKS * ROUNDS);
+        assertThat(rejected.get()).isEqualTo((CLIENTS - BOOKS) * ROUNDS);
+        log.info("{} clientes, {} rodadas: tempo por rodada (ms) {}", CLIENTS, ROUNDS, roundMillis);
+    }
+}
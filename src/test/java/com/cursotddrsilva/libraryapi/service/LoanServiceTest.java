@@ -1,5 +1,6 @@
 package com.cursotddrsilva.libraryapi.service;
 
+import com.cursotddrsilva.libraryapi.api.dto.BulkReturnResultDTO;
 import com.cursotddrsilva.libraryapi.api.dto.LoanFilterDTO;
 import com.cursotddrsilva.libraryapi.exception.BusinessException;
 import com.cursotddrsilva.libraryapi.model.entity.Book;
@@ -12,6 +13,7 @@ import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.Mockito;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
@@ -36,9 +38,12 @@ public class LoanServiceTest {
     @MockBean
     private LoanRepository repository;
 
+    @MockBean
+    private LoanStatisticsService statistics;
+
     @BeforeEach
     public void setUp(){
-        this.service = new LoanServiceImpl(repository);
+        this.service = new LoanServiceImpl(repository, statistics, new ApproximateCounts(60000, 600000, 100));
     }
 
     @Test
@@ -63,7 +68,7 @@ public class LoanServiceTest {
                 .build();
 
         when(this.repository.existsByBookAndNotReturned(book)).thenReturn(false);
-        when(this.repository.save(savingLoan)).thenReturn(savedLoan);
+        when(this.repository.saveAndFlush(savingLoan)).thenReturn(savedLoan);
 
         Loan loan = this.service.save(savingLoan);
 
@@ -72,6 +77,7 @@ public class LoanServiceTest {
         assertThat(loan.getBook().getId()).isEqualTo(savedLoan.getBook().getId());
         assertThat(loan.getCustomer()).isEqualTo(savedLoan.getCustomer());
         assertThat(loan.getLoanDate()).isEqualTo(savedLoan.getLoanDate());
+        verify(this.statistics).recordLoan(1l, savedLoan.getLoanDate());
     }
 
     @Test
@@ -96,7 +102,31 @@ public class LoanServiceTest {
         assertThat(exception).isInstanceOf(BusinessException.class)
                 .hasMessage("Book already loaned.");
 
-        verify(this.repository, never()).save(savingLoan);
+        verify(this.repository, never()).saveAndFlush(savingLoan);
+    }
+
+    @Test
+    @DisplayName("Deve lancar erro de negocio quando outro emprestimo ativo for gravado concorrentemente")
+    public void concurrentLoanSaveTest(){
+        //cenario
+        Book book = Book.builder().id(1l).build();
+
+        Loan savingLoan = Loan.builder()
+                .book(book)
+                .customer("Fulano")
+                .loanDate(LocalDate.now())
+                .build();
+
+        when(this.repository.existsByBookAndNotReturned(book)).thenReturn(false);
+        when(this.repository.saveAndFlush(savingLoan)).thenThrow(new DataIntegrityViolationException("ux_loan_active_book"));
+
+        //execucao
+        Throwable exception = catchThrowable(() -> service.save(savingLoan));
+
+        //verificacoes
+        assertThat(exception).isInstanceOf(BusinessException.class)
+                .hasMessage("Book already loaned.");
+        verifyNoInteractions(this.statistics);
     }
 
     @Test
@@ -128,6 +158,7 @@ public class LoanServiceTest {
         //cenario
         Loan loan = createLoan();
         loan.setId(1l);
+        loan.setActiveBookId(loan.getBook().getId());
         loan.setReturned(true);
 
         //execucao
@@ -137,6 +168,89 @@ public class LoanServiceTest {
 
         assertThat(updatedLoan.getReturned()).isTrue();
         verify(this.repository).save(loan);
+        verify(this.statistics).recordReturn(loan.getLoanDate(), true);
+    }
+
+    @Test
+    @DisplayName("Deve devolver varios emprestimos com um unico update")
+    public void returnLoansTest(){
+        //cenario
+        Loan active = createLoan();
+        active.setId(1l);
+        active.setActiveBookId(1l);
+        Loan returned = createLoan();
+        returned.setId(2l);
+        returned.setReturned(true);
+        when(this.repository.findAllForUpdate(Arrays.asList(1l, 2l, 3l))).thenReturn(Arrays.asList(returned, active));
+
+        //execucao
+        BulkReturnResultDTO result = this.service.returnLoans(Arrays.asList(1l, 2l, 3l, 1l));
+
+        //verificacao
+        assertThat(result.getReceived()).isEqualTo(4);
+        assertThat(result.getReturned()).containsExactly(1l);
+        assertThat(result.getAlreadyReturned()).containsExactly(2l);
+        assertThat(result.getNotFound()).containsExactly(3l);
+        verify(this.repository).markReturned(Arrays.asList(1l));
+        verify(this.statistics).recordReturn(active.getLoanDate(), true);
+    }
+
+    @Test
+    @DisplayName("Nao deve executar o update quando nenhum emprestimo puder ser devolvido")
+    public void returnLoansNothingToReturnTest(){
+        when(this.repository.findAllForUpdate(Arrays.asList(1l))).thenReturn(Arrays.asList());
+
+        BulkReturnResultDTO result = this.service.returnLoans(Arrays.asList(1l));
+
+        assertThat(result.getNotFound()).containsExactly(1l);
+        verify(this.repository, never()).markReturned(Mockito.anyCollection());
+        verify(this.statistics, never()).recordReturn(Mockito.any(), Mockito.anyBoolean());
+    }
+
+    @Test
+    @DisplayName("Deve devolver um empréstimo com um unico update condicional e retornar a nova versao")
+    public void setReturnedTest(){
+        //cenario
+        when(this.repository.returnIfActive(1l, 2l)).thenReturn(1);
+
+        //execucao
+        Optional<Long> result = this.service.setReturned(1l, true, 2l);
+
+        //verificacao
+        assertThat(result).contains(3l);
+        verify(this.repository, never()).findById(Mockito.anyLong());
+        verify(this.repository, never()).save(Mockito.any(Loan.class));
+        verify(this.statistics).recordReturnById(1l, true);
+    }
+
+    @Test
+    @DisplayName("Deve ler a versao atual com lock ao devolver um empréstimo sem versao esperada")
+    public void setReturnedWithoutVersionTest(){
+        //cenario
+        Loan loan = createLoan();
+        loan.setId(1l);
+        loan.setVersion(4l);
+        when(this.repository.findAllForUpdate(Arrays.asList(1l))).thenReturn(Arrays.asList(loan));
+        when(this.repository.returnIfActive(1l, 4l)).thenReturn(1);
+
+        //execucao
+        Optional<Long> result = this.service.setReturned(1l, true, null);
+
+        //verificacao
+        assertThat(result).contains(5l);
+        verify(this.statistics).recordReturn(loan.getLoanDate(), true);
+    }
+
+    @Test
+    @DisplayName("Deve retornar vazio quando nenhum empréstimo foi alterado")
+    public void setReturnedNothingChangedTest(){
+        when(this.repository.reopenIfReturned(1l, 2l)).thenReturn(0);
+
+        Optional<Long> result = this.service.setReturned(1l, false, 2l);
+
+        assertThat(result).isEmpty();
+        verify(this.repository, never()).findById(Mockito.anyLong());
+        verify(this.statistics, never()).recordReturnById(Mockito.any(), Mockito.anyBoolean());
     }
 
     @Test
@@ -0,0 +1,124 @@
+package com.cursotddrsilva.libraryapi.service;
+
+import com.cursotddrsilva.libraryapi.api.dto.LoanStatisticsDTO;
+import com.cursotddrsilva.libraryapi.model.repository.LoanRepository;
+import com.cursotddrsilva.libraryapi.service.impl.LoanStatisticsServiceImpl;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mockito;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(SpringExtension.class)
+@ActiveProfiles("test")
+public class LoanStatisticsServiceTest {
+
+    private LoanStatisticsService service;
+
+    private MeterRegistry meterRegistry;
+
+    @MockBean
+    private LoanRepository repository;
+
+    @BeforeEach
+    public void setUp(){
+        this.meterRegistry = new SimpleMeterRegistry();
+        this.service = new LoanStatisticsServiceImpl(repository, meterRegistry);
+    }
+
+    @Test
+    @DisplayName("Deve reconstruir as estatisticas a partir do banco")
+    public void rebuildTest(){
+        //cenario
+        LocalDate today = LocalDate.now();
+        when(repository.countByBook()).thenReturn(Arrays.asList(
+                new Object[]{ 1l, 3l },
+                new Object[]{ 2l, 2l }));
+        when(repository.countActiveByLoanDate()).thenReturn(Arrays.asList(
+                new Object[]{ today, 1l },
+                new Object[]{ today.minusDays(LoanService.LOAN_DAYS), 1l }));
+
+        //execucao
+        service.rebuild();
+
+        //verificacao
+        LoanStatisticsDTO statistics = service.getStatistics();
+        assertThat(statistics.getTotalLoans()).isEqualTo(5);
+        assertThat(statistics.getActiveLoans()).isEqualTo(2);
+        assertThat(statistics.getOverdueLoans()).isEqualTo(1);
+        assertThat(statistics.getLoanedBooks()).isEqualTo(2);
+        assertThat(service.getBookStatistics(1l).getLoans()).isEqualTo(3);
+        assertThat(service.getBookStatistics(3l).getLoans()).isZero();
+        assertThat(meterRegistry.get("library.loans.overdue").gauge().value()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Deve atualizar as estatisticas a cada emprestimo e devolucao")
+    public void recordTest(){
+        //cenario
+        when(repository.countByBook()).thenReturn(Collections.emptyList());
+        when(repository.countActiveByLoanDate()).thenReturn(Collections.emptyList());
+        service.rebuild();
+        LocalDate today = LocalDate.now();
+        LocalDate late = today.minusDays(10);
+
+        //execucao
+        service.recordLoan(1l, today);
+        service.recordLoan(1l, late);
+        service.recordLoan(2l, late);
+        service.recordReturn(late, true);
+        service.recordReturn(today, true);
+        service.recordReturn(today, false);
+
+        //verificacao
+        LoanStatisticsDTO statistics = service.getStatistics();
+        assertThat(statistics.getTotalLoans()).isEqualTo(3);
+        assertThat(statistics.getActiveLoans()).isEqualTo(2);
+        assertThat(statistics.getOverdueLoans()).isEqualTo(1);
+        assertThat(statistics.getLoanedBooks()).isEqualTo(2);
+        assertThat(service.getBookStatistics(1l).getLoans()).isEqualTo(2);
+        assertThat(meterRegistry.get("library.loans.active").gauge().value()).isEqualTo(2);
+    }
+
+    @Test
+    @DisplayName("Deve buscar de uma vez as datas das devolucoes registradas pelo id")
+    public void recordReturnByIdTest(){
+        //cenario
+        when(repository.countByBook()).thenReturn(Collections.emptyList());
+        when(repository.countActiveByLoanDate()).thenReturn(Collections.emptyList());
+        service.rebuild();
+        LocalDate today = LocalDate.now();
+        LocalDate late = today.minusDays(10);
+        service.recordLoan(1l, today);
+        service.recordLoan(2l, late);
+        service.recordLoan(3l, late);
+        when(repository.findLoanDates(Mockito.anyCollection())).thenReturn(Arrays.asList(
+                new Object[]{ 10l, late },
+                new Object[]{ 20l, today }));
+
+        //execucao
+        service.recordReturnById(10l, true);
+        service.recordReturnById(20l, true);
+        service.recordReturnById(30l, true);
+        service.recordReturnById(30l, false);
+
+        //verificacao
+        LoanStatisticsDTO statistics = service.getStatistics();
+        assertThat(statistics.getActiveLoans()).isEqualTo(1);
+        assertThat(statistics.getOverdueLoans()).isEqualTo(1);
+        assertThat(service.getStatistics().getOverdueLoans()).isEqualTo(1);
+        Mockito.verify(repository, Mockito.times(1)).findLoanDates(Mockito.anyCollection());
+    }
+}
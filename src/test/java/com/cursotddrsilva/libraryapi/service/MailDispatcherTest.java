@@ -0,0 +1,154 @@
+package com.cursotddrsilva.libraryapi.service;
+
+import com.cursotddrsilva.libraryapi.service.impl.EmailServiceImpl;
+import com.icegreen.greenmail.junit5.GreenMailExtension;
+import com.icegreen.greenmail.util.ServerSetupTest;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import org.mockito.ArgumentMatchers;
+import org.springframework.mail.MailSendException;
+import org.springframework.mail.SimpleMailMessage;
+import org.springframework.mail.javamail.JavaMailSender;
+import org.springframework.mail.javamail.JavaMailSenderImpl;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import javax.mail.internet.MimeMessage;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
+import static org.mockito.Mockito.*;
+
+@ActiveProfiles("test")
+public class MailDispatcherTest {
+
+    @RegisterExtension
+    static GreenMailExtension greenMail = new GreenMailExtension(ServerSetupTest.SMTP);
+
+    private MailDispatcher dispatcher;
+
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @AfterEach
+    public void tearDown() throws InterruptedException {
+        if (dispatcher != null) {
+            dispatcher.shutdown();
+        }
+    }
+
+    @Test
+    @DisplayName("Deve enviar um email por destinatario pelo servidor SMTP")
+    public void sendMailsTest() throws Exception {
+        //cenario
+        dispatcher = createDispatcher(smtpSender(), 0, 1);
+        EmailServiceImpl emailService = new EmailServiceImpl(dispatcher);
+        ReflectionTestUtils.setField(emailService, "remetent", "mail@library-api.com");
+        List<String> mails = IntStream.range(0, 20)
+                .mapToObj(i -> "cliente" + i + "@email.com")
+                .collect(Collectors.toList());
+
+        //execucao
+        emailService.sendMails("atrasado", mails);
+
+        //verificacao
+        assertThat(greenMail.waitForIncomingEmail(5000, 20)).isTrue();
+        MimeMessage[] received = greenMail.getReceivedMessages();
+        assertThat(received).hasSize(20);
+        for (MimeMessage message : received) {
+            assertThat(message.getAllRecipients()).hasSize(1);
+            assertThat(message.getSubject()).isEqualTo("Livro emprestimo atrasado.");
+        }
+    }
+
+    @Test
+    @DisplayName("Deve limitar a quantidade de envios por segundo")
+    public void rateLimitTest() throws Exception {
+        //cenario
+        dispatcher = createDispatcher(smtpSender(), 5, 1);
+        long begin = System.nanoTime();
+
+        //execucao
+        CompletableFuture<?>[] futures = IntStream.range(0, 10)
+                .mapToObj(i -> dispatcher.submit(message("cliente" + i + "@email.com")))
+                .toArray(CompletableFuture[]::new);
+        CompletableFuture.allOf(futures).get(10, TimeUnit.SECONDS);
+
+        //verificacao: 5 envios imediatos e os outros 5 ao longo do segundo seguinte
+        assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - begin)).isGreaterThanOrEqualTo(800);
+        assertThat(greenMail.getReceivedMessages()).hasSize(10);
+        assertThat(meterRegistry.counter("library.mail.sent").count()).isEqualTo(10);
+        assertThat(meterRegistry.get("library.mail.queue.size").gauge().value()).isZero();
+        assertThat(meterRegistry.timer("library.mail.send").count()).isPositive();
+    }
+
+    @Test
+    @DisplayName("Deve reenviar com backoff a mensagem que falhou")
+    public void retryTest() throws Exception {
+        //cenario
+        JavaMailSender sender = mock(JavaMailSender.class);
+        doThrow(new MailSendException("SMTP indisponivel"))
+                .doNothing()
+                .when(sender).send(ArgumentMatchers.<SimpleMailMessage[]>any());
+        dispatcher = createDispatcher(sender, 0, 3);
+
+        //execucao
+        dispatcher.submit(message("cliente@email.com")).get(5, TimeUnit.SECONDS);
+
+        //verificacao
+        verify(sender, times(2)).send(ArgumentMatchers.<SimpleMailMessage[]>any());
+        assertThat(meterRegistry.counter("library.mail.retried").count()).isEqualTo(1);
+        assertThat(meterRegistry.counter("library.mail.sent").count()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Deve desistir da mensagem apos o numero maximo de tentativas")
+    public void maxAttemptsTest() {
+        //cenario
+        JavaMailSender sender = mock(JavaMailSender.class);
+        doThrow(new MailSendException("SMTP indisponivel")).when(sender).send(ArgumentMatchers.<SimpleMailMessage[]>any());
+        dispatcher = createDispatcher(sender, 0, 3);
+
+        //execucao
+        CompletableFuture<Void> future = dispatcher.submit(message("cliente@email.com"));
+
+        Throwable exception = catchThrowable(() -> future.get(5, TimeUnit.SECONDS));
+
+        //verificacao
+        assertThat(exception).isInstanceOf(ExecutionException.class)
+                .hasCauseInstanceOf(MailSendException.class);
+        verify(sender, times(3)).send(ArgumentMatchers.<SimpleMailMessage[]>any());
+        assertThat(meterRegistry.counter("library.mail.failed").count()).isEqualTo(1);
+    }
+
+    private MailDispatcher createDispatcher(JavaMailSender sender, int ratePerSecond, int maxAttempts) {
+        MailDispatcher mailDispatcher = new MailDispatcher(sender, meterRegistry, 100, 2, 5, ratePerSecond, maxAttempts, 10, false);
+        mailDispatcher.start();
+        return mailDispatcher;
+    }
+
+    private JavaMailSender smtpSender() {
+        JavaMailSenderImpl sender = new JavaMailSenderImpl();
+        sender.setHost("localhost");
+        sender.setPort(ServerSetupTest.SMTP.getPort());
+        return sender;
+    }
+
+    private SimpleMailMessage message(String to) {
+        SimpleMailMessage message = new SimpleMailMessage();
+        message.setFrom("mail@library-api.com");
+        message.setTo(to);
+        message.setSubject("Livro emprestimo atrasado.");
+        message.setText("atrasado");
+        return message;
+    }
+}
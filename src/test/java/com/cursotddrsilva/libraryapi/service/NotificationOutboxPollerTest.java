@@ -0,0 +1,104 @@
+package com.cursotddrsilva.libraryapi.service;
+
+import com.cursotddrsilva.libraryapi.model.entity.NotificationOutbox;
+import com.cursotddrsilva.libraryapi.model.repository.NotificationOutboxRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static com.cursotddrsilva.libraryapi.model.repository.NotificationOutboxRepositoryTest.createNotification;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.*;
+
+@SpringBootTest(properties = "application.outbox.poll-interval-ms=3600000")
+@ActiveProfiles("test")
+public class NotificationOutboxPollerTest {
+
+    @Autowired
+    NotificationService notificationService;
+
+    @Autowired
+    NotificationOutboxRepository repository;
+
+    @MockBean
+    EmailService emailService;
+
+    @AfterEach
+    public void tearDown(){
+        repository.deleteAllInBatch();
+    }
+
+    @Test
+    @DisplayName("Deve enviar cada notificacao uma unica vez com varios pollers em paralelo")
+    public void concurrentPollersTest() throws Exception {
+        //cenario
+        repository.saveAll(IntStream.range(0, 1000)
+                .mapToObj(i -> createNotification("n" + i, NotificationOutbox.Status.PENDING))
+                .collect(Collectors.toList()));
+        Map<String, AtomicInteger> sends = new ConcurrentHashMap<>();
+        when(emailService.sendMail(anyString(), anyString())).thenAnswer(invocation -> {
+            sends.computeIfAbsent(invocation.getArgument(1), key -> new AtomicInteger()).incrementAndGet();
+            return CompletableFuture.completedFuture(null);
+        });
+
+        //execucao: duas instancias da aplicacao, cada uma com 4 workers
+        ExecutorService nodes = Executors.newFixedThreadPool(2);
+        try {
+            List<Future<?>> polls = IntStream.range(0, 2)
+                    .mapToObj(i -> createPoller(4))
+                    .map(poller -> nodes.submit(poller::poll))
+                    .collect(Collectors.toList());
+            for (Future<?> poll : polls) {
+                poll.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            nodes.shutdownNow();
+        }
+
+        //verificacao
+        assertThat(sends).hasSize(1000);
+        assertThat(sends.values()).allMatch(count -> count.get() == 1);
+        assertThat(repository.findAll()).allMatch(notification -> notification.getStatus() == NotificationOutbox.Status.SENT);
+    }
+
+    @Test
+    @DisplayName("Deve marcar como falha a notificacao que nao foi enviada apos o maximo de tentativas")
+    public void failedNotificationTest(){
+        //cenario
+        repository.save(createNotification("falha", NotificationOutbox.Status.PENDING));
+        CompletableFuture<Void> failed = new CompletableFuture<>();
+        failed.completeExceptionally(new IllegalStateException("SMTP indisponivel"));
+        when(emailService.sendMail(anyString(), anyString())).thenReturn(failed);
+
+        //execucao
+        createPoller(1).poll();
+
+        //verificacao
+        NotificationOutbox notification = repository.findAll().get(0);
+        assertThat(notification.getStatus()).isEqualTo(NotificationOutbox.Status.FAILED);
+        assertThat(notification.getAttempts()).isEqualTo(3);
+        verify(emailService, times(3)).sendMail("atrasado", "falha@email.com");
+    }
+
+    private NotificationOutboxPoller createPoller(int workers){
+        return new NotificationOutboxPoller(notificationService, emailService, new SimpleMeterRegistry(),
+                workers, 25, 3, 60000, 10000, 10, false);
+    }
+}
@@ -0,0 +1,85 @@
+package com.cursotddrsilva.libraryapi.service;
+
+import com.cursotddrsilva.libraryapi.model.entity.Loan;
+import com.cursotddrsilva.libraryapi.model.entity.NotificationOutbox;
+import com.cursotddrsilva.libraryapi.model.repository.Keyset;
+import com.cursotddrsilva.libraryapi.model.repository.NotificationOutboxRepository;
+import com.cursotddrsilva.libraryapi.service.impl.NotificationServiceImpl;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.data.domain.Sort;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(SpringExtension.class)
+@ActiveProfiles("test")
+public class NotificationServiceTest {
+
+    private static final Keyset FIRST = Keyset.first(LoanService.LATE_LOANS_KEY, Sort.Direction.ASC);
+
+    private NotificationService service;
+
+    @MockBean
+    private LoanService loanService;
+
+    @MockBean
+    private NotificationOutboxRepository repository;
+
+    @BeforeEach
+    public void setUp(){
+        this.service = new NotificationServiceImpl(loanService, repository);
+    }
+
+    @Test
+    @DisplayName("Deve gravar no outbox apenas os emprestimos atrasados ainda nao notificados no dia")
+    @SuppressWarnings("unchecked")
+    public void recordLateLoansTest(){
+        //cenario
+        List<Loan> chunk = Arrays.asList(
+                Loan.builder().id(1l).customerEmail("fulano@email.com").build(),
+                Loan.builder().id(2l).customerEmail("ciclano@email.com").build());
+        when(loanService.getLateLoansAfter(FIRST, 2)).thenReturn(chunk);
+        when(repository.findExistingKeys(anyCollection()))
+                .thenReturn(Collections.singletonList("lateLoan:1:" + LocalDate.now()));
+
+        //execucao
+        List<Loan> result = service.recordLateLoans(FIRST, 2, "atrasado");
+
+        //verificacao
+        assertThat(result).isEqualTo(chunk);
+        ArgumentCaptor<List<NotificationOutbox>> captor = ArgumentCaptor.forClass(List.class);
+        verify(repository).saveAll(captor.capture());
+        assertThat(captor.getValue()).hasSize(1);
+        NotificationOutbox notification = captor.getValue().get(0);
+        assertThat(notification.getNotificationKey()).isEqualTo("lateLoan:2:" + LocalDate.now());
+        assertThat(notification.getRecipient()).isEqualTo("ciclano@email.com");
+        assertThat(notification.getMessage()).isEqualTo("atrasado");
+        assertThat(notification.getStatus()).isEqualTo(NotificationOutbox.Status.PENDING);
+    }
+
+    @Test
+    @DisplayName("Nao deve gravar no outbox quando nao houver emprestimos atrasados")
+    public void recordWithoutLateLoansTest(){
+        //cenario
+        when(loanService.getLateLoansAfter(FIRST, 2)).thenReturn(Collections.emptyList());
+
+        //execucao
+        List<Loan> result = service.recordLateLoans(FIRST, 2, "atrasado");
+
+        //verificacao
+        assertThat(result).isEmpty();
+        verify(repository, never()).saveAll(anyList());
+    }
+}
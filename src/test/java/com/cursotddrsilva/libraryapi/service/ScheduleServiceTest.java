@@ -0,0 +1,88 @@
+package com.cursotddrsilva.libraryapi.service;
+
+import com.cursotddrsilva.libraryapi.model.entity.Loan;
+import com.cursotddrsilva.libraryapi.model.repository.Keyset;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.data.domain.Sort;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(SpringExtension.class)
+@ActiveProfiles("test")
+public class ScheduleServiceTest {
+
+    private static final Keyset FIRST = Keyset.first(LoanService.LATE_LOANS_KEY, Sort.Direction.ASC);
+    private static final LocalDate LOAN_DATE = LocalDate.of(2021, 1, 1);
+
+    private ScheduleService service;
+
+    private MeterRegistry meterRegistry;
+
+    @MockBean
+    private NotificationService notificationService;
+
+    @BeforeEach
+    public void setUp(){
+        this.meterRegistry = new SimpleMeterRegistry();
+        this.service = new ScheduleService(notificationService, meterRegistry);
+        ReflectionTestUtils.setField(service, "message", "atrasado");
+        ReflectionTestUtils.setField(service, "chunkSize", 2);
+    }
+
+    @Test
+    @DisplayName("Deve registrar as notificacoes de emprestimos atrasados em blocos")
+    public void sendMailToLateLoansInChunksTest(){
+        //cenario
+        when(notificationService.recordLateLoans(FIRST, 2, "atrasado")).thenReturn(Arrays.asList(createLoan(1l), createLoan(2l)));
+        when(notificationService.recordLateLoans(after(2l), 2, "atrasado")).thenReturn(Arrays.asList(createLoan(5l), createLoan(7l)));
+        when(notificationService.recordLateLoans(after(7l), 2, "atrasado")).thenReturn(Collections.singletonList(createLoan(9l)));
+
+        //execucao
+        service.sendMailToLateLoans();
+
+        //verificacao
+        verify(notificationService, times(3)).recordLateLoans(any(Keyset.class), eq(2), eq("atrasado"));
+        verify(notificationService, never()).recordLateLoans(after(9l), 2, "atrasado");
+        assertThat(meterRegistry.counter("library.loans.late.processed").count()).isEqualTo(5);
+        assertThat(meterRegistry.counter("library.loans.late.chunks").count()).isEqualTo(3);
+        assertThat(meterRegistry.timer("library.loans.late.run").count()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Deve parar no primeiro bloco vazio quando nao houver emprestimos atrasados")
+    public void sendMailWithoutLateLoansTest(){
+        //cenario
+        when(notificationService.recordLateLoans(FIRST, 2, "atrasado")).thenReturn(Collections.emptyList());
+
+        //execucao
+        service.sendMailToLateLoans();
+
+        //verificacao
+        verify(notificationService, times(1)).recordLateLoans(any(Keyset.class), anyInt(), anyString());
+        assertThat(meterRegistry.counter("library.loans.late.chunks").count()).isZero();
+        assertThat(meterRegistry.counter("library.loans.late.processed").count()).isZero();
+    }
+
+    // a data de cada emprestimo sai do id, para que o keyset seguinte seja previsivel
+    private Loan createLoan(Long id){
+        return Loan.builder().id(id).loanDate(LOAN_DATE.plusDays(id)).customerEmail("cliente" + id + "@email.com").build();
+    }
+
+    private static Keyset after(Long id){
+        return FIRST.after(LOAN_DATE.plusDays(id), id);
+    }
+}